@@ -0,0 +1,264 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+// Connection Scan over a Timetable and one RouteGraph snapshot. Every weekly flight is unrolled into
+// dated connections over two weeks, so journeys can run past Sunday night, and stored in primitive
+// arrays sorted by departure. Earliest arrival is one forward pass over that array from the departure
+// time; profile queries are one backward pass. Flights whose route is gone from the snapshot are left out.
+public final class ConnectionScan {
+    // Connections are unrolled over two weeks and journeys may take up to one, so any departure in the
+    // first week is answered in full
+    static final int HORIZON = 2 * Timetable.WEEK, MAX_JOURNEY = Timetable.WEEK;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    public final RouteGraph graph;
+    public final Timetable timetable;
+    public final int connectionCount;
+    // Connection i: flight flights[flight[i]] from airport depStop[i] at dep[i] to arrStop[i] at arr[i]
+    final int[] depStop, arrStop, dep, arr, flight;
+    private final Timetable.Flight[] flights;
+    // Minimum connection time per airport
+    final int[] minConnect;
+    // Connections of airport pair g.edge(u, v), by departure: byPair[pairFirst[k]..pairFirst[k + 1]) with
+    // k = pairSlot[edge]
+    private final int[] pairSlot, pairFirst, byPair;
+
+    ConnectionScan(RouteGraph g, Timetable tt) {
+        graph = g;
+        timetable = tt;
+        int n = g.airportCount;
+        minConnect = new int[n];
+        for (int v = 0; v < n; v++) minConnect[v] = tt.minConnect(g.code(v));
+
+        // Flights whose route is still in the snapshot, with their airport ids and pair slot
+        List<Timetable.Flight> usable = new ArrayList<>();
+        int[] from = new int[tt.flights.size()], to = new int[from.length], slot = new int[from.length];
+        pairSlot = new int[g.edgeBound];
+        Arrays.fill(pairSlot, -1);
+        int count = 0, pairs = 0;
+        for (Timetable.Flight f : tt.flights) {
+            int u = g.id(f.route.from), v = g.id(f.route.to), e = u < 0 || v < 0 ? -1 : g.edge(u, v);
+            if (e < 0) continue;
+            if (pairSlot[e] < 0) pairSlot[e] = pairs++;
+            from[usable.size()] = u;
+            to[usable.size()] = v;
+            slot[usable.size()] = pairSlot[e];
+            usable.add(f);
+            count += HORIZON / Timetable.WEEK * Integer.bitCount(f.days);
+        }
+        flights = usable.toArray(new Timetable.Flight[0]);
+        // Sort (departure, flight) keys once, then lay the columns out in that order
+        long[] keys = new long[count];
+        int c = 0;
+        for (int k = 0; k < flights.length; k++)
+            for (int d = 0; d < HORIZON / Timetable.DAY; d++)
+                if (flights[k].operatesOn(d % 7)) keys[c++] = (long) (d * Timetable.DAY + flights[k].departure) << 32 | k;
+        Arrays.sort(keys);
+        connectionCount = count;
+        depStop = new int[count];
+        arrStop = new int[count];
+        dep = new int[count];
+        arr = new int[count];
+        flight = new int[count];
+        pairFirst = new int[pairs + 1];
+        for (int i = 0; i < count; i++) {
+            int k = (int) keys[i];
+            flight[i] = k;
+            depStop[i] = from[k];
+            arrStop[i] = to[k];
+            dep[i] = (int) (keys[i] >>> 32);
+            arr[i] = dep[i] + flights[k].duration;
+            pairFirst[slot[k] + 1]++;
+        }
+        for (int p = 0; p < pairs; p++) pairFirst[p + 1] += pairFirst[p];
+        byPair = new int[count];
+        int[] fill = Arrays.copyOf(pairFirst, pairs);
+        for (int i = 0; i < count; i++) byPair[fill[slot[flight[i]]]++] = i;
+    }
+
+    // One flight of a journey, with its dated times (minutes from the Monday starting the timetable week)
+    public static final class Leg {
+        public final Timetable.Flight flight;
+        public final int departure, arrival;
+
+        Leg(Timetable.Flight flight, int departure, int arrival) {
+            this.flight = flight;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public String toString() {
+            return flight.number + " " + flight.route.from + " " + Timetable.format(departure) + " -> "
+                    + flight.route.to + " " + Timetable.format(arrival);
+        }
+    }
+
+    public static final class Journey {
+        public final List<Leg> legs;
+        public final int departure, arrival;
+
+        Journey(List<Leg> legs) {
+            this.legs = Collections.unmodifiableList(legs);
+            departure = legs.get(0).departure;
+            arrival = legs.get(legs.size() - 1).arrival;
+        }
+
+        // Door to door: time in the air plus waiting at connections
+        public int minutes() {
+            return arrival - departure;
+        }
+
+        public List<FlightNetwork.Route> routes() {
+            List<FlightNetwork.Route> rs = new ArrayList<>(legs.size());
+            for (Leg l : legs) rs.add(l.flight.route);
+            return rs;
+        }
+
+        @Override
+        public String toString() {
+            return "Departs " + Timetable.format(departure) + ", arrives " + Timetable.format(arrival)
+                    + " (" + Timetable.duration(minutes()) + ")";
+        }
+    }
+
+    // First connection departing at or after time
+    private int firstFrom(int time) {
+        int lo = 0, hi = connectionCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dep[mid] < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static void checkInterrupt(int scanned) {
+        if ((scanned & 4095) == 0 && Thread.currentThread().isInterrupted())
+            throw new CancellationException("Connection scan interrupted");
+    }
+
+    // Earliest arrival at t leaving s no earlier than departAfter (minute of the week); null if t cannot
+    // be reached within MAX_JOURNEY. Allocates only the returned journey.
+    public Journey earliestArrival(int s, int t, int departAfter) {
+        if (s < 0 || t < 0 || s == t) return null;
+        RouteGraph.SearchState st = RouteGraph.SearchState.get(graph.airportCount);
+        // dist holds arrival minutes, prev the connection that arrived
+        st.reach(s, departAfter, -1);
+        for (int i = firstFrom(departAfter), end = firstFrom(departAfter + MAX_JOURNEY); i < end; i++) {
+            checkInterrupt(i);
+            if (st.reached(t) && dep[i] >= st.dist[t]) break;
+            int u = depStop[i], v = arrStop[i];
+            if (!st.reached(u) || v == s) continue;
+            double ready = u == s ? departAfter : st.dist[u] + minConnect[u];
+            if (dep[i] < ready) continue;
+            if (!st.reached(v) || arr[i] < st.dist[v]) st.reach(v, arr[i], i);
+        }
+        if (!st.reached(t)) return null;
+        ArrayDeque<Leg> legs = new ArrayDeque<>();
+        for (int i = st.prev[t]; i >= 0; i = st.prev[depStop[i]]) legs.addFirst(leg(i));
+        return new Journey(new ArrayList<>(legs));
+    }
+
+    private Leg leg(int i) {
+        return new Leg(flights[flight[i]], dep[i], arr[i]);
+    }
+
+    // Every journey s -> t leaving in [from, to] that no other journey beats on both a later departure and
+    // an earlier arrival, by departure time: e.g. all best departures between 06:00 and 12:00 on Monday
+    // are profile(s, t, 360, 720). One backward scan over the connections departing from `from` on.
+    public List<Journey> profile(int s, int t, int from, int to) {
+        List<Journey> out = new ArrayList<>();
+        if (s < 0 || t < 0 || s == t || from > to) return out;
+        int n = graph.airportCount;
+        // Per airport, Pareto entries (departure, arrival at t) appended in falling departure order, so both
+        // columns fall along each list. An entry remembers its first connection and the entry it continues with.
+        int[][] entries = new int[n][];
+        int[] entryCount = new int[n];
+        int[] eDep = new int[64], eArr = new int[64], eConn = new int[64], eNext = new int[64];
+        int size = 0;
+        int first = firstFrom(from);
+        for (int i = firstFrom(to + MAX_JOURNEY) - 1; i >= first; i--) {
+            checkInterrupt(i);
+            int u = depStop[i], v = arrStop[i];
+            // Departures from s after the window must not hide the ones inside it; no journey from s is
+            // helped by coming back through s, so they can be dropped outright
+            if (u == t || (u == s && dep[i] > to)) continue;
+            int arrival = UNREACHED, next = -1;
+            if (v == t) arrival = arr[i];
+            else if (entryCount[v] > 0) {
+                next = evaluate(entries[v], entryCount[v], eDep, arr[i] + minConnect[v]);
+                if (next >= 0) arrival = eArr[next];
+            }
+            if (arrival == UNREACHED) continue;
+            int k = entryCount[u];
+            if (k > 0) {
+                int last = entries[u][k - 1];
+                if (eArr[last] <= arrival) continue;
+                if (eDep[last] == dep[i]) k = --entryCount[u]; // Same departure, now arriving earlier
+            }
+            if (size == eDep.length) {
+                eDep = Arrays.copyOf(eDep, size * 2);
+                eArr = Arrays.copyOf(eArr, size * 2);
+                eConn = Arrays.copyOf(eConn, size * 2);
+                eNext = Arrays.copyOf(eNext, size * 2);
+            }
+            eDep[size] = dep[i];
+            eArr[size] = arrival;
+            eConn[size] = i;
+            eNext[size] = next;
+            if (entries[u] == null) entries[u] = new int[4];
+            else if (k == entries[u].length) entries[u] = Arrays.copyOf(entries[u], k * 2);
+            entries[u][k] = size++;
+            entryCount[u] = k + 1;
+        }
+        for (int k = entryCount[s] - 1; k >= 0; k--) {
+            int e = entries[s][k];
+            if (eDep[e] > to) break;
+            List<Leg> legs = new ArrayList<>();
+            for (; e >= 0; e = eNext[e]) legs.add(leg(eConn[e]));
+            out.add(new Journey(legs));
+        }
+        return out;
+    }
+
+    // The entry of a list that departs at or after time and arrives first: the last one departing no earlier
+    private static int evaluate(int[] list, int count, int[] eDep, int time) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (eDep[list[mid]] >= time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo == 0 ? -1 : list[lo - 1];
+    }
+
+    // Flies a given route path on the timetable, taking on each leg the flight that arrives first among
+    // those leaving after the connection time; null if some leg has no flight in time.
+    public Journey follow(List<FlightNetwork.Route> path, int departAfter) {
+        if (path == null || path.isEmpty()) return null;
+        List<Leg> legs = new ArrayList<>(path.size());
+        int ready = departAfter;
+        for (FlightNetwork.Route r : path) {
+            int u = graph.id(r.from), v = graph.id(r.to), e = u < 0 || v < 0 ? -1 : graph.edge(u, v);
+            int slot = e < 0 ? -1 : pairSlot[e];
+            if (slot < 0) return null;
+            int lo = pairFirst[slot], hi = pairFirst[slot + 1];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (dep[byPair[mid]] < ready) lo = mid + 1;
+                else hi = mid;
+            }
+            int best = -1;
+            for (int k = lo; k < pairFirst[slot + 1]; k++) {
+                int i = byPair[k];
+                if (best >= 0 && dep[i] >= arr[best]) break;
+                if (best < 0 || arr[i] < arr[best]) best = i;
+            }
+            if (best < 0) return null;
+            legs.add(leg(best));
+            ready = arr[best] + minConnect[v];
+        }
+        return new Journey(legs);
+    }
+}
@@ -0,0 +1,354 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Contraction hierarchy over one metric of a RouteGraph snapshot. Airports are contracted in
+// edge-difference order; every shortcut remembers the two edges it replaces so query paths can be
+// unpacked back into the original Route objects. Edge ids below graph.routeCount are original routes, with
+// their snapshot edge id in childB.
+public final class ContractionHierarchy {
+    // Single daemon thread shared by all networks for background rebuilds
+    static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "contraction-hierarchy-builder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Witness searches are cut off after this many edge relaxations; a cut-off only costs an extra shortcut
+    private static final int WITNESS_LIMIT = 2000, SIMULATION_WITNESS_LIMIT = 200;
+    // Airports whose in-degree * out-degree exceeds this at contraction time stay in an uncontracted core.
+    // Hub-and-spoke networks otherwise blow up into a near-complete shortcut graph between hubs.
+    private static final int CORE_DEGREE_PRODUCT = 400;
+
+    public final RouteGraph graph;
+    public final FlightNetwork.Metric metric;
+    public final int shortcutCount, coreSize;
+    final boolean[] core;
+    final int[] rank, from, to, childA, childB;
+    final double[] weight;
+    // Upward edges leaving u, and upward edges entering v (searched backwards from the target).
+    // Edges inside the core appear in both, so the core is searched like a plain graph.
+    final int[] upFirst, upEdge, downFirst, downEdge;
+
+    private ContractionHierarchy(RouteGraph g, FlightNetwork.Metric metric, Builder b) {
+        this.graph = g;
+        this.metric = metric;
+        int n = g.airportCount, m = b.edges;
+        rank = b.rank;
+        core = b.core;
+        coreSize = b.coreSize;
+        from = Arrays.copyOf(b.from, m);
+        to = Arrays.copyOf(b.to, m);
+        childA = Arrays.copyOf(b.childA, m);
+        childB = Arrays.copyOf(b.childB, m);
+        weight = Arrays.copyOf(b.weight, m);
+        shortcutCount = m - g.routeCount;
+
+        upFirst = new int[n + 1];
+        downFirst = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            if (from[e] == to[e]) continue;
+            boolean inCore = core[from[e]] && core[to[e]];
+            if (inCore || rank[to[e]] > rank[from[e]]) upFirst[from[e] + 1]++;
+            if (inCore || rank[to[e]] < rank[from[e]]) downFirst[to[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            upFirst[v + 1] += upFirst[v];
+            downFirst[v + 1] += downFirst[v];
+        }
+        upEdge = new int[upFirst[n]];
+        downEdge = new int[downFirst[n]];
+        int[] upFill = Arrays.copyOf(upFirst, n), downFill = Arrays.copyOf(downFirst, n);
+        for (int e = 0; e < m; e++) {
+            if (from[e] == to[e]) continue;
+            boolean inCore = core[from[e]] && core[to[e]];
+            if (inCore || rank[to[e]] > rank[from[e]]) upEdge[upFill[from[e]]++] = e;
+            if (inCore || rank[to[e]] < rank[from[e]]) downEdge[downFill[to[e]]++] = e;
+        }
+    }
+
+    public static ContractionHierarchy build(RouteGraph g, FlightNetwork.Metric metric) {
+        Builder b = new Builder(g, g.weights(metric));
+        b.contractAll();
+        return new ContractionHierarchy(g, metric, b);
+    }
+
+    // Bidirectional upward search; both sides run until their frontier exceeds the best meeting cost
+    public List<FlightNetwork.Route> shortestPath(int s, int t) {
+        if (s < 0 || t < 0 || s == t) return null;
+        int n = graph.airportCount;
+        RouteGraph.SearchState fw = RouteGraph.SearchState.get(n), bw = RouteGraph.SearchState.backward(n);
+        fw.reach(s, 0.0, -1);
+        fw.heap.push(s, 0.0);
+        bw.reach(t, 0.0, -1);
+        bw.heap.push(t, 0.0);
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            boolean fOpen = !fw.heap.isEmpty() && fw.heap.peekKey() < best;
+            boolean bOpen = !bw.heap.isEmpty() && bw.heap.peekKey() < best;
+            if (!fOpen && !bOpen) break;
+            boolean forward = fOpen && (!bOpen || fw.heap.size <= bw.heap.size);
+            RouteGraph.SearchState st = forward ? fw : bw, other = forward ? bw : fw;
+            int u = st.heap.pop();
+            double du = st.dist[u];
+            if (other.reached(u) && du + other.dist[u] < best) {
+                best = du + other.dist[u];
+                meet = u;
+            }
+            int[] adj = forward ? upEdge : downEdge;
+            int begin = forward ? upFirst[u] : downFirst[u], end = forward ? upFirst[u + 1] : downFirst[u + 1];
+            st.settle(end - begin);
+            for (int i = begin; i < end; i++) {
+                int e = adj[i];
+                int v = forward ? to[e] : from[e];
+                double alt = du + weight[e];
+                if (!st.reached(v)) {
+                    st.reach(v, alt, e);
+                    st.heap.push(v, alt);
+                } else if (alt < st.dist[v] && st.heap.contains(v)) {
+                    st.dist[v] = alt;
+                    st.prev[v] = e;
+                    st.heap.decrease(v, alt);
+                }
+            }
+        }
+        if (meet < 0) return null;
+        ArrayDeque<Integer> chain = new ArrayDeque<>();
+        for (int e = fw.prev[meet]; e >= 0; e = fw.prev[from[e]]) chain.addFirst(e);
+        for (int e = bw.prev[meet]; e >= 0; e = bw.prev[to[e]]) chain.addLast(e);
+        List<FlightNetwork.Route> path = new ArrayList<>();
+        int[] stack = new int[16];
+        for (int top : chain) {
+            int sp = 0;
+            stack[sp++] = top;
+            while (sp > 0) {
+                int e = stack[--sp];
+                if (childA[e] < 0) {
+                    path.add(graph.route(childB[e]));
+                    continue;
+                }
+                if (sp + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[sp++] = childB[e];
+                stack[sp++] = childA[e];
+            }
+        }
+        return path;
+    }
+
+    // Hierarchies for a set of metrics, each valid only for the snapshot it was built from. A stale
+    // entry is never used; the first query that sees it queues a rebuild and falls back to plain search.
+    static final class Index {
+        final Set<FlightNetwork.Metric> metrics;
+        final AtomicReferenceArray<ContractionHierarchy> built;
+        final AtomicReferenceArray<RouteGraph> pending;
+
+        Index(FlightNetwork.Metric... metrics) {
+            this.metrics = metrics.length == 0 ? EnumSet.noneOf(FlightNetwork.Metric.class) : EnumSet.copyOf(Arrays.asList(metrics));
+            built = new AtomicReferenceArray<>(FlightNetwork.Metric.values().length);
+            pending = new AtomicReferenceArray<>(FlightNetwork.Metric.values().length);
+        }
+
+        void put(ContractionHierarchy ch) {
+            built.set(ch.metric.ordinal(), ch);
+        }
+
+        ContractionHierarchy get(RouteGraph g, FlightNetwork.Metric metric) {
+            if (!metrics.contains(metric)) return null;
+            int i = metric.ordinal();
+            ContractionHierarchy ch = built.get(i);
+            if (ch != null && ch.graph == g) return ch;
+            RouteGraph p = pending.get(i);
+            if (p != g && pending.compareAndSet(i, p, g)) {
+                BUILDER.execute(() -> {
+                    // Skip snapshots superseded while queued
+                    if (pending.get(i) == g) built.set(i, build(g, metric));
+                });
+            }
+            return null;
+        }
+    }
+
+    // Mutable contraction state; discarded once the hierarchy is frozen
+    private static final class Builder {
+        final int n;
+        int edges;
+        int[] from, to, childA, childB;
+        double[] weight;
+        final IntList[] out, in;
+        final boolean[] contracted, core;
+        final int[] rank, contractedNeighbours;
+        int coreSize;
+        // Witness search scratch
+        final double[] wdist;
+        final int[] wmark;
+        int wepoch;
+        final RouteGraph.IndexedHeap wheap;
+
+        Builder(RouteGraph g, double[] w) {
+            n = g.airportCount;
+            int cap = Math.max(16, g.routeCount * 2);
+            from = new int[cap];
+            to = new int[cap];
+            childA = new int[cap];
+            childB = new int[cap];
+            weight = new double[cap];
+            out = new IntList[n];
+            in = new IntList[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new IntList();
+                in[v] = new IntList();
+            }
+            for (int u = 0; u < n; u++)
+                for (int e = g.begin(u); e < g.end(u); e++) addEdge(u, g.head[e], w[e], -1, e);
+            contracted = new boolean[n];
+            core = new boolean[n];
+            rank = new int[n];
+            contractedNeighbours = new int[n];
+            wdist = new double[n];
+            wmark = new int[n];
+            wheap = new RouteGraph.IndexedHeap(n);
+        }
+
+        void addEdge(int u, int v, double w, int a, int b) {
+            if (edges == from.length) {
+                int cap = edges * 2;
+                from = Arrays.copyOf(from, cap);
+                to = Arrays.copyOf(to, cap);
+                childA = Arrays.copyOf(childA, cap);
+                childB = Arrays.copyOf(childB, cap);
+                weight = Arrays.copyOf(weight, cap);
+            }
+            from[edges] = u;
+            to[edges] = v;
+            weight[edges] = w;
+            childA[edges] = a;
+            childB[edges] = b;
+            if (u != v) {
+                out[u].add(edges);
+                in[v].add(edges);
+            }
+            edges++;
+        }
+
+        void contractAll() {
+            RouteGraph.IndexedHeap order = new RouteGraph.IndexedHeap(n);
+            for (int v = 0; v < n; v++) order.push(v, priority(v));
+            int next = 0;
+            while (!order.isEmpty()) {
+                int v = order.pop();
+                double p = priority(v);
+                if (!order.isEmpty() && p > order.peekKey()) {
+                    order.push(v, p);
+                    continue;
+                }
+                if ((long) in[v].size * out[v].size > CORE_DEGREE_PRODUCT) {
+                    core[v] = true;
+                    coreSize++;
+                    continue;
+                }
+                contract(v, true);
+                contracted[v] = true;
+                rank[v] = next++;
+                // Drop edges into the contracted airport so later scans only see live neighbours
+                for (int i = 0; i < out[v].size; i++) {
+                    int w = to[out[v].get(i)];
+                    contractedNeighbours[w]++;
+                    in[w].retainLive(from, contracted);
+                }
+                for (int i = 0; i < in[v].size; i++) {
+                    int u = from[in[v].get(i)];
+                    contractedNeighbours[u]++;
+                    out[u].retainLive(to, contracted);
+                }
+            }
+            for (int v = 0; v < n; v++) if (core[v]) rank[v] = next++;
+        }
+
+        // Edge difference plus a uniformity term so contraction spreads across the network
+        double priority(int v) {
+            int degree = 0;
+            for (int i = 0; i < out[v].size; i++) if (!contracted[to[out[v].get(i)]]) degree++;
+            for (int i = 0; i < in[v].size; i++) if (!contracted[from[in[v].get(i)]]) degree++;
+            return contract(v, false) - degree + contractedNeighbours[v];
+        }
+
+        // Counts (and when apply is set, inserts) the shortcuts needed to bypass v
+        int contract(int v, boolean apply) {
+            int added = 0;
+            IntList ins = in[v], outs = out[v];
+            for (int i = 0; i < ins.size; i++) {
+                int e1 = ins.get(i), u = from[e1];
+                if (contracted[u]) continue;
+                double max = -1;
+                for (int j = 0; j < outs.size; j++) {
+                    int e2 = outs.get(j), w = to[e2];
+                    if (!contracted[w] && w != u) max = Math.max(max, weight[e1] + weight[e2]);
+                }
+                if (max < 0) continue;
+                witness(u, v, max, apply ? WITNESS_LIMIT : SIMULATION_WITNESS_LIMIT);
+                for (int j = 0; j < outs.size; j++) {
+                    int e2 = outs.get(j), w = to[e2];
+                    if (contracted[w] || w == u) continue;
+                    double via = weight[e1] + weight[e2];
+                    if (wmark[w] == wepoch && wdist[w] <= via) continue;
+                    added++;
+                    if (apply) addEdge(u, w, via, e1, e2);
+                }
+            }
+            return added;
+        }
+
+        // Bounded Dijkstra from u that avoids v and contracted airports
+        void witness(int u, int v, double max, int limit) {
+            if (++wepoch == Integer.MAX_VALUE) {
+                Arrays.fill(wmark, 0);
+                wepoch = 1;
+            }
+            wheap.clear();
+            wmark[u] = wepoch;
+            wdist[u] = 0;
+            wheap.push(u, 0);
+            int work = 0;
+            while (!wheap.isEmpty() && work < limit) {
+                if (wheap.peekKey() > max) break;
+                int x = wheap.pop();
+                double dx = wdist[x];
+                IntList adj = out[x];
+                work += adj.size;
+                for (int i = 0; i < adj.size; i++) {
+                    int e = adj.get(i), y = to[e];
+                    if (y == v || contracted[y]) continue;
+                    double alt = dx + weight[e];
+                    if (wmark[y] != wepoch) {
+                        wmark[y] = wepoch;
+                        wdist[y] = alt;
+                        wheap.push(y, alt);
+                    } else if (alt < wdist[y] && wheap.contains(y)) {
+                        wdist[y] = alt;
+                        wheap.decrease(y, alt);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            a[size++] = v;
+        }
+
+        int get(int i) { return a[i]; }
+
+        // Keeps edges whose endpoint (looked up in ends) is not contracted
+        void retainLive(int[] ends, boolean[] contracted) {
+            int k = 0;
+            for (int i = 0; i < size; i++) if (!contracted[ends[a[i]]]) a[k++] = a[i];
+            size = k;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public class FlightNetwork implements Serializable {
+    private static final long serialVersionUID = 6873570981420295369L;
+
     public static class Airport implements Serializable {
         public final String code, name, country;
         public final double latitude, longitude;
@@ -39,98 +44,544 @@ public class FlightNetwork implements Serializable {
         }
     }
 
-    private final Map<String, Airport> airports = new HashMap<>();
-    private final Map<String, List<Route>> routes = new HashMap<>();
+    // What a route search minimizes
+    public enum Metric { COST, DISTANCE, FLIGHT_TIME }
+
+    // AUTO uses a ready contraction hierarchy if one is enabled, otherwise A* for distance/flight time
+    // (great-circle bound) and bidirectional Dijkstra for cost
+    public enum SearchStrategy { AUTO, DIJKSTRA, A_STAR, BIDIRECTIONAL, CONTRACTION_HIERARCHY }
+
+    static final double CRUISE_KMH = 800.0; // Assumed average speed for flight times
+
+    // Writers (the mutators, batch, addAll) are serialized on this object. Each finished write publishes an
+    // immutable RouteGraph through a volatile field, and every read goes through the latest one without
+    // locking, so searches on worker threads never see a half-applied edit. The latest snapshot is also the
+    // writer's state: each edit derives the next one from it, rewriting only the rows it touches.
+    // Published snapshot, replaced by the writer after every write or batch
+    private transient volatile RouteGraph graph;
+    // Optional preprocessing, see enableHierarchies
+    private transient volatile ContractionHierarchy.Index hierarchyIndex;
+    // Bumped by every mutation; optional result cache in front of findRoute
+    private transient volatile long version;
+    private transient volatile RouteCache cache;
+    // Write-ahead log of mutations, attached by NetworkJournal.open
+    private transient volatile NetworkJournal journal;
+    // Optional search and write counters, see enableMetrics
+    private transient volatile SearchMetrics metrics;
+    // Optional flight schedule, and its connection scan over the snapshot it was last compiled for
+    private transient volatile Timetable timetable;
+    private transient volatile ConnectionScan connections;
+    // Nesting depth of batch(); publishing waits for the outermost one. Until then each edit derives from
+    // the batch's own pending snapshot.
+    private transient int batchDepth;
+    private transient RouteGraph batchGraph;
+
+    // The serialized form predates the snapshots: airports by code, and the routes as one list per origin
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("airports", Map.class), new ObjectStreamField("routes", Map.class)};
+
+    public FlightNetwork() {
+        graph = new RouteGraph();
+    }
+
+    // Over a snapshot read from somewhere else, e.g. a NetworkFile
+    FlightNetwork(RouteGraph g) {
+        graph = g;
+    }
 
+    // Writers append their journal record before publishing, and wait for it to be durable only after
+    // releasing the lock (see committed). Once the journal has failed, a write throws UncheckedIOException:
+    // the one that finds the failure in committed() after its edit is applied and visible (but maybe not
+    // durable), every later one before it changes anything, so the network is read-only from then on.
     public boolean addAirport(Airport a) {
-        if (a == null || airports.containsKey(a.code)) return false;
-        airports.put(a.code, a);
+        synchronized (this) {
+            if (a == null || latest().id(a.code) >= 0) return false;
+            NetworkJournal j = journal;
+            if (j != null) j.airportAdded(a);
+            long v = version++;
+            RouteCache c = cache;
+            if (c != null) c.airportAdded(v, version);
+            publish(g -> g.withAirport(a, version));
+        }
+        committed();
         return true;
     }
 
     public boolean removeAirport(String code) {
-        if (!airports.containsKey(code)) return false;
-        airports.remove(code);
-        routes.remove(code);
-        for (List<Route> rts : routes.values())
-            rts.removeIf(r -> r.to.equals(code));
+        synchronized (this) {
+            int x = latest().id(code);
+            if (x < 0) return false;
+            NetworkJournal j = journal;
+            if (j != null) j.airportRemoved(code);
+            long v = version++;
+            RouteCache c = cache;
+            if (c != null) c.airportRemoved(code, v, version);
+            publish(g -> g.withoutAirports(new int[]{x}, version));
+        }
+        committed();
         return true;
     }
 
+    // Removes every matching airport with its routes, e.g. a -> country.equals(a.country) to close a
+    // country. One version bump and cache reset for the whole batch; returns how many were removed.
+    public int removeAirports(Predicate<Airport> which) {
+        int[] doomed;
+        synchronized (this) {
+            RouteGraph w = latest();
+            doomed = new int[w.liveAirportCount];
+            int count = 0;
+            for (int i = 0; i < w.airportCount; i++)
+                if (w.alive(i) && which.test(w.airport(i))) doomed[count++] = i;
+            if (count == 0) return 0;
+            doomed = Arrays.copyOf(doomed, count);
+            NetworkJournal j = journal;
+            if (j != null)
+                for (int x : doomed) j.airportRemoved(w.code(x));
+            version++;
+            RouteCache c = cache;
+            if (c != null) c.clear();
+            int[] ids = doomed;
+            publish(g -> g.withoutAirports(ids, version));
+        }
+        committed();
+        return doomed.length;
+    }
+
     public boolean addRoute(String from, String to, double cost) {
-        if (!airports.containsKey(from) || !airports.containsKey(to)) return false;
-        double dist = haversine(airports.get(from).latitude, airports.get(from).longitude, airports.get(to).latitude, airports.get(to).longitude);
-        double flightTime = dist / 800.0; // Assume avg 800 km/h
-        Route r = new Route(from, to, cost, dist, flightTime);
-        routes.computeIfAbsent(from, k -> new ArrayList<>()).add(r);
+        synchronized (this) {
+            RouteGraph w = latest();
+            int s = w.id(from), t = w.id(to);
+            if (s < 0 || t < 0) return false;
+            Airport a = w.airport(s), b = w.airport(t);
+            double dist = haversine(a.latitude, a.longitude, b.latitude, b.longitude);
+            double flightTime = dist / CRUISE_KMH;
+            Route r = new Route(from, to, cost, dist, flightTime);
+            NetworkJournal j = journal;
+            if (j != null) j.routeAdded(from, to, cost);
+            long v = version++;
+            RouteCache c = cache;
+            if (c != null) c.routeAdded(r, a, b, v, version);
+            publish(g -> g.withRoute(r, version));
+        }
+        committed();
         return true;
     }
 
+    // Removes every route from -> to
     public boolean removeRoute(String from, String to) {
-        if (!routes.containsKey(from)) return false;
-        return routes.get(from).removeIf(r -> r.to.equals(to));
+        synchronized (this) {
+            RouteGraph w = latest();
+            int s = w.id(from), t = w.id(to);
+            if (s < 0 || t < 0 || w.edge(s, t) < 0) return false;
+            NetworkJournal j = journal;
+            if (j != null) j.routeRemoved(from, to);
+            long v = version++;
+            RouteCache c = cache;
+            if (c != null) c.routeRemoved(from, to, v, version);
+            publish(g -> g.withoutRoutes(s, t, version));
+        }
+        committed();
+        return true;
+    }
+
+    // Runs edits as one write: other writers wait, and readers keep the previous snapshot until the
+    // whole batch is published. Much cheaper than publishing after each of many small edits. If an edit
+    // throws (e.g. the journal failed), the edits before it are still published.
+    public void batch(Runnable edits) {
+        synchronized (this) {
+            batchDepth++;
+            try {
+                edits.run();
+            } finally {
+                if (--batchDepth == 0 && batchGraph != null) {
+                    RouteGraph pending = batchGraph;
+                    batchGraph = null;
+                    publish(g -> pending);
+                }
+            }
+        }
+        committed();
+    }
+
+    synchronized boolean inBatch() {
+        return batchDepth > 0;
+    }
+
+    // Snapshot the next write applies to: the published one, or the pending one of a batch. Writer only.
+    private RouteGraph latest() {
+        return batchGraph != null ? batchGraph : graph;
+    }
+
+    // Publishes the snapshot edit derives from the latest one. Inside a batch it becomes the batch's pending
+    // snapshot instead.
+    private void publish(UnaryOperator<RouteGraph> edit) {
+        if (batchDepth > 0) {
+            batchGraph = edit.apply(latest());
+            return;
+        }
+        SearchMetrics.SnapshotCompileEvent ev = SearchMetrics.SNAPSHOT_COMPILE.isEnabled() ? new SearchMetrics.SnapshotCompileEvent() : null;
+        if (ev != null) ev.begin();
+        long t0 = System.nanoTime();
+        RouteGraph g = edit.apply(graph);
+        graph = g;
+        SearchMetrics sm = metrics;
+        if (sm != null) {
+            sm.compiled(System.nanoTime() - t0);
+            sm.written();
+        }
+        if (ev != null) ev.commit(g);
+    }
+
+    // Runs after a write once this thread has released the lock: waits for the journal to make the write
+    // durable and maybe compacts it. Writes nested in a batch (or any caller still holding the lock) leave
+    // that to the outermost one, so an fsync never holds up other writers. Throws UncheckedIOException if
+    // the journal failed, by which time the write is already published.
+    private void committed() {
+        NetworkJournal j = journal;
+        if (j != null && !Thread.holdsLock(this)) j.committed();
+    }
+
+    // Only airports and routes are serialized; the snapshot is rebuilt from them
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Map<String, Airport> airports = (Map<String, Airport>) fields.get("airports", null);
+        Map<String, List<Route>> byOrigin = (Map<String, List<Route>>) fields.get("routes", null);
+        if (airports == null || byOrigin == null) throw new InvalidObjectException("Missing airports or routes");
+        List<Route> routes = new ArrayList<>();
+        for (List<Route> rts : byOrigin.values()) routes.addAll(rts);
+        graph = new RouteGraph().withAll(airports.values(), routes, 0);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        RouteGraph g = latest();
+        Map<String, Airport> airports = new HashMap<>();
+        Map<String, List<Route>> byOrigin = new HashMap<>();
+        for (int u = 0; u < g.airportCount; u++) {
+            if (!g.alive(u)) continue;
+            airports.put(g.code(u), g.airport(u));
+            if (g.begin(u) == g.end(u)) continue;
+            List<Route> rts = new ArrayList<>(g.end(u) - g.begin(u));
+            for (int e = g.begin(u); e < g.end(u); e++) rts.add(g.route(e));
+            byOrigin.put(g.code(u), rts);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("airports", airports);
+        fields.put("routes", byOrigin);
+        out.writeFields();
+    }
+
+    // Bulk insert for importers: existing airport codes are skipped, routes need both ends present.
+    // One version bump and cache reset instead of one per row.
+    void addAll(Collection<Airport> newAirports, Collection<Route> newRoutes) {
+        synchronized (this) {
+            RouteGraph w = latest();
+            NetworkJournal j = journal;
+            Set<String> added = new HashSet<>();
+            List<Airport> as = new ArrayList<>();
+            List<Route> rs = new ArrayList<>();
+            for (Airport a : newAirports)
+                if (w.id(a.code) < 0 && added.add(a.code)) {
+                    if (j != null) j.airportAdded(a);
+                    as.add(a);
+                }
+            for (Route r : newRoutes)
+                if ((w.id(r.from) >= 0 || added.contains(r.from)) && (w.id(r.to) >= 0 || added.contains(r.to))) {
+                    if (j != null) j.routeAdded(r.from, r.to, r.cost);
+                    rs.add(r);
+                }
+            version++;
+            RouteCache c = cache;
+            if (c != null) c.clear();
+            publish(g -> g.withAll(as, rs, version));
+        }
+        committed();
+    }
+
+    void attachJournal(NetworkJournal j) {
+        journal = j;
+    }
+
+    // Version of the published snapshot
+    public long version() {
+        return graph.version;
     }
 
     public List<Airport> getAirports() {
-        return new ArrayList<>(airports.values());
+        RouteGraph g = graph;
+        List<Airport> out = new ArrayList<>(g.liveAirportCount);
+        for (int i = 0; i < g.airportCount; i++)
+            if (g.alive(i)) out.add(g.airport(i));
+        return out;
     }
 
     public List<Route> getRoutesFrom(String airportCode) {
-        return routes.getOrDefault(airportCode, new ArrayList<>());
+        RouteGraph g = graph;
+        int u = g.id(airportCode);
+        if (u < 0) return new ArrayList<>();
+        List<Route> rts = new ArrayList<>(g.end(u) - g.begin(u));
+        for (int e = g.begin(u); e < g.end(u); e++) rts.add(g.route(e));
+        return rts;
+    }
+
+    public boolean hasRoute(String from, String to) {
+        RouteGraph g = graph;
+        int s = g.id(from), t = g.id(to);
+        return s >= 0 && t >= 0 && g.edge(s, t) >= 0;
+    }
+
+    // Routes from -> to (more than one if added twice), empty if none
+    public List<Route> getRoutes(String from, String to) {
+        RouteGraph g = graph;
+        int s = g.id(from), t = g.id(to);
+        List<Route> rts = new ArrayList<>();
+        for (int e = s < 0 || t < 0 ? -1 : g.edge(s, t); e >= 0; e = g.nextParallel(e)) rts.add(g.route(e));
+        return rts;
+    }
+
+    // Airports within radiusKm of a point, nearest first
+    public List<Airport> airportsWithin(double latitude, double longitude, double radiusKm) {
+        RouteGraph g = graph;
+        return airports(g, g.geo().within(latitude, longitude, radiusKm));
+    }
+
+    // The count airports nearest to a point, nearest first; e.g. alternates when an airport is closed
+    public List<Airport> nearestAirports(double latitude, double longitude, int count) {
+        RouteGraph g = graph;
+        return airports(g, g.geo().nearest(latitude, longitude, count));
+    }
+
+    private static List<Airport> airports(RouteGraph g, int[] ids) {
+        List<Airport> out = new ArrayList<>(ids.length);
+        for (int i : ids) out.add(g.airport(i));
+        return out;
     }
 
-    // Dijkstra for shortest path by cost or distance, with direct only option
+    // Latest published snapshot of the network; immutable, so safe to hold and share across threads
+    public RouteGraph graph() {
+        return graph;
+    }
+
+    // Shortest path by cost or distance, with direct only option
     public List<Route> findRoute(String start, String end, boolean byCost, boolean directOnly) {
-        if (!airports.containsKey(start) || !airports.containsKey(end)) return null;
-        Map<String, Double> dist = new HashMap<>();
-        Map<String, String> prev = new HashMap<>();
-        Map<String, Route> prevRoute = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        PriorityQueue<String> pq = new PriorityQueue<>(Comparator.comparingDouble(dist::get));
-        for (String code : airports.keySet()) dist.put(code, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-        pq.add(start);
-
-        while (!pq.isEmpty()) {
-            String u = pq.poll();
-            if (!visited.add(u)) continue;
-            if (u.equals(end)) break;
-            for (Route r : getRoutesFrom(u)) {
-                if (directOnly && !r.to.equals(end)) continue;
-                double alt = dist.get(u) + (byCost ? r.cost : r.distance);
-                if (alt < dist.get(r.to)) {
-                    dist.put(r.to, alt);
-                    prev.put(r.to, u);
-                    prevRoute.put(r.to, r);
-                    pq.add(r.to);
-                }
+        return findRoute(start, end, byCost ? Metric.COST : Metric.DISTANCE, SearchStrategy.AUTO, directOnly);
+    }
+
+    public List<Route> findRoute(String start, String end, Metric metric, SearchStrategy strategy, boolean directOnly) {
+        if (metrics == null && !SearchMetrics.ROUTE_SEARCH.isEnabled()) return search(start, end, metric, strategy, directOnly, null);
+        return findRoute(new SearchMetrics.Query(start, end, metric, directOnly), strategy);
+    }
+
+    // Runs the search q describes and fills q in with what it cost, recorded like any other; for callers that
+    // show the figures of their own search, which lastQuery may already have replaced with another thread's
+    List<Route> findRoute(SearchMetrics.Query q, SearchStrategy strategy) {
+        SearchMetrics sm = metrics;
+        SearchMetrics.RouteSearchEvent ev = SearchMetrics.ROUTE_SEARCH.isEnabled() ? new SearchMetrics.RouteSearchEvent() : null;
+        if (ev != null) ev.begin();
+        long t0 = System.nanoTime();
+        List<Route> path = search(q.start, q.end, q.metric, strategy, q.directOnly, q);
+        q.finish(path, System.nanoTime() - t0);
+        if (sm != null) sm.record(q);
+        if (ev != null) ev.commit(q);
+        return path;
+    }
+
+    // findRoute proper; q, when given, is told which search ran
+    private List<Route> search(String start, String end, Metric metric, SearchStrategy strategy, boolean directOnly,
+                               SearchMetrics.Query q) {
+        RouteGraph g = graph;
+        int s = g.id(start), t = g.id(end);
+        // A hash lookup on the snapshot, not worth caching
+        if (directOnly) return g.shortestPath(s, t, metric, strategy, true);
+        long v = g.version;
+        RouteCache c = cache;
+        RouteCache.Key key = null;
+        if (c != null) {
+            key = new RouteCache.Key(start, end, metric);
+            List<Route> hit = c.get(key, v);
+            if (hit != null) {
+                if (q != null) q.cacheHit = true;
+                return hit == RouteCache.NO_ROUTE ? null : hit;
             }
         }
-        if (!prevRoute.containsKey(end)) return null;
-        LinkedList<Route> path = new LinkedList<>();
-        String cur = end;
-        while (!cur.equals(start)) {
-            Route r = prevRoute.get(cur);
-            path.addFirst(r);
-            cur = prev.get(cur);
+        ContractionHierarchy ch = null;
+        if (strategy == SearchStrategy.AUTO || strategy == SearchStrategy.CONTRACTION_HIERARCHY) {
+            ContractionHierarchy.Index idx = hierarchyIndex;
+            ch = idx == null ? null : idx.get(g, metric);
+            if (ch == null) strategy = SearchStrategy.AUTO; // Index missing or rebuilding
         }
+        if (q != null && s >= 0 && t >= 0 && s != t)
+            q.strategy = ch != null ? SearchStrategy.CONTRACTION_HIERARCHY : RouteGraph.plan(metric, strategy);
+        List<Route> path = ch != null ? ch.shortestPath(s, t) : g.shortestPath(s, t, metric, strategy, false);
+        if (c != null && s >= 0 && t >= 0) c.put(key, path, metric, g.airport(s), g.airport(t), v);
         return path;
     }
 
+    // Pareto front of routes start -> end over cost, distance, flight time and number of flights, cheapest
+    // first, using at most maxHops flights. epsilon = 0 gives the exact front; e.g. 0.05 drops options
+    // within 5% of another on cost, distance and time, which is much faster on large networks.
+    public List<ParetoSearch.Option> findRouteOptions(String start, String end, double epsilon, int maxHops) {
+        RouteGraph g = graph;
+        return ParetoSearch.search(g, g.id(start), g.id(end), epsilon, maxHops);
+    }
+
+    public void setTimetable(Timetable t) {
+        timetable = t;
+    }
+
+    // Null unless setTimetable was called
+    public Timetable timetable() {
+        return timetable;
+    }
+
+    // Connection scan engine for the timetable over the current snapshot, rebuilt after edits; null
+    // without a timetable
+    public ConnectionScan connections() {
+        Timetable tt = timetable;
+        if (tt == null) return null;
+        RouteGraph g = graph;
+        ConnectionScan cs = connections;
+        if (cs == null || cs.graph != g || cs.timetable != tt) connections = cs = new ConnectionScan(g, tt);
+        return cs;
+    }
+
+    // Scheduled journey reaching end first when leaving start at or after departAfter (minute of the week,
+    // see Timetable); null without a timetable or a connection
+    public ConnectionScan.Journey earliestArrival(String start, String end, int departAfter) {
+        ConnectionScan cs = connections();
+        return cs == null ? null : cs.earliestArrival(cs.graph.id(start), cs.graph.id(end), departAfter);
+    }
+
+    // Best journeys leaving start between two minutes of the week, earliest departure first
+    public List<ConnectionScan.Journey> departureProfile(String start, String end, int from, int to) {
+        ConnectionScan cs = connections();
+        return cs == null ? new ArrayList<>() : cs.profile(cs.graph.id(start), cs.graph.id(end), from, to);
+    }
+
+    // Puts a bounded LRU cache (about maxBytes of heap) in front of findRoute
+    public void enableCache(long maxBytes) {
+        cache = new RouteCache(maxBytes);
+    }
+
+    public void disableCache() {
+        cache = null;
+    }
+
+    public RouteCache routeCache() {
+        return cache;
+    }
+
+    // Starts counting searches and writes (see SearchMetrics); returns the counters, which can also be
+    // registered with JMX
+    public synchronized SearchMetrics enableMetrics() {
+        SearchMetrics sm = metrics;
+        if (sm == null) metrics = sm = new SearchMetrics();
+        return sm;
+    }
+
+    public void disableMetrics() {
+        SearchMetrics sm = metrics;
+        metrics = null;
+        if (sm != null) sm.unregister();
+    }
+
+    // Null unless enableMetrics was called
+    public SearchMetrics metrics() {
+        return metrics;
+    }
+
+    // Best totals between every origin and destination, one search per origin spread across the
+    // common fork/join pool. keepPaths retains predecessor trees so RouteMatrix.path can rebuild routes.
+    public RouteMatrix routeMatrix(List<String> origins, List<String> destinations, Metric metric, boolean keepPaths) {
+        return routeMatrix(origins, destinations, metric, keepPaths, null);
+    }
+
+    public RouteMatrix routeMatrix(List<String> origins, List<String> destinations, Metric metric, boolean keepPaths,
+                                   ExecutorService executor) {
+        return RouteMatrix.compute(graph(), origins, destinations, metric, keepPaths, executor);
+    }
+
+    // Every airport reachable from airport within budget on one metric (e.g. COST 500, FLIGHT_TIME 12), with
+    // best totals and paths, from one search that stops at the budget. reverse gives the airports that can
+    // reach airport within budget instead.
+    public Reachability reachable(String airport, Metric metric, double budget, boolean reverse) {
+        RouteGraph g = graph;
+        return Reachability.compute(g, airport, metric, g.weights(metric), budget, reverse);
+    }
+
+    // Same, bounded by the number of stops instead; maxStops = 0 is nonstop only
+    public Reachability reachableWithStops(String airport, int maxStops, boolean reverse) {
+        RouteGraph g = graph;
+        return Reachability.compute(g, airport, null, null, maxStops + 1.0, reverse);
+    }
+
+    // Preprocess contraction hierarchies for the given metrics, now or in the background. After an edit
+    // the old index is ignored and rebuilt off-thread; queries use plain search until it is ready.
+    public void enableHierarchies(boolean background, Metric... metrics) {
+        ContractionHierarchy.Index idx = new ContractionHierarchy.Index(metrics);
+        RouteGraph g = graph();
+        for (Metric m : idx.metrics) {
+            if (background) idx.get(g, m);
+            else idx.put(ContractionHierarchy.build(g, m));
+        }
+        hierarchyIndex = idx;
+    }
+
+    public void disableHierarchies() {
+        hierarchyIndex = null;
+    }
+
+    // Compact binary format (see NetworkFile)
     public void saveToFile(String filename) throws IOException {
+        NetworkFile.write(this, Paths.get(filename));
+    }
+
+    // Java serialization, kept so older tools can still read what we write
+    public void saveLegacy(String filename) throws IOException {
         try (ObjectOutputStream o = new ObjectOutputStream(new FileOutputStream(filename))) {
             o.writeObject(this);
         }
     }
 
+    // Reads the binary format (decoded lazily, see NetworkFile.toNetwork), or a legacy serialized network
+    // restricted to the classes it can contain
     public static FlightNetwork loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        if (NetworkFile.isBinary(Paths.get(filename))) return NetworkFile.open(Paths.get(filename)).toNetwork();
         try (ObjectInputStream o = new ObjectInputStream(new FileInputStream(filename))) {
+            o.setObjectInputFilter(LEGACY_FILTER);
             return (FlightNetwork) o.readObject();
         }
     }
 
+    // Exactly the classes a saved network contains. HashMap and ArrayList also size-check their backing
+    // arrays while reading, which the filter sees as Map.Entry[] and Object[]; Object and Map.Entry themselves stay out.
+    private static final Set<Class<?>> LEGACY_CLASSES = Set.of(FlightNetwork.class, Airport.class, Route.class,
+            HashMap.class, ArrayList.class, String.class, Map.Entry[].class, Object[].class);
+    private static final ObjectInputFilter LEGACY_FILTER = info -> {
+        if (info.depth() > 16) return ObjectInputFilter.Status.REJECTED;
+        if (info.serialClass() == null) return ObjectInputFilter.Status.UNDECIDED;
+        return LEGACY_CLASSES.contains(info.serialClass()) ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+    };
+
+    static double weight(Route r, Metric metric) {
+        switch (metric) {
+            case COST: return r.cost;
+            case DISTANCE: return r.distance;
+            default: return r.flightTime;
+        }
+    }
+
+    // Metric per great-circle km that no route can undercut; route distances are haversine by construction
+    static double lowerBoundPerKm(Metric metric) {
+        switch (metric) {
+            case DISTANCE: return 1 - 1e-9;
+            case FLIGHT_TIME: return (1 - 1e-9) / CRUISE_KMH;
+            default: return 0;
+        }
+    }
+
     // Haversine distance in km
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
         double dLat = Math.toRadians(lat2 - lat1), dLon = Math.toRadians(lon2 - lon1);
         double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
                 + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
@@ -1,6 +1,7 @@
 import javafx.application.Application;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.*;
+import javafx.concurrent.Task;
 import javafx.geometry.*;
 import javafx.scene.*;
 import javafx.scene.canvas.*;
@@ -11,18 +12,38 @@ import javafx.scene.paint.*;
 import javafx.scene.text.*;
 import javafx.stage.*;
 import java.io.*;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class FlightTrackerApp extends Application {
+    private static final long ROUTE_CACHE_BYTES = 8L << 20;
+    // JMX name of the open network's SearchMetrics
+    private static final String METRICS_NAME = "FlightTrackerApp";
+    // "Options" lists tradeoffs within 5% of each other as one and stops at three connections
+    private static final double OPTIONS_EPSILON = 0.05;
+    private static final int OPTIONS_MAX_HOPS = 4;
     private FlightNetwork net = new FlightNetwork();
     private final ObservableList<String> airportList = FXCollections.observableArrayList();
-    private final Canvas mapCanvas = new Canvas(800, 500);
+    private final Canvas mapCanvas = new Canvas(800, 500), overlayCanvas = new Canvas(800, 500);
+    private final MapRenderer renderer = new MapRenderer(mapCanvas, overlayCanvas);
     private boolean darkMode = false;
+    // Searches and file I/O run here so the FX thread never blocks on them
+    private final ExecutorService background = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "flight-tracker-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    // Running route search, if any; a newer query or changed input cancels it
+    private Task<?> searchTask;
 
     @Override
     public void start(Stage stage) {
         stage.setTitle("Flight Route Tracker");
+        net.enableCache(ROUTE_CACHE_BYTES);
+        net.enableMetrics().register(METRICS_NAME);
 
         BorderPane root = new BorderPane();
         root.setPadding(new Insets(10));
@@ -51,23 +72,43 @@ public class FlightTrackerApp extends Application {
         CheckBox cheapestCB = new CheckBox("Cheapest");
         CheckBox directCB = new CheckBox("Direct only");
         Button searchBtn = new Button("Find Route");
-        HBox searchBox = new HBox(5, new Label("From:"), searchFromCB, new Label("To:"), searchToCB, cheapestCB, directCB, searchBtn);
+        Button optionsBtn = new Button("Options");
+        ProgressIndicator searchProgress = new ProgressIndicator();
+        searchProgress.setPrefSize(18, 18);
+        searchProgress.setVisible(false);
+        HBox searchBox = new HBox(5, new Label("From:"), searchFromCB, new Label("To:"), searchToCB, cheapestCB, directCB, searchBtn, optionsBtn, searchProgress);
+
+        // Reachable region from the search "From" airport (or, reversed, the airports that can reach it)
+        TextField budgetField = new TextField();
+        budgetField.setPromptText("Budget");
+        budgetField.setPrefWidth(70);
+        ComboBox<String> budgetKindCB = new ComboBox<>(FXCollections.observableArrayList("$", "km", "hours", "stops"));
+        budgetKindCB.setValue("$");
+        CheckBox reverseCB = new CheckBox("Reverse");
+        Button reachBtn = new Button("Reachable");
+        HBox reachBox = new HBox(5, new Label("Within:"), budgetField, budgetKindCB, reverseCB, reachBtn);
 
         // File save/load
         Button saveBtn = new Button("Save Network"), loadBtn = new Button("Load Network");
+        Button timetableBtn = new Button("Load Timetable");
         Button darkModeBtn = new Button("Dark Mode");
-        HBox fileBox = new HBox(5, saveBtn, loadBtn, darkModeBtn);
+        HBox fileBox = new HBox(5, saveBtn, loadBtn, timetableBtn, darkModeBtn);
 
         // Error message label
         Label msgLabel = new Label("Ready.");
         msgLabel.setTextFill(Color.GREEN);
         msgLabel.setWrapText(true);
+        // What the last search cost: strategy, airports settled, time
+        Label statsLabel = new Label();
+        statsLabel.setFont(Font.font(11));
+        statsLabel.setTextFill(Color.GRAY);
+        statsLabel.setWrapText(true);
 
-        VBox left = new VBox(15, airportBox, routeBox, searchBox, fileBox, msgLabel);
+        VBox left = new VBox(15, airportBox, routeBox, searchBox, reachBox, fileBox, msgLabel, statsLabel);
         left.setPrefWidth(300);
 
         // Map visualization
-        StackPane mapPane = new StackPane(mapCanvas);
+        StackPane mapPane = new StackPane(mapCanvas, overlayCanvas);
         mapPane.setStyle("-fx-background-color: #f4f4f4;"); // Light bg
 
         root.setLeft(left);
@@ -87,8 +128,14 @@ public class FlightTrackerApp extends Application {
         cheapestCB.setAccessibleText("Search for cheapest");
         directCB.setAccessibleText("Direct flights only");
         searchBtn.setAccessibleText("Search route");
+        optionsBtn.setAccessibleText("List routes trading off cost, distance, time and stops");
+        budgetField.setAccessibleText("Budget for reachable airports");
+        budgetKindCB.setAccessibleText("Budget unit");
+        reverseCB.setAccessibleText("Airports that can reach the selected one instead");
+        reachBtn.setAccessibleText("Show airports within budget");
         saveBtn.setAccessibleText("Save network");
         loadBtn.setAccessibleText("Load network");
+        timetableBtn.setAccessibleText("Load flight timetable");
 
         // Populate airport list UI when model changes
         Runnable updateAirportList = () -> {
@@ -159,7 +206,10 @@ public class FlightTrackerApp extends Application {
             try {
                 double cost = Double.parseDouble(costField.getText());
                 String fromCode = from.split(" ")[0], toCode = to.split(" ")[0];
-                if (net.addRoute(fromCode, toCode, cost)) {
+                if (net.hasRoute(fromCode, toCode)) {
+                    msgLabel.setText("Route " + fromCode + "->" + toCode + " already exists.");
+                    msgLabel.setTextFill(Color.RED);
+                } else if (net.addRoute(fromCode, toCode, cost)) {
                     msgLabel.setText("Added route " + fromCode + "->" + toCode);
                     msgLabel.setTextFill(Color.GREEN);
                     drawMap(null);
@@ -198,36 +248,195 @@ public class FlightTrackerApp extends Application {
             }
             String fromCode = from.split(" ")[0], toCode = to.split(" ")[0];
             boolean byCost = cheapestCB.isSelected(), directOnly = directCB.isSelected();
-            List<FlightNetwork.Route> path = net.findRoute(fromCode, toCode, byCost, directOnly);
-            if (path == null) {
-                msgLabel.setText("No route found.");
+            cancelSearch();
+            FlightNetwork searched = net;
+            int departAfter = Timetable.minuteOfWeek(LocalDateTime.now());
+            // With a timetable, the route flown on the next flights that connect
+            ConnectionScan.Journey[] scheduled = new ConnectionScan.Journey[1];
+            // What this search cost; filled in by findRoute on the task's thread
+            SearchMetrics.Query query = new SearchMetrics.Query(fromCode, toCode,
+                    byCost ? FlightNetwork.Metric.COST : FlightNetwork.Metric.DISTANCE, directOnly);
+            Task<List<FlightNetwork.Route>> task = new Task<List<FlightNetwork.Route>>() {
+                @Override
+                protected List<FlightNetwork.Route> call() {
+                    List<FlightNetwork.Route> path = searched.findRoute(query, FlightNetwork.SearchStrategy.AUTO);
+                    ConnectionScan cs = path == null ? null : searched.connections();
+                    if (cs != null) scheduled[0] = cs.follow(path, departAfter);
+                    return path;
+                }
+            };
+            searchTask = task;
+            searchProgress.visibleProperty().bind(task.runningProperty());
+            task.setOnSucceeded(ev -> {
+                if (searchTask == task) searchTask = null;
+                statsLabel.setText(searched.metrics() == null ? "" : query.toString());
+                List<FlightNetwork.Route> path = task.getValue();
+                if (path == null) {
+                    msgLabel.setText("No route found.");
+                    msgLabel.setTextFill(Color.RED);
+                    drawMap(null);
+                } else {
+                    double totalCost = path.stream().mapToDouble(r -> r.cost).sum();
+                    double totalDist = path.stream().mapToDouble(r -> r.distance).sum();
+                    double totalTime = path.stream().mapToDouble(r -> r.flightTime).sum();
+                    String time = scheduled[0] != null ? scheduled[0].toString()
+                            : String.format("%.1f h", totalTime) + (searched.timetable() != null ? " in the air (no connecting flights)" : "");
+                    msgLabel.setText("Route: " + path + "\nTotal: $" + String.format("%.2f", totalCost)
+                            + ", " + String.format("%.1f km", totalDist) + ", " + time);
+                    msgLabel.setTextFill(Color.DARKBLUE);
+                    drawMap(path);
+                }
+            });
+            task.setOnFailed(ev -> {
+                if (searchTask == task) searchTask = null;
+                msgLabel.setText("Search failed: " + task.getException().getMessage());
                 msgLabel.setTextFill(Color.RED);
-                drawMap(null);
-            } else {
-                double totalCost = path.stream().mapToDouble(r -> r.cost).sum();
-                double totalDist = path.stream().mapToDouble(r -> r.distance).sum();
-                double totalTime = path.stream().mapToDouble(r -> r.flightTime).sum();
-                msgLabel.setText("Route: " + path + "\nTotal: $" + String.format("%.2f", totalCost)
-                        + ", " + String.format("%.1f km", totalDist)
-                        + ", " + String.format("%.1f h", totalTime));
-                msgLabel.setTextFill(Color.DARKBLUE);
-                drawMap(path);
+            });
+            msgLabel.setText("Searching\u2026");
+            msgLabel.setTextFill(darkMode ? Color.LIGHTGRAY : Color.GRAY);
+            statsLabel.setText("");
+            background.execute(task);
+        });
+
+        // Every route no other beats on cost, distance, flight time and stops at once; the cheapest is drawn
+        optionsBtn.setOnAction(e -> {
+            String from = searchFromCB.getValue(), to = searchToCB.getValue();
+            if (from == null || to == null) {
+                msgLabel.setText("Select both airports.");
+                msgLabel.setTextFill(Color.RED); return;
             }
+            String fromCode = from.split(" ")[0], toCode = to.split(" ")[0];
+            int maxHops = directCB.isSelected() ? 1 : OPTIONS_MAX_HOPS;
+            cancelSearch();
+            FlightNetwork searched = net;
+            Task<List<ParetoSearch.Option>> task = new Task<List<ParetoSearch.Option>>() {
+                @Override
+                protected List<ParetoSearch.Option> call() {
+                    return searched.findRouteOptions(fromCode, toCode, OPTIONS_EPSILON, maxHops);
+                }
+            };
+            searchTask = task;
+            searchProgress.visibleProperty().bind(task.runningProperty());
+            task.setOnSucceeded(ev -> {
+                if (searchTask == task) searchTask = null;
+                List<ParetoSearch.Option> options = task.getValue();
+                if (options.isEmpty()) {
+                    msgLabel.setText("No route found.");
+                    msgLabel.setTextFill(Color.RED);
+                    drawMap(null);
+                } else {
+                    StringBuilder sb = new StringBuilder(options.size() + (options.size() == 1 ? " option:" : " options:"));
+                    for (ParetoSearch.Option o : options) sb.append("\n").append(o).append(": ").append(o.path);
+                    msgLabel.setText(sb.toString());
+                    msgLabel.setTextFill(Color.DARKBLUE);
+                    drawMap(options.get(0).path);
+                }
+            });
+            task.setOnFailed(ev -> {
+                if (searchTask == task) searchTask = null;
+                msgLabel.setText("Search failed: " + task.getException().getMessage());
+                msgLabel.setTextFill(Color.RED);
+            });
+            msgLabel.setText("Searching\u2026");
+            msgLabel.setTextFill(darkMode ? Color.LIGHTGRAY : Color.GRAY);
+            statsLabel.setText("");
+            background.execute(task);
         });
 
+        // One search bounded by the budget, shaded on the map
+        reachBtn.setOnAction(e -> {
+            String from = searchFromCB.getValue();
+            if (from == null) {
+                msgLabel.setText("Select a From airport.");
+                msgLabel.setTextFill(Color.RED); return;
+            }
+            String amount = budgetField.getText().trim();
+            double budget;
+            try {
+                budget = Double.parseDouble(amount);
+                if (!(budget >= 0) || Double.isInfinite(budget)) throw new NumberFormatException();
+            } catch (NumberFormatException ex) {
+                msgLabel.setText("Enter a valid budget.");
+                msgLabel.setTextFill(Color.RED); return;
+            }
+            String code = from.split(" ")[0], kind = budgetKindCB.getValue();
+            boolean reverse = reverseCB.isSelected();
+            String within = kind.equals("$") ? "$" + amount : amount + " " + kind;
+            cancelSearch();
+            FlightNetwork searched = net;
+            Task<Reachability> task = new Task<Reachability>() {
+                @Override
+                protected Reachability call() {
+                    switch (kind) {
+                        case "stops": return searched.reachableWithStops(code, (int) budget, reverse);
+                        case "km": return searched.reachable(code, FlightNetwork.Metric.DISTANCE, budget, reverse);
+                        case "hours": return searched.reachable(code, FlightNetwork.Metric.FLIGHT_TIME, budget, reverse);
+                        default: return searched.reachable(code, FlightNetwork.Metric.COST, budget, reverse);
+                    }
+                }
+            };
+            searchTask = task;
+            searchProgress.visibleProperty().bind(task.runningProperty());
+            task.setOnSucceeded(ev -> {
+                if (searchTask == task) searchTask = null;
+                Reachability r = task.getValue();
+                // Empty when the airport was removed while the search was queued
+                if (r.size() == 0) {
+                    msgLabel.setText(code + " is no longer in the network.");
+                    msgLabel.setTextFill(Color.RED);
+                    drawMap(null);
+                    return;
+                }
+                msgLabel.setText((r.size() - 1) + (r.size() == 2 ? " airport " : " airports ") + (reverse ? "can reach " + code : "reachable from " + code)
+                        + " within " + within + ".");
+                msgLabel.setTextFill(Color.DARKBLUE);
+                drawMap(null, r);
+            });
+            task.setOnFailed(ev -> {
+                if (searchTask == task) searchTask = null;
+                msgLabel.setText("Search failed: " + task.getException().getMessage());
+                msgLabel.setTextFill(Color.RED);
+            });
+            msgLabel.setText("Searching\u2026");
+            msgLabel.setTextFill(darkMode ? Color.LIGHTGRAY : Color.GRAY);
+            statsLabel.setText("");
+            background.execute(task);
+        });
+
+        // Changing the query makes a running search stale; drop it right away rather than wait for it
+        ChangeListener<Object> staleSearch = (obs, oldV, newV) -> {
+            if (cancelSearch()) {
+                msgLabel.setText("Search cancelled.");
+                msgLabel.setTextFill(darkMode ? Color.LIGHTGRAY : Color.GRAY);
+            }
+        };
+        searchFromCB.valueProperty().addListener(staleSearch);
+        searchToCB.valueProperty().addListener(staleSearch);
+        cheapestCB.selectedProperty().addListener(staleSearch);
+        directCB.selectedProperty().addListener(staleSearch);
+
         saveBtn.setOnAction(e -> {
             FileChooser fc = new FileChooser();
             fc.setTitle("Save Network");
             File f = fc.showSaveDialog(stage);
             if (f != null) {
-                try {
-                    net.saveToFile(f.getAbsolutePath());
+                FlightNetwork saved = net;
+                Task<Void> task = new Task<Void>() {
+                    @Override
+                    protected Void call() throws Exception {
+                        saved.saveToFile(f.getAbsolutePath());
+                        return null;
+                    }
+                };
+                task.setOnSucceeded(ev -> {
                     msgLabel.setText("Saved!");
                     msgLabel.setTextFill(Color.GREEN);
-                } catch (Exception ex) {
+                });
+                task.setOnFailed(ev -> {
                     msgLabel.setText("Failed to save.");
                     msgLabel.setTextFill(Color.RED);
-                }
+                });
+                runFileTask(task, "Saving\u2026", msgLabel, saveBtn, loadBtn);
             }
         });
 
@@ -236,15 +445,58 @@ public class FlightTrackerApp extends Application {
             fc.setTitle("Load Network");
             File f = fc.showOpenDialog(stage);
             if (f != null) {
-                try {
-                    net = FlightNetwork.loadFromFile(f.getAbsolutePath());
+                Task<FlightNetwork> task = new Task<FlightNetwork>() {
+                    @Override
+                    protected FlightNetwork call() throws Exception {
+                        FlightNetwork loaded = FlightNetwork.loadFromFile(f.getAbsolutePath());
+                        loaded.enableCache(ROUTE_CACHE_BYTES);
+                        loaded.enableMetrics();
+                        return loaded;
+                    }
+                };
+                task.setOnSucceeded(ev -> {
+                    cancelSearch();
+                    net.disableMetrics();
+                    net = task.getValue();
+                    net.metrics().register(METRICS_NAME);
                     msgLabel.setText("Loaded!");
                     msgLabel.setTextFill(Color.GREEN);
                     updateAirportList.run();
-                } catch (Exception ex) {
+                });
+                task.setOnFailed(ev -> {
                     msgLabel.setText("Failed to load.");
                     msgLabel.setTextFill(Color.RED);
-                }
+                });
+                runFileTask(task, "Loading\u2026", msgLabel, saveBtn, loadBtn);
+            }
+        });
+
+        timetableBtn.setOnAction(e -> {
+            FileChooser fc = new FileChooser();
+            fc.setTitle("Load Timetable");
+            File f = fc.showOpenDialog(stage);
+            if (f != null) {
+                FlightNetwork scheduledNet = net;
+                Task<Timetable> task = new Task<Timetable>() {
+                    @Override
+                    protected Timetable call() throws Exception {
+                        Timetable tt = Timetable.read(f.toPath(), scheduledNet);
+                        scheduledNet.setTimetable(tt);
+                        scheduledNet.connections(); // Compile the scan now rather than on the first search
+                        return tt;
+                    }
+                };
+                task.setOnSucceeded(ev -> {
+                    Timetable tt = task.getValue();
+                    msgLabel.setText("Loaded " + tt.flights.size() + " flights" + (tt.problems.isEmpty() ? "." : ", skipped "
+                            + tt.problems.size() + " rows (first: " + tt.problems.get(0) + ")"));
+                    msgLabel.setTextFill(tt.problems.isEmpty() ? Color.GREEN : Color.ORANGE);
+                });
+                task.setOnFailed(ev -> {
+                    msgLabel.setText("Failed to load timetable.");
+                    msgLabel.setTextFill(Color.RED);
+                });
+                runFileTask(task, "Loading timetable\u2026", msgLabel, timetableBtn);
             }
         });
 
@@ -252,18 +504,30 @@ public class FlightTrackerApp extends Application {
             darkMode = !darkMode;
             mapPane.setStyle(darkMode ? "-fx-background-color: #222;" : "-fx-background-color: #f4f4f4;");
             darkModeBtn.setText(darkMode ? "Light Mode" : "Dark Mode");
+            renderer.setDarkMode(darkMode);
             drawMap(null);
         });
 
         // Responsive map
-        ChangeListener<Number> resizeListener = (obs, oldV, newV) -> {
-            mapCanvas.setWidth(mapPane.getWidth());
-            mapCanvas.setHeight(mapPane.getHeight());
-            drawMap(null);
-        };
+        ChangeListener<Number> resizeListener = (obs, oldV, newV) -> renderer.resizeLater(mapPane.getWidth(), mapPane.getHeight());
         mapPane.widthProperty().addListener(resizeListener);
         mapPane.heightProperty().addListener(resizeListener);
 
+        // Airport metadata on hover; one tooltip, updated only when the airport under the mouse changes
+        Tooltip hoverTip = new Tooltip();
+        FlightNetwork.Airport[] hovered = new FlightNetwork.Airport[1];
+        overlayCanvas.setOnMouseMoved(e -> {
+            FlightNetwork.Airport a = renderer.airportAt(e.getX(), e.getY());
+            if (a == hovered[0]) return;
+            if (a != null) {
+                hoverTip.setText(a.toString() + "\nLat: " + a.latitude + ", Lon: " + a.longitude);
+                if (hovered[0] == null) Tooltip.install(overlayCanvas, hoverTip);
+            } else {
+                Tooltip.uninstall(overlayCanvas, hoverTip);
+            }
+            hovered[0] = a;
+        });
+
         Scene scene = new Scene(root, 1050, 650);
         scene.getStylesheets().add(getClass().getResource("flighttracker.css") == null ? "" : getClass().getResource("flighttracker.css").toExternalForm());
         if (darkMode) scene.getRoot().setStyle("-fx-base: #222; -fx-text-fill: #fff;");
@@ -275,66 +539,35 @@ public class FlightTrackerApp extends Application {
         stage.show();
     }
 
+    // True if a running search was cancelled. Interrupting lets the search stop within a few thousand
+    // settled airports; its result is never shown either way.
+    private boolean cancelSearch() {
+        Task<?> task = searchTask;
+        searchTask = null;
+        return task != null && task.cancel(true);
+    }
+
+    // Runs a load or save in the background with both file buttons disabled until it finishes
+    private void runFileTask(Task<?> task, String status, Label msgLabel, Button... buttons) {
+        for (Button b : buttons) b.disableProperty().bind(task.runningProperty());
+        msgLabel.setText(status);
+        msgLabel.setTextFill(darkMode ? Color.LIGHTGRAY : Color.GRAY);
+        background.execute(task);
+    }
+
+    @Override
+    public void stop() {
+        background.shutdownNow();
+    }
+
     // Draw airports as nodes, routes as lines, highlight path if present
     private void drawMap(List<FlightNetwork.Route> highlightPath) {
-        GraphicsContext gc = mapCanvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
-        double w = mapCanvas.getWidth(), h = mapCanvas.getHeight();
-        // Get all airports and map lat/lon to screen
-        List<FlightNetwork.Airport> airports = net.getAirports();
-        if (airports.isEmpty()) return;
-        double minLat = airports.stream().mapToDouble(a -> a.latitude).min().getAsDouble();
-        double maxLat = airports.stream().mapToDouble(a -> a.latitude).max().getAsDouble();
-        double minLon = airports.stream().mapToDouble(a -> a.longitude).min().getAsDouble();
-        double maxLon = airports.stream().mapToDouble(a -> a.longitude).max().getAsDouble();
-        Map<String, Point2D> posMap = new HashMap<>();
-        for (FlightNetwork.Airport a : airports) {
-            double x = (a.longitude - minLon) / (maxLon - minLon + 0.01) * (w - 100) + 50;
-            double y = (maxLat - a.latitude) / (maxLat - minLat + 0.01) * (h - 100) + 50;
-            posMap.put(a.code, new Point2D(x, y));
-        }
-        // Draw routes
-        for (FlightNetwork.Airport a : airports) {
-            for (FlightNetwork.Route r : net.getRoutesFrom(a.code)) {
-                Point2D from = posMap.get(r.from), to = posMap.get(r.to);
-                if (from == null || to == null) continue;
-                gc.setStroke(Color.GRAY);
-                gc.setLineWidth(2);
-                gc.strokeLine(from.getX(), from.getY(), to.getX(), to.getY());
-            }
-        }
-        // Highlighted path
-        if (highlightPath != null) {
-            gc.setStroke(Color.ORANGE);
-            gc.setLineWidth(4.5);
-            for (FlightNetwork.Route r : highlightPath) {
-                Point2D from = posMap.get(r.from), to = posMap.get(r.to);
-                gc.strokeLine(from.getX(), from.getY(), to.getX(), to.getY());
-            }
-        }
-        // Draw airports
-        for (FlightNetwork.Airport a : airports) {
-            Point2D p = posMap.get(a.code);
-            gc.setFill(Color.AQUA);
-            gc.fillOval(p.getX() - 8, p.getY() - 8, 16, 16);
-            gc.setStroke(Color.DARKBLUE);
-            gc.strokeOval(p.getX() - 8, p.getY() - 8, 16, 16);
-            gc.setFill(darkMode ? Color.WHITE : Color.BLACK);
-            gc.setFont(Font.font("Arial", FontWeight.BOLD, 13));
-            gc.fillText(a.code, p.getX() + 9, p.getY() + 5);
-        }
-        // Airport metadata on hover
-        mapCanvas.setOnMouseMoved(e -> {
-            for (FlightNetwork.Airport a : airports) {
-                Point2D p = posMap.get(a.code);
-                if (p.distance(e.getX(), e.getY()) < 14) {
-                    Tooltip t = new Tooltip(a.toString() + "\nLat: " + a.latitude + ", Lon: " + a.longitude);
-                    Tooltip.install(mapCanvas, t);
-                    return;
-                }
-            }
-            Tooltip.uninstall(mapCanvas, null);
-        });
+        drawMap(highlightPath, null);
+    }
+
+    // Also shades a reachable region
+    private void drawMap(List<FlightNetwork.Route> highlightPath, Reachability reachable) {
+        renderer.draw(net.graph(), highlightPath, reachable);
     }
 
     public static void main(String[] args) {
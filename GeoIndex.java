@@ -0,0 +1,98 @@
+import java.util.*;
+
+// Latitude/longitude grid over the airports of one RouteGraph snapshot. Radius queries only visit the
+// cells overlapping the circle's bounding box; nearest-N widens the radius until enough airports are found.
+public final class GeoIndex {
+    private static final double CELL_DEG = 2.0, EARTH_KM = 6371.0;
+    private static final int ROWS = 90, COLS = 180;
+
+    // Airport columns of the snapshot; route edits derive snapshots that share them, and this index with them
+    private final double[] latitude, longitude;
+    // Airports of cell c are cellItems[cellStart[c]..cellStart[c + 1])
+    private final int[] cellStart = new int[ROWS * COLS + 1], cellItems;
+
+    GeoIndex(RouteGraph g) {
+        latitude = g.latitude;
+        longitude = g.longitude;
+        int n = g.airportCount;
+        // Removed airports (cell -1) are left out
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = g.alive(i) ? row(latitude[i]) * COLS + col(longitude[i]) : -1;
+            if (cellOf[i] >= 0) cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < ROWS * COLS; c++) cellStart[c + 1] += cellStart[c];
+        cellItems = new int[g.liveAirportCount];
+        int[] fill = Arrays.copyOf(cellStart, ROWS * COLS);
+        for (int i = 0; i < n; i++)
+            if (cellOf[i] >= 0) cellItems[fill[cellOf[i]]++] = i;
+    }
+
+    private static int row(double lat) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((lat + 90) / CELL_DEG)));
+    }
+
+    private static int col(double lon) {
+        double x = ((lon + 180) % 360 + 360) % 360;
+        return Math.min(COLS - 1, (int) (x / CELL_DEG));
+    }
+
+    // Airport ids within radiusKm of (lat, lon), nearest first
+    int[] within(double lat, double lon, double radiusKm) {
+        if (!(radiusKm >= 0)) return new int[0];
+        double angle = radiusKm / EARTH_KM, dLat = Math.toDegrees(angle);
+        int r0 = row(lat - dLat), r1 = row(lat + dLat);
+        // The circle's longitude span, unless it reaches a pole (then every longitude is in range)
+        int c0 = 0, c1 = COLS - 1;
+        if (angle < Math.PI / 2 && lat + dLat < 90 && lat - dLat > -90) {
+            double s = Math.sin(angle) / Math.cos(Math.toRadians(lat));
+            if (s < 1) {
+                double dLon = Math.toDegrees(Math.asin(s));
+                c0 = (int) Math.floor((lon - dLon + 180) / CELL_DEG);
+                c1 = (int) Math.floor((lon + dLon + 180) / CELL_DEG);
+                if (c1 - c0 + 1 >= COLS) {
+                    c0 = 0;
+                    c1 = COLS - 1;
+                }
+            }
+        }
+        int[] ids = new int[16];
+        double[] dist = new double[16];
+        int count = 0;
+        for (int r = r0; r <= r1; r++)
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * COLS + Math.floorMod(c, COLS);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    double d = FlightNetwork.haversine(lat, lon, latitude[i], longitude[i]);
+                    if (d > radiusKm) continue;
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                        dist = Arrays.copyOf(dist, count * 2);
+                    }
+                    ids[count] = i;
+                    dist[count++] = d;
+                }
+            }
+        return byDistance(ids, dist, count);
+    }
+
+    // The count airports nearest to (lat, lon), nearest first; every airport farther than the search
+    // radius is farther than all those found inside it, so stopping at count hits is exact
+    int[] nearest(double lat, double lon, int count) {
+        if (count <= 0 || cellItems.length == 0) return new int[0];
+        for (double radius = 250; ; radius *= 2) {
+            int[] found = within(lat, lon, radius);
+            if (found.length >= count || radius >= Math.PI * EARTH_KM) return Arrays.copyOf(found, Math.min(count, found.length));
+        }
+    }
+
+    private static int[] byDistance(int[] ids, double[] dist, int count) {
+        Integer[] order = new Integer[count];
+        for (int k = 0; k < count; k++) order[k] = k;
+        Arrays.sort(order, (a, b) -> Double.compare(dist[a], dist[b]));
+        int[] out = new int[count];
+        for (int k = 0; k < count; k++) out[k] = ids[order[k]];
+        return out;
+    }
+}
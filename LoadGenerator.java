@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop load generator for QueryServer: each client sends route requests back to back between random
+// airport pairs taken from the network file the server loaded, and the run ends with throughput and
+// latency percentiles. Latencies before the warm-up ends are not counted.
+//   java LoadGenerator <network file> [--url http://127.0.0.1:8080] [--clients 16] [--seconds 10]
+//                      [--warmup 3] [--batch 1] [--metric COST]
+// With --batch n > 1 every request is a POST /batch of n route queries.
+public final class LoadGenerator {
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+    private final URI route, batch;
+    private final String[] codes;
+    private final int batchSize;
+    private final String metric;
+    private final SearchMetrics.Histogram latency = new SearchMetrics.Histogram();
+    private final LongAdder errors = new LongAdder();
+    // Set once the warm-up is over; latencies before that are discarded
+    private volatile boolean measuring, done;
+
+    LoadGenerator(String url, String[] codes, int batchSize, FlightNetwork.Metric metric) {
+        String base = url.endsWith("/") ? url : url + "/";
+        route = URI.create(base + "route");
+        batch = URI.create(base + "batch");
+        this.codes = codes;
+        this.batchSize = batchSize;
+        this.metric = metric.name();
+    }
+
+    private String query(Random rnd) {
+        return "from=" + URLEncoder.encode(codes[rnd.nextInt(codes.length)], StandardCharsets.UTF_8)
+                + "&to=" + URLEncoder.encode(codes[rnd.nextInt(codes.length)], StandardCharsets.UTF_8) + "&metric=" + metric;
+    }
+
+    private HttpRequest request(Random rnd) {
+        if (batchSize == 1) return HttpRequest.newBuilder(URI.create(route + "?" + query(rnd))).GET().build();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < batchSize; i++) body.append("route?").append(query(rnd)).append('\n');
+        return HttpRequest.newBuilder(batch).POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+    }
+
+    private void client(long seed) {
+        Random rnd = new Random(seed);
+        while (!done) {
+            HttpRequest req = request(rnd);
+            long t0 = System.nanoTime();
+            try {
+                HttpResponse<Void> res = client.send(req, HttpResponse.BodyHandlers.discarding());
+                if (res.statusCode() != 200) errors.increment();
+                else if (measuring) latency.record(System.nanoTime() - t0);
+            } catch (IOException ex) {
+                errors.increment();
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    // Runs the clients for warmup + seconds and prints the report
+    void run(int clients, int warmupSeconds, int seconds) throws InterruptedException {
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            long seed = i;
+            threads[i] = new Thread(() -> client(seed), "load-client-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        Thread.sleep(warmupSeconds * 1000L);
+        long errorsBefore = errors.sum();
+        measuring = true;
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        // Taken as the window closes, like the latencies; errors while the clients wind down do not count
+        long errorCount = errors.sum() - errorsBefore;
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        done = true;
+        for (Thread t : threads) t.join(10_000);
+        long n = latency.count();
+        System.out.printf("%d clients, %.1f s, batch %d: %d requests, %d errors%n", clients, elapsed, batchSize, n,
+                errorCount);
+        System.out.printf("Throughput: %.0f requests/s, %.0f queries/s%n", n / elapsed, n * batchSize / elapsed);
+        System.out.printf("Latency ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n", latency.mean() / 1e6,
+                latency.percentile(50) / 1e6, latency.percentile(90) / 1e6, latency.percentile(99) / 1e6,
+                latency.percentile(99.9) / 1e6, latency.max() / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = null, url = "http://127.0.0.1:" + QueryServer.DEFAULT_PORT;
+        int clients = 16, seconds = 10, warmup = 3, batchSize = 1;
+        FlightNetwork.Metric metric = FlightNetwork.Metric.COST;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url": url = args[++i]; break;
+                    case "--clients": clients = Integer.parseInt(args[++i]); break;
+                    case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                    case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                    case "--batch": batchSize = Integer.parseInt(args[++i]); break;
+                    case "--metric": metric = FlightNetwork.Metric.valueOf(args[++i].toUpperCase()); break;
+                    default:
+                        if (file != null || args[i].startsWith("--")) throw new IllegalArgumentException();
+                        file = args[i];
+                }
+            }
+            if (clients < 1 || seconds < 1 || warmup < 0 || batchSize < 1) throw new IllegalArgumentException();
+        } catch (RuntimeException ex) {
+            file = null;
+        }
+        if (file == null) {
+            System.err.println("Usage: java LoadGenerator <network file> [--url " + url + "] [--clients 16] [--seconds 10]");
+            System.err.println("                          [--warmup 3] [--batch 1] [--metric COST|DISTANCE|FLIGHT_TIME]");
+            System.exit(2);
+        }
+        List<FlightNetwork.Airport> airports = FlightNetwork.loadFromFile(file).getAirports();
+        if (airports.size() < 2) {
+            System.err.println("Need at least two airports in " + file);
+            System.exit(1);
+        }
+        String[] codes = new String[airports.size()];
+        for (int i = 0; i < codes.length; i++) codes[i] = airports.get(i).code;
+        new LoadGenerator(url, codes, batchSize, metric).run(clients, warmup, seconds);
+    }
+}
@@ -0,0 +1,282 @@
+import javafx.animation.PauseTransition;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
+import java.util.*;
+
+// Draws the network map in two stacked canvases. The base layer (routes, airports, labels) is redrawn
+// only when the network snapshot, canvas size or theme changes; highlights go on the overlay, which is
+// cheap to clear and redraw. Large networks are drawn with level of detail: routes thinned to one line
+// per pair of screen cells, overlapping dots skipped and labels culled, busiest airports first.
+public final class MapRenderer {
+    // Up to these sizes everything is drawn in full, as before
+    private static final int DETAIL_AIRPORTS = 300, DETAIL_ROUTES = 3000;
+    private static final double MARGIN = 50, ROUTE_CELL = 3, DOT_CELL = 3, LABEL_CELL = 8;
+    // Hover reach around an airport, and the hit-test grid cell (at least as large, so 3x3 cells cover it)
+    private static final double HIT_RADIUS = 14, HIT_CELL = 16;
+    // Shading of a reachable region: disc radius, and the cell within which only one disc is painted
+    private static final double REACH_RADIUS = 14, REACH_CELL = 6;
+    private static final Font LABEL_FONT = Font.font("Arial", FontWeight.BOLD, 13);
+    private static final Color THIN_ROUTE = Color.gray(0.5, 0.35);
+
+    private final Canvas base, overlay;
+    private final PauseTransition resizePause = new PauseTransition(Duration.millis(120));
+    private boolean darkMode;
+
+    // What the base layer currently shows; the projection is valid for exactly this
+    private RouteGraph graph;
+    private double width = -1, height = -1;
+    private boolean drawnDark;
+    // Screen position of each airport, indexed like graph
+    private double[] px = new double[0], py = new double[0];
+    private List<FlightNetwork.Route> highlight;
+    private Reachability reachable;
+    // Projected airports bucketed by HIT_CELL screen cells: ids hitItems[hitStart[c]..hitStart[c + 1])
+    private int hitCols, hitRows;
+    private int[] hitStart = new int[1], hitItems = new int[0];
+
+    public MapRenderer(Canvas base, Canvas overlay) {
+        this.base = base;
+        this.overlay = overlay;
+    }
+
+    public void setDarkMode(boolean darkMode) {
+        this.darkMode = darkMode;
+    }
+
+    // Resizes once the size has settled for a moment, so dragging a window edge redraws once, not per pixel
+    public void resizeLater(double w, double h) {
+        resizePause.setOnFinished(e -> {
+            for (Canvas c : new Canvas[]{base, overlay}) {
+                c.setWidth(w);
+                c.setHeight(h);
+            }
+            if (graph != null) draw(graph, highlight, reachable);
+        });
+        resizePause.playFromStart();
+    }
+
+    // Shows the snapshot with an optional highlighted path; only the overlay is redrawn if nothing else changed
+    public void draw(RouteGraph g, List<FlightNetwork.Route> highlightPath) {
+        draw(g, highlightPath, null);
+    }
+
+    // Also shades the region in reach, if it was computed on this snapshot
+    public void draw(RouteGraph g, List<FlightNetwork.Route> highlightPath, Reachability reach) {
+        highlight = highlightPath;
+        reachable = reach;
+        if (g != graph || base.getWidth() != width || base.getHeight() != height || darkMode != drawnDark) {
+            graph = g;
+            width = base.getWidth();
+            height = base.getHeight();
+            drawnDark = darkMode;
+            project();
+            drawBase();
+        }
+        drawOverlay();
+    }
+
+    private void project() {
+        int n = graph.airportCount;
+        if (px.length < n) {
+            px = new double[n];
+            py = new double[n];
+        }
+        if (n == 0) return;
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (!graph.alive(i)) continue;
+            minLat = Math.min(minLat, graph.latitude[i]);
+            maxLat = Math.max(maxLat, graph.latitude[i]);
+            minLon = Math.min(minLon, graph.longitude[i]);
+            maxLon = Math.max(maxLon, graph.longitude[i]);
+        }
+        double sx = (width - 2 * MARGIN) / (maxLon - minLon + 0.01), sy = (height - 2 * MARGIN) / (maxLat - minLat + 0.01);
+        for (int i = 0; i < n; i++) {
+            px[i] = (graph.longitude[i] - minLon) * sx + MARGIN;
+            py[i] = (maxLat - graph.latitude[i]) * sy + MARGIN;
+        }
+        indexHits(n);
+    }
+
+    private void indexHits(int n) {
+        hitCols = (int) (width / HIT_CELL) + 1;
+        hitRows = (int) (height / HIT_CELL) + 1;
+        int cells = hitCols * hitRows;
+        if (hitStart.length < cells + 1) hitStart = new int[cells + 1];
+        else Arrays.fill(hitStart, 0, cells + 1, 0);
+        if (hitItems.length < n) hitItems = new int[n];
+        for (int i = 0; i < n; i++)
+            if (graph.alive(i)) hitStart[(int) cell(px[i], py[i], HIT_CELL, hitCols, hitRows) + 1]++;
+        for (int c = 0; c < cells; c++) hitStart[c + 1] += hitStart[c];
+        int[] fill = Arrays.copyOf(hitStart, cells);
+        for (int i = 0; i < n; i++)
+            if (graph.alive(i)) hitItems[fill[(int) cell(px[i], py[i], HIT_CELL, hitCols, hitRows)]++] = i;
+    }
+
+    private void drawBase() {
+        GraphicsContext gc = base.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        int n = graph.airportCount;
+        if (n == 0) return;
+        boolean detailed = graph.liveAirportCount <= DETAIL_AIRPORTS && graph.routeCount <= DETAIL_ROUTES;
+
+        // All routes as one path: a single stroke call instead of one per route
+        gc.setStroke(detailed ? Color.GRAY : THIN_ROUTE);
+        gc.setLineWidth(detailed ? 2 : 1);
+        gc.beginPath();
+        int cols = (int) (width / ROUTE_CELL) + 1, rows = (int) (height / ROUTE_CELL) + 1;
+        Set<Long> drawn = detailed ? null : new HashSet<>();
+        for (int u = 0; u < n; u++)
+            for (int e = graph.begin(u), end = graph.end(u); e < end; e++) {
+                int v = graph.head[e];
+                if (!detailed) {
+                    long a = cell(px[u], py[u], ROUTE_CELL, cols, rows), b = cell(px[v], py[v], ROUTE_CELL, cols, rows);
+                    if (a == b || !drawn.add(Math.min(a, b) << 32 | Math.max(a, b))) continue;
+                }
+                gc.moveTo(px[u], py[u]);
+                gc.lineTo(px[v], py[v]);
+            }
+        gc.stroke();
+
+        if (detailed) {
+            for (int i = 0; i < n; i++)
+                if (graph.alive(i)) drawAirport(gc, i);
+            return;
+        }
+        Integer[] order = new Integer[graph.liveAirportCount];
+        for (int i = 0, k = 0; i < n; i++)
+            if (graph.alive(i)) order[k++] = i;
+        Arrays.sort(order, Comparator.comparingInt(this::degree).reversed());
+        gc.setFill(Color.AQUA);
+        int dotCols = (int) (width / DOT_CELL) + 1, dotRows = (int) (height / DOT_CELL) + 1;
+        boolean[] dots = new boolean[dotCols * dotRows];
+        for (int i : order) {
+            int c = (int) cell(px[i], py[i], DOT_CELL, dotCols, dotRows);
+            if (dots[c]) continue;
+            dots[c] = true;
+            gc.fillOval(px[i] - 2.5, py[i] - 2.5, 5, 5);
+        }
+        gc.setFill(darkMode ? Color.WHITE : Color.BLACK);
+        gc.setFont(LABEL_FONT);
+        int labelCols = (int) (width / LABEL_CELL) + 1, labelRows = (int) (height / LABEL_CELL) + 1;
+        boolean[] taken = new boolean[labelCols * labelRows];
+        for (int i : order) {
+            String code = graph.code(i);
+            double x = px[i] + 4, y = py[i] - 8;
+            int c0 = (int) (x / LABEL_CELL), r0 = (int) (y / LABEL_CELL);
+            int c1 = (int) ((x + 9 * code.length()) / LABEL_CELL), r1 = (int) ((y + 14) / LABEL_CELL);
+            if (c0 < 0 || r0 < 0 || c1 >= labelCols || r1 >= labelRows || !free(taken, labelCols, c0, r0, c1, r1)) continue;
+            for (int r = r0; r <= r1; r++) Arrays.fill(taken, r * labelCols + c0, r * labelCols + c1 + 1, true);
+            gc.fillText(code, x, py[i] + 5);
+        }
+    }
+
+    private int degree(int i) {
+        return graph.end(i) - graph.begin(i) + graph.inEnd(i) - graph.inBegin(i);
+    }
+
+    // Grid cell of a point, clamped so points projected off a tiny canvas still land in the grid
+    private static long cell(double x, double y, double size, int cols, int rows) {
+        return (long) Math.max(0, Math.min(rows - 1, (int) (y / size))) * cols + Math.max(0, Math.min(cols - 1, (int) (x / size)));
+    }
+
+    private static boolean free(boolean[] taken, int cols, int c0, int r0, int c1, int r1) {
+        for (int r = r0; r <= r1; r++)
+            for (int c = c0; c <= c1; c++)
+                if (taken[r * cols + c]) return false;
+        return true;
+    }
+
+    private void drawAirport(GraphicsContext gc, int i) {
+        gc.setFill(Color.AQUA);
+        gc.fillOval(px[i] - 8, py[i] - 8, 16, 16);
+        gc.setStroke(Color.DARKBLUE);
+        gc.setLineWidth(2);
+        gc.strokeOval(px[i] - 8, py[i] - 8, 16, 16);
+        gc.setFill(darkMode ? Color.WHITE : Color.BLACK);
+        gc.setFont(LABEL_FONT);
+        gc.fillText(graph.code(i), px[i] + 9, py[i] + 5);
+    }
+
+    private void drawOverlay() {
+        GraphicsContext gc = overlay.getGraphicsContext2D();
+        gc.clearRect(0, 0, overlay.getWidth(), overlay.getHeight());
+        if (reachable != null && reachable.graph == graph) drawReachable(gc);
+        if (highlight == null || highlight.isEmpty()) return;
+        gc.setStroke(Color.ORANGE);
+        gc.setLineWidth(4.5);
+        gc.beginPath();
+        for (FlightNetwork.Route r : highlight) {
+            int u = graph.id(r.from), v = graph.id(r.to);
+            if (u < 0 || v < 0) continue;
+            gc.moveTo(px[u], py[u]);
+            gc.lineTo(px[v], py[v]);
+        }
+        gc.stroke();
+        // Airports on the path stay on top of the highlight, labelled even when culled from the base layer
+        for (FlightNetwork.Route r : highlight)
+            for (String code : new String[]{r.from, r.to}) {
+                int i = graph.id(code);
+                if (i >= 0) drawAirport(gc, i);
+            }
+    }
+
+    // A translucent disc per reachable airport, green near the start fading to red at the edge of the budget,
+    // under the tree of best paths. Overlapping discs and tree edges inside one screen cell are skipped.
+    private void drawReachable(GraphicsContext gc) {
+        Reachability r = reachable;
+        int n = r.ids.length;
+        int cols = (int) (width / REACH_CELL) + 1, rows = (int) (height / REACH_CELL) + 1;
+        boolean[] shaded = new boolean[cols * rows];
+        for (int k = n - 1; k >= 0; k--) { // Farthest first, so nearer airports are painted on top
+            int i = r.ids[k], c = (int) cell(px[i], py[i], REACH_CELL, cols, rows);
+            if (shaded[c]) continue;
+            shaded[c] = true;
+            double f = r.budget > 0 ? Math.min(1, r.totals[k] / r.budget) : 0;
+            gc.setFill(Color.hsb(120 * (1 - f), 0.8, 0.9, 0.25));
+            gc.fillOval(px[i] - REACH_RADIUS, py[i] - REACH_RADIUS, 2 * REACH_RADIUS, 2 * REACH_RADIUS);
+        }
+        gc.setStroke(Color.SEAGREEN.deriveColor(0, 1, 1, 0.6));
+        gc.setLineWidth(1.5);
+        gc.beginPath();
+        int routeCols = (int) (width / ROUTE_CELL) + 1, routeRows = (int) (height / ROUTE_CELL) + 1;
+        for (int k = 0; k < n; k++) {
+            int e = r.via[k];
+            if (e < 0) continue;
+            int u = graph.tail[e], v = graph.head[e];
+            if (cell(px[u], py[u], ROUTE_CELL, routeCols, routeRows) == cell(px[v], py[v], ROUTE_CELL, routeCols, routeRows)) continue;
+            gc.moveTo(px[u], py[u]);
+            gc.lineTo(px[v], py[v]);
+        }
+        gc.stroke();
+        int s = graph.id(r.airport);
+        if (s >= 0) drawAirport(gc, s);
+    }
+
+    // Nearest airport drawn within HIT_RADIUS of (x, y), or null. Looks only at the 3x3 grid cells around
+    // the point and allocates nothing, so it can run on every mouse move.
+    public FlightNetwork.Airport airportAt(double x, double y) {
+        if (graph == null || graph.airportCount == 0) return null;
+        int cx = (int) Math.floor(x / HIT_CELL), cy = (int) Math.floor(y / HIT_CELL);
+        int best = -1;
+        double bestD = HIT_RADIUS * HIT_RADIUS;
+        for (int r = Math.max(0, cy - 1); r <= Math.min(hitRows - 1, cy + 1); r++)
+            for (int c = Math.max(0, cx - 1); c <= Math.min(hitCols - 1, cx + 1); c++) {
+                int cell = r * hitCols + c;
+                for (int k = hitStart[cell]; k < hitStart[cell + 1]; k++) {
+                    int i = hitItems[k];
+                    double dx = px[i] - x, dy = py[i] - y, d = dx * dx + dy * dy;
+                    if (d < bestD) {
+                        bestD = d;
+                        best = i;
+                    }
+                }
+            }
+        return best < 0 ? null : graph.airport(best);
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Versioned binary network format, read through a memory map. Little-endian layout, sections 8-byte aligned:
+//   header   magic "FRNW", version, airportCount n, routeCount m, stringCount s, stringBytes
+//   strings  int offsets[s + 1], UTF-8 data
+//   airports int code[n], name[n], country[n] (string ids), double lat[n], lon[n]
+//   routes   int first[n + 1], to[m] in CSR order, double cost[m], distance[m], flightTime[m]
+// Opening only maps and validates the file; strings are decoded on first access. A network loaded from it
+// copies the numeric columns and keeps reading strings from the map, so the file must not be changed in place
+// while that network is in use (write replaces it, which is fine).
+public final class NetworkFile {
+    static final int MAGIC = 0x574E5246; // "FRNW" little-endian
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final ByteBuffer buf;
+    private final int airportCount, routeCount, stringCount;
+    private final long stringOffsets, stringData, codes, names, countries, lats, lons, first, to, costs, distances, flightTimes;
+    private final String[] strings;
+    // Open-addressing table over the airport codes' bytes: airport + 1, or 0 for empty
+    private final int[] codeTable;
+
+    private NetworkFile(ByteBuffer buf) throws IOException {
+        this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC) throw new IOException("Not a network file");
+        if (buf.getInt(4) != VERSION) throw new IOException("Unsupported network file version " + buf.getInt(4));
+        airportCount = buf.getInt(8);
+        routeCount = buf.getInt(12);
+        stringCount = buf.getInt(16);
+        int stringBytes = buf.getInt(20);
+        if (airportCount < 0 || routeCount < 0 || stringCount < 0 || stringBytes < 0) throw corrupt("negative count");
+        long n = airportCount, m = routeCount;
+        stringOffsets = HEADER_BYTES;
+        stringData = align(stringOffsets + 4 * (stringCount + 1L));
+        codes = align(stringData + stringBytes);
+        names = codes + 4 * n;
+        countries = names + 4 * n;
+        lats = align(countries + 4 * n);
+        lons = lats + 8 * n;
+        first = lons + 8 * n;
+        to = align(first + 4 * (n + 1));
+        costs = align(to + 4 * m);
+        distances = costs + 8 * m;
+        flightTimes = distances + 8 * m;
+        if (flightTimes + 8 * m != buf.capacity()) throw corrupt("size does not match header");
+        strings = new String[stringCount];
+        validate(stringBytes);
+        codeTable = new int[Math.max(2, Integer.highestOneBit(Math.max(1, airportCount)) << 2)];
+        for (int a = 0; a < airportCount; a++) {
+            int id = buf.getInt((int) (codes + 4L * a)), from = stringStart(id), end = stringStart(id + 1), h = 0;
+            for (int k = from; k < end; k++) h = 31 * h + buf.get((int) (stringData + k));
+            int i = slot(h);
+            while (codeTable[i] != 0) i = (i + 1) & (codeTable.length - 1);
+            codeTable[i] = a + 1;
+        }
+    }
+
+    private int stringStart(int id) {
+        return buf.getInt((int) (stringOffsets + 4L * id));
+    }
+
+    private int slot(int h) {
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (codeTable.length - 1);
+    }
+
+    // Airport with this code, or -1; compares bytes in place, without decoding any code
+    int airportId(String code) {
+        byte[] key = code.getBytes(StandardCharsets.UTF_8);
+        int h = 0;
+        for (byte b : key) h = 31 * h + b;
+        for (int i = slot(h); codeTable[i] != 0; i = (i + 1) & (codeTable.length - 1)) {
+            int a = codeTable[i] - 1, id = buf.getInt((int) (codes + 4L * a)), from = stringStart(id);
+            if (stringStart(id + 1) - from != key.length) continue;
+            int k = 0;
+            while (k < key.length && buf.get((int) (stringData + from + k)) == key[k]) k++;
+            if (k == key.length) return a;
+        }
+        return -1;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static IOException corrupt(String why) {
+        return new IOException("Corrupt network file: " + why);
+    }
+
+    // Bounds checks so a damaged or hostile file fails here rather than deep inside a search
+    private void validate(int stringBytes) throws IOException {
+        int prev = 0;
+        for (int i = 0; i <= stringCount; i++) {
+            int off = buf.getInt((int) (stringOffsets + 4L * i));
+            if (off < prev || off > stringBytes || (i == 0 && off != 0)) throw corrupt("string table");
+            prev = off;
+        }
+        for (int i = 0; i < airportCount; i++)
+            for (long col : new long[]{codes, names, countries}) {
+                int id = buf.getInt((int) (col + 4L * i));
+                if (id < 0 || id >= stringCount) throw corrupt("airport string id");
+            }
+        prev = 0;
+        for (int i = 0; i <= airportCount; i++) {
+            int f = buf.getInt((int) (first + 4L * i));
+            if (f < prev || f > routeCount || (i == 0 && f != 0) || (i == airportCount && f != routeCount)) throw corrupt("route offsets");
+            prev = f;
+        }
+        for (int e = 0; e < routeCount; e++) {
+            int v = buf.getInt((int) (to + 4L * e));
+            if (v < 0 || v >= airportCount) throw corrupt("route target");
+        }
+    }
+
+    public static NetworkFile open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Network file too large");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new NetworkFile(map);
+        }
+    }
+
+    // True if the file starts with the binary magic; legacy serialized networks do not
+    public static boolean isBinary(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && ch.read(head) >= 0) ;
+            return head.position() == 4 && head.getInt(0) == MAGIC;
+        }
+    }
+
+    public int airportCount() { return airportCount; }
+    public int routeCount() { return routeCount; }
+
+    public String code(int airport) { return string(codes, airport); }
+    public String name(int airport) { return string(names, airport); }
+    public String country(int airport) { return string(countries, airport); }
+    public double latitude(int airport) { return buf.getDouble((int) (lats + 8L * airport)); }
+    public double longitude(int airport) { return buf.getDouble((int) (lons + 8L * airport)); }
+
+    // Routes of an airport are [firstRoute(a), firstRoute(a + 1))
+    public int firstRoute(int airport) { return buf.getInt((int) (first + 4L * airport)); }
+    public int routeTarget(int route) { return buf.getInt((int) (to + 4L * route)); }
+    public double cost(int route) { return buf.getDouble((int) (costs + 8L * route)); }
+    public double distance(int route) { return buf.getDouble((int) (distances + 8L * route)); }
+    public double flightTime(int route) { return buf.getDouble((int) (flightTimes + 8L * route)); }
+
+    FlightNetwork.Airport airport(int airport) {
+        return new FlightNetwork.Airport(code(airport), name(airport), country(airport), latitude(airport), longitude(airport));
+    }
+
+    void coordinates(double[] latitude, double[] longitude) {
+        view(lats).asDoubleBuffer().get(latitude, 0, airportCount);
+        view(lons).asDoubleBuffer().get(longitude, 0, airportCount);
+    }
+
+    // Route columns in file order, for bulk reads
+    IntBuffer targets() { return view(to).asIntBuffer(); }
+    DoubleBuffer costs() { return view(costs).asDoubleBuffer(); }
+    DoubleBuffer distances() { return view(distances).asDoubleBuffer(); }
+    DoubleBuffer flightTimes() { return view(flightTimes).asDoubleBuffer(); }
+
+    private ByteBuffer view(long offset) {
+        return buf.duplicate().position((int) offset).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private String string(long column, int airport) {
+        int id = buf.getInt((int) (column + 4L * airport));
+        String s = strings[id];
+        if (s == null) {
+            int from = buf.getInt((int) (stringOffsets + 4L * id)), end = buf.getInt((int) (stringOffsets + 4L * id + 4));
+            byte[] bytes = new byte[end - from];
+            ByteBuffer view = buf.duplicate();
+            view.position((int) (stringData + from));
+            view.get(bytes);
+            strings[id] = s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    // The network in this file. Only the numeric columns are read up front; airports and routes are decoded
+    // as they are used.
+    public FlightNetwork toNetwork() {
+        return new FlightNetwork(new RouteGraph(this, 0));
+    }
+
+    // Writes to a temporary sibling first so a crash never leaves a half-written file behind
+    public static void write(FlightNetwork net, Path path) throws IOException {
+        write(net.graph(), path);
+    }
+
+    static void write(RouteGraph g, Path path) throws IOException {
+        // Removed airports leave gaps in the snapshot's ids; the file numbers the live ones from 0
+        int n = g.liveAirportCount, m = g.routeCount;
+        int[] live = new int[n], fileId = new int[g.airportCount];
+        for (int i = 0, k = 0; i < g.airportCount; i++)
+            if (g.alive(i)) {
+                fileId[i] = k;
+                live[k++] = i;
+            }
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> table = new ArrayList<>();
+        int[] code = new int[n], name = new int[n], country = new int[n];
+        int stringBytes = 0;
+        for (int i = 0; i < n; i++) {
+            FlightNetwork.Airport a = g.airport(live[i]);
+            int[][] cols = {code, name, country};
+            String[] vals = {a.code, a.name, a.country};
+            for (int c = 0; c < 3; c++) {
+                String v = vals[c] == null ? "" : vals[c];
+                Integer id = ids.get(v);
+                if (id == null) {
+                    byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                    ids.put(v, id = table.size());
+                    table.add(bytes);
+                    stringBytes += bytes.length;
+                }
+                cols[c][i] = id;
+            }
+        }
+        long size = align(align(align(align(align(HEADER_BYTES + 4L * (table.size() + 1)) + stringBytes) + 12L * n) + 16L * n
+                + 4L * (n + 1)) + 4L * m) + 24L * m;
+        if (size > Integer.MAX_VALUE) throw new IOException("Network too large for the binary format");
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(table.size()).putInt(stringBytes);
+        int off = 0;
+        out.putInt(off);
+        for (byte[] s : table) out.putInt(off += s.length);
+        pad(out);
+        for (byte[] s : table) out.put(s);
+        pad(out);
+        for (int[] col : new int[][]{code, name, country}) for (int v : col) out.putInt(v);
+        pad(out);
+        for (int i = 0; i < n; i++) out.putDouble(g.latitude[live[i]]);
+        for (int i = 0; i < n; i++) out.putDouble(g.longitude[live[i]]);
+        // Rows are scattered over the snapshot's columns; the file has them back to back
+        int f = 0;
+        for (int i = 0; i < n; i++) {
+            out.putInt(f);
+            f += g.end(live[i]) - g.begin(live[i]);
+        }
+        out.putInt(f);
+        pad(out);
+        for (int i = 0; i < n; i++) for (int e = g.begin(live[i]); e < g.end(live[i]); e++) out.putInt(fileId[g.head[e]]);
+        pad(out);
+        for (double[] col : new double[][]{g.cost, g.distance, g.flightTime})
+            for (int i = 0; i < n; i++) for (int e = g.begin(live[i]); e < g.end(live[i]); e++) out.putDouble(col[e]);
+        out.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) ch.write(out);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void pad(ByteBuffer b) {
+        while ((b.position() & 7) != 0) b.put((byte) 0);
+    }
+
+    // Converter: java NetworkFile --to-binary legacy.ser out.frn | --to-legacy in.frn out.ser
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3 || !(args[0].equals("--to-binary") || args[0].equals("--to-legacy"))) {
+            System.err.println("Usage: java NetworkFile --to-binary <legacy file> <binary file>");
+            System.err.println("       java NetworkFile --to-legacy <binary file> <legacy file>");
+            System.exit(2);
+        }
+        FlightNetwork net = FlightNetwork.loadFromFile(args[1]);
+        if (args[0].equals("--to-binary")) write(net, Paths.get(args[2]));
+        else net.saveLegacy(args[2]);
+        System.out.println("Converted " + net.getAirports().size() + " airports to " + args[2]);
+    }
+}
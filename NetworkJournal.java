@@ -0,0 +1,425 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+// Write-ahead journal for a FlightNetwork kept in a directory of generations:
+//   snapshot-<g>.frn  full network (NetworkFile format), written atomically
+//   journal-<g>.log   mutations made after snapshot <g> was taken
+// Recovery loads the newest snapshot and replays every journal from that generation on. Compaction starts
+// generation g + 1 immediately, writes its snapshot in the background, then deletes older generations.
+//
+// Record: int payloadLength, int crc32(payload), payload = type byte + fields. A torn or corrupt tail of
+// the newest journal is truncated on recovery.
+public final class NetworkJournal implements Closeable {
+    // When appended records reach the disk: on every mutation, every flushMillis, or only when the OS decides
+    public enum Durability { EVERY_COMMIT, INTERVAL, NONE }
+
+    private static final int MAGIC = 0x4C4A5246; // "FRJL" little-endian
+    private static final int VERSION = 1, HEADER_BYTES = 16;
+    private static final byte ADD_AIRPORT = 1, REMOVE_AIRPORT = 2, ADD_ROUTE = 3, REMOVE_ROUTE = 4;
+    private static final Pattern FILE = Pattern.compile("(snapshot|journal)-(\\d+)\\.(frn|log)");
+
+    private final Path dir;
+    private final Durability durability;
+    private final FlightNetwork network;
+    private final ScheduledExecutorService background;
+    // Journal size that triggers automatic compaction, 0 for never
+    private final long compactBytes;
+
+    private final Object lock = new Object(), flushLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    // The other half of a double buffer: flush writes one while appends fill the other. Owned by flushLock.
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long appendedSeq, durableSeq, journalBytes;
+    private long generation;
+    private FileChannel channel;
+    private boolean closed;
+    private Future<?> compaction;
+    // First failed write or fsync; the journal may have lost records, so every later append, flush and
+    // commit fails
+    private IOException failure;
+
+    private NetworkJournal(Path dir, Durability durability, long flushMillis, long compactBytes, FlightNetwork network,
+                           long generation, FileChannel channel) throws IOException {
+        this.dir = dir;
+        this.durability = durability;
+        this.compactBytes = compactBytes;
+        this.network = network;
+        this.generation = generation;
+        this.channel = channel;
+        this.journalBytes = channel.size();
+        background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "network-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        if (durability != Durability.EVERY_COMMIT)
+            background.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Recovers the network stored in dir (creating it if needed) and journals all further edits to it
+    public static NetworkJournal open(Path dir, Durability durability, long flushMillis, long compactBytes) throws IOException {
+        Files.createDirectories(dir);
+        long snapshotGen = -1;
+        TreeSet<Long> journals = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(p);
+                    continue;
+                }
+                Matcher m = FILE.matcher(name);
+                if (!m.matches()) continue;
+                long gen = Long.parseLong(m.group(2));
+                if (m.group(1).equals("snapshot")) snapshotGen = Math.max(snapshotGen, gen);
+                else journals.add(gen);
+            }
+        }
+        FlightNetwork net = snapshotGen >= 0 ? NetworkFile.open(snapshot(dir, snapshotGen)).toNetwork() : new FlightNetwork();
+        long gen = Math.max(snapshotGen, 0);
+        // One batch, so the network publishes a single snapshot at the end instead of one per record
+        long[] last = {gen};
+        try {
+            net.batch(() -> {
+                for (long j : journals.tailSet(last[0])) {
+                    try {
+                        replay(journal(dir, j), net, j == journals.last());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    last[0] = j;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        gen = last[0];
+        FileChannel ch = FileChannel.open(journal(dir, gen), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (ch.size() == 0) writeHeader(ch, gen);
+        ch.position(ch.size());
+        NetworkJournal j = new NetworkJournal(dir, durability, Math.max(1, flushMillis), compactBytes, net, gen, ch);
+        net.attachJournal(j);
+        return j;
+    }
+
+    public FlightNetwork network() {
+        return network;
+    }
+
+    private static Path snapshot(Path dir, long gen) {
+        return dir.resolve("snapshot-" + gen + ".frn");
+    }
+
+    private static Path journal(Path dir, long gen) {
+        return dir.resolve("journal-" + gen + ".log");
+    }
+
+    private static void writeHeader(FileChannel ch, long gen) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putLong(gen).flip();
+        while (h.hasRemaining()) ch.write(h);
+        ch.force(true);
+    }
+
+    // Applies records in order; a bad record ends the newest journal (truncated there) but is fatal elsewhere
+    private static void replay(Path file, FlightNetwork net, boolean newest) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Journal too large: " + file);
+            ByteBuffer b = ByteBuffer.allocate((int) ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining() && ch.read(b) >= 0) ;
+            b.flip();
+            if (b.remaining() < HEADER_BYTES) {
+                if (!newest) throw new IOException("Truncated journal header: " + file);
+                ch.truncate(0);
+                return;
+            }
+            if (b.getInt() != MAGIC || b.getInt() != VERSION) throw new IOException("Not a journal: " + file);
+            b.getLong();
+            CRC32 crc = new CRC32();
+            while (b.remaining() > 0) {
+                int start = b.position();
+                boolean ok = b.remaining() >= 8;
+                int len = ok ? b.getInt() : 0, sum = ok ? b.getInt() : 0;
+                ok = ok && len > 0 && len <= b.remaining();
+                if (ok) {
+                    crc.reset();
+                    ByteBuffer payload = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+                    payload.limit(len);
+                    crc.update(payload.duplicate());
+                    ok = (int) crc.getValue() == sum;
+                    if (ok) {
+                        apply(payload, net);
+                        b.position(b.position() + len);
+                    }
+                }
+                if (!ok) {
+                    if (!newest) throw new IOException("Corrupt record in " + file + " at offset " + start);
+                    ch.truncate(start);
+                    ch.force(true);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer p, FlightNetwork net) throws IOException {
+        byte type = p.get();
+        switch (type) {
+            case ADD_AIRPORT: {
+                String code = string(p), name = string(p), country = string(p);
+                net.addAirport(new FlightNetwork.Airport(code, name, country, p.getDouble(), p.getDouble()));
+                break;
+            }
+            case REMOVE_AIRPORT:
+                net.removeAirport(string(p));
+                break;
+            case ADD_ROUTE: {
+                String from = string(p), to = string(p);
+                net.addRoute(from, to, p.getDouble());
+                break;
+            }
+            case REMOVE_ROUTE: {
+                String from = string(p), to = string(p);
+                net.removeRoute(from, to);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String string(ByteBuffer p) {
+        byte[] bytes = new byte[p.getShort() & 0xffff];
+        p.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Called by FlightNetwork under its lock before each mutation is applied, so no edit is visible before
+    // its record is appended
+    void airportAdded(FlightNetwork.Airport a) {
+        append(ADD_AIRPORT, new String[]{a.code, a.name, a.country}, a.latitude, a.longitude);
+    }
+
+    void airportRemoved(String code) {
+        append(REMOVE_AIRPORT, new String[]{code});
+    }
+
+    void routeAdded(String from, String to, double cost) {
+        append(ADD_ROUTE, new String[]{from, to}, cost);
+    }
+
+    void routeRemoved(String from, String to) {
+        append(REMOVE_ROUTE, new String[]{from, to});
+    }
+
+    private void append(byte type, String[] strings, double... numbers) {
+        byte[][] encoded = new byte[strings.length][];
+        int len = 1 + 8 * numbers.length;
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = (strings[i] == null ? "" : strings[i]).getBytes(StandardCharsets.UTF_8);
+            if (encoded[i].length > 0xffff) throw new IllegalArgumentException("Text too long to journal");
+            len += 2 + encoded[i].length;
+        }
+        ByteBuffer rec = ByteBuffer.allocate(8 + len).order(ByteOrder.LITTLE_ENDIAN);
+        rec.putInt(len).putInt(0).put(type);
+        for (byte[] s : encoded) rec.putShort((short) s.length).put(s);
+        for (double d : numbers) rec.putDouble(d);
+        CRC32 crc = new CRC32();
+        crc.update(rec.array(), 8, len);
+        rec.putInt(4, (int) crc.getValue());
+        rec.flip();
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("Journal is closed");
+            // Refusing the record refuses the edit, which FlightNetwork has not applied yet
+            if (failure != null) throw new UncheckedIOException(failed());
+            if (pending.remaining() < rec.remaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + rec.remaining()))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                pending.flip();
+                pending = bigger.put(pending);
+            }
+            pending.put(rec);
+            appendedSeq++;
+            journalBytes += 8 + len;
+        }
+    }
+
+    // Called by FlightNetwork once a write (or a whole batch of them) is published and its lock released,
+    // so a slow fsync does not hold up other writers and writers committing together share one
+    void committed() {
+        boolean compact;
+        synchronized (lock) {
+            if (failure != null) throw new UncheckedIOException(failed());
+            compact = !closed && compactBytes > 0 && journalBytes >= compactBytes && (compaction == null || compaction.isDone());
+        }
+        if (durability == Durability.EVERY_COMMIT) {
+            try {
+                flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        if (compact) {
+            try {
+                compact();
+            } catch (IllegalStateException ex) {
+                // Closed meanwhile; close has flushed this write
+            }
+        }
+    }
+
+    private IOException failed() {
+        return new IOException("Journal write failed earlier; records may be missing", failure);
+    }
+
+    // Group commit: whoever gets the flush lock writes everything appended so far, so concurrent
+    // committers waiting behind it usually find their record already durable
+    private void flush(long seq) throws IOException {
+        synchronized (flushLock) {
+            ByteBuffer batch;
+            long upTo;
+            FileChannel ch;
+            synchronized (lock) {
+                if (failure != null) throw failed();
+                if (durableSeq >= seq) return;
+                batch = pending;
+                batch.flip();
+                pending = spare;
+                upTo = appendedSeq;
+                ch = channel;
+            }
+            try {
+                while (batch.hasRemaining()) ch.write(batch);
+                if (durability != Durability.NONE) ch.force(false);
+            } catch (IOException ex) {
+                synchronized (lock) {
+                    failure = ex;
+                }
+                throw ex;
+            } finally {
+                spare = batch.clear();
+            }
+            durableSeq = upTo;
+        }
+    }
+
+    // Forces every record appended so far to disk
+    public void flush() throws IOException {
+        long seq;
+        synchronized (lock) {
+            seq = appendedSeq;
+        }
+        flush(seq);
+    }
+
+    // Background flush; a failure is kept and thrown by the next flush or commit
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ex) {
+            // Already recorded by flush
+        } catch (RuntimeException ex) {
+            synchronized (lock) {
+                if (failure == null) failure = new IOException("Background flush failed", ex);
+            }
+        }
+    }
+
+    // Starts a new generation right away and writes its snapshot in the background. Holds the network's
+    // write lock while switching so no edit lands between the snapshot and the new journal.
+    public Future<?> compact() {
+        RouteGraph g;
+        long next;
+        synchronized (network) {
+            // Inside a batch the snapshot would miss edits already appended to the old journal
+            if (network.inBatch()) throw new IllegalStateException("Cannot compact inside a batch");
+            g = network.graph();
+            synchronized (flushLock) {
+                synchronized (lock) {
+                    if (closed) throw new IllegalStateException("Journal is closed");
+                    next = generation + 1;
+                }
+                try {
+                    flush();
+                    FileChannel ch = FileChannel.open(journal(dir, next), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    writeHeader(ch, next);
+                    synchronized (lock) {
+                        channel.close();
+                        channel = ch;
+                        generation = next;
+                        journalBytes = HEADER_BYTES;
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+        Future<?> f = background.submit(() -> {
+            NetworkFile.write(g, snapshot(dir, next));
+            // Older generations are now redundant
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path p : files) {
+                    Matcher m = FILE.matcher(p.getFileName().toString());
+                    if (m.matches() && Long.parseLong(m.group(2)) < next) Files.deleteIfExists(p);
+                }
+            }
+            return null;
+        });
+        synchronized (lock) {
+            compaction = f;
+        }
+        return f;
+    }
+
+    public long generation() {
+        synchronized (lock) {
+            return generation;
+        }
+    }
+
+    // Detaches from the network, then flushes and waits for a running compaction. Records are appended
+    // under the network's lock, so once detached no further record can arrive behind the final flush.
+    @Override
+    public void close() throws IOException {
+        Future<?> f;
+        synchronized (network) {
+            synchronized (lock) {
+                if (closed) return;
+                closed = true;
+                f = compaction;
+            }
+            network.attachJournal(null);
+        }
+        background.shutdown();
+        try {
+            flush();
+        } catch (IOException ex) {
+            synchronized (flushLock) {
+                channel.close();
+            }
+            throw ex;
+        }
+        try {
+            if (f != null) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new IOException("Compaction failed", ex.getCause());
+        } finally {
+            synchronized (flushLock) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
+
+// Bulk loader for OpenFlights airports.dat / routes.dat files. Both files are streamed through a reused
+// byte buffer and split into field offsets; only the strings an Airport keeps are ever decoded. Route
+// distances are computed in one pass over primitive arrays and everything lands in one network update.
+public final class OpenFlightsImporter {
+    private static final int MAX_FIELDS = 16, MAX_PROBLEMS = 1000, PARALLEL_ROUTES = 20_000;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    public static final class Report {
+        public final int airportsAdded, routesAdded, duplicateAirports, duplicateRoutes, malformedRows;
+        // First MAX_PROBLEMS problems as "file:line: reason"
+        public final List<String> problems;
+
+        Report(int airportsAdded, int routesAdded, int duplicateAirports, int duplicateRoutes, int malformedRows, List<String> problems) {
+            this.airportsAdded = airportsAdded;
+            this.routesAdded = routesAdded;
+            this.duplicateAirports = duplicateAirports;
+            this.duplicateRoutes = duplicateRoutes;
+            this.malformedRows = malformedRows;
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        @Override
+        public String toString() {
+            return airportsAdded + " airports, " + routesAdded + " routes added; " + duplicateAirports + " duplicate airports, "
+                    + duplicateRoutes + " duplicate routes, " + malformedRows + " malformed rows";
+        }
+    }
+
+    private final FlightNetwork net;
+    // OpenFlights has no fares, so cost is derived from the great-circle distance
+    private DoubleUnaryOperator costForDistance = km -> Math.round(50 + 0.1 * km);
+
+    // Field offsets of the current line
+    private final int[] start = new int[MAX_FIELDS], end = new int[MAX_FIELDS];
+    private final boolean[] quoted = new boolean[MAX_FIELDS];
+
+    // Airports known to this import (existing ones first), addressed by index
+    private final List<FlightNetwork.Airport> airports = new ArrayList<>();
+    private double[] lat = new double[1024], lon = new double[1024];
+    private final CodeTable codes = new CodeTable();
+    private int[] byOpenFlightsId = new int[0];
+    private int existingAirports;
+
+    private int[] routeFrom = new int[1024], routeTo = new int[1024];
+    private int routeCount;
+    private final LongSet routePairs = new LongSet();
+
+    private int duplicateAirports, duplicateRoutes, malformed;
+    private final List<String> problems = new ArrayList<>();
+
+    public OpenFlightsImporter(FlightNetwork net) {
+        this.net = net;
+    }
+
+    public OpenFlightsImporter costModel(DoubleUnaryOperator costForDistance) {
+        this.costForDistance = costForDistance;
+        return this;
+    }
+
+    // Either path may be null. Rows for airports or routes the network already has count as duplicates.
+    public Report importFiles(Path airportsFile, Path routesFile) throws IOException {
+        for (FlightNetwork.Airport a : net.getAirports()) addKnown(a);
+        existingAirports = airports.size();
+        for (int i = 0; i < existingAirports; i++)
+            for (FlightNetwork.Route r : net.getRoutesFrom(airports.get(i).code)) {
+                int to = codes.get(r.to);
+                if (to >= 0) routePairs.add(pair(i, to));
+            }
+
+        if (airportsFile != null) forEachLine(airportsFile, this::airportRow);
+        if (routesFile != null) forEachLine(routesFile, this::routeRow);
+
+        List<FlightNetwork.Airport> newAirports = airports.subList(existingAirports, airports.size());
+        List<FlightNetwork.Route> newRoutes = buildRoutes();
+        net.addAll(newAirports, newRoutes);
+        return new Report(newAirports.size(), newRoutes.size(), duplicateAirports, duplicateRoutes, malformed, problems);
+    }
+
+    private interface LineHandler {
+        void line(byte[] b, int from, int to, String file, int lineNo);
+    }
+
+    // Reads through a FileChannel in 1 MB chunks; a partial trailing line is carried into the next chunk
+    private static void forEachLine(Path p, LineHandler h) throws IOException {
+        String file = p.getFileName().toString();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            byte[] buf = new byte[1 << 20];
+            int len = 0, lineNo = 0;
+            while (true) {
+                int r = ch.read(ByteBuffer.wrap(buf, len, buf.length - len));
+                if (r > 0) len += r;
+                int from = 0;
+                for (int i = 0; i < len; i++) {
+                    if (buf[i] != '\n') continue;
+                    int to = i > from && buf[i - 1] == '\r' ? i - 1 : i;
+                    if (to > from) h.line(buf, from, to, file, lineNo + 1);
+                    lineNo++;
+                    from = i + 1;
+                }
+                if (r < 0) {
+                    int to = len > from && buf[len - 1] == '\r' ? len - 1 : len;
+                    if (to > from) h.line(buf, from, to, file, lineNo + 1);
+                    return;
+                }
+                System.arraycopy(buf, from, buf, 0, len - from);
+                len -= from;
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+    }
+
+    // id,name,city,country,IATA,ICAO,latitude,longitude,...
+    private void airportRow(byte[] b, int from, int to, String file, int lineNo) {
+        int n = split(b, from, to);
+        if (n < 8) {
+            problem(file, lineNo, "expected at least 8 fields");
+            return;
+        }
+        int f = isNull(b, 4) || end[4] == start[4] ? 5 : 4;
+        if (isNull(b, f) || end[f] == start[f]) {
+            problem(file, lineNo, "no IATA or ICAO code");
+            return;
+        }
+        double la, lo;
+        try {
+            la = number(b, 6);
+            lo = number(b, 7);
+        } catch (NumberFormatException ex) {
+            problem(file, lineNo, "bad coordinates");
+            return;
+        }
+        if (la < -90 || la > 90 || lo < -180 || lo > 180) {
+            problem(file, lineNo, "coordinates out of range");
+            return;
+        }
+        int idx = codes.get(b, start[f], end[f]);
+        if (idx < 0) idx = addKnown(new FlightNetwork.Airport(text(b, f).toUpperCase(), text(b, 1), text(b, 3), la, lo));
+        else duplicateAirports++;
+        // Map the OpenFlights id even for duplicates so routes that use it still resolve
+        try {
+            int id = (int) number(b, 0);
+            if (id >= 0 && id < 10_000_000) {
+                if (id >= byOpenFlightsId.length) {
+                    int old = byOpenFlightsId.length;
+                    byOpenFlightsId = Arrays.copyOf(byOpenFlightsId, Math.max(id + 1, old * 2));
+                    Arrays.fill(byOpenFlightsId, old, byOpenFlightsId.length, -1);
+                }
+                byOpenFlightsId[id] = idx;
+            }
+        } catch (NumberFormatException ignored) {
+            // Routes can still refer to the airport by code
+        }
+    }
+
+    // airline,airlineId,source,sourceId,destination,destinationId,...
+    private void routeRow(byte[] b, int from, int to, String file, int lineNo) {
+        int n = split(b, from, to);
+        if (n < 6) {
+            problem(file, lineNo, "expected at least 6 fields");
+            return;
+        }
+        int src = resolve(b, 2, 3), dst = resolve(b, 4, 5);
+        if (src < 0 || dst < 0) {
+            problem(file, lineNo, "unknown airport");
+            return;
+        }
+        if (src == dst) {
+            problem(file, lineNo, "route starts and ends at the same airport");
+            return;
+        }
+        if (!routePairs.add(pair(src, dst))) {
+            duplicateRoutes++;
+            return;
+        }
+        if (routeCount == routeFrom.length) {
+            routeFrom = Arrays.copyOf(routeFrom, routeCount * 2);
+            routeTo = Arrays.copyOf(routeTo, routeCount * 2);
+        }
+        routeFrom[routeCount] = src;
+        routeTo[routeCount++] = dst;
+    }
+
+    private int resolve(byte[] b, int codeField, int idField) {
+        int idx = isNull(b, codeField) ? -1 : codes.get(b, start[codeField], end[codeField]);
+        if (idx >= 0 || isNull(b, idField)) return idx;
+        try {
+            int id = (int) number(b, idField);
+            return id >= 0 && id < byOpenFlightsId.length ? byOpenFlightsId[id] : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    // Distances for every route in one flat loop (parallel for large imports)
+    private List<FlightNetwork.Route> buildRoutes() {
+        double[] dist = new double[routeCount];
+        IntStream range = IntStream.range(0, routeCount);
+        (routeCount >= PARALLEL_ROUTES ? range.parallel() : range).forEach(i -> {
+            int u = routeFrom[i], v = routeTo[i];
+            dist[i] = FlightNetwork.haversine(lat[u], lon[u], lat[v], lon[v]);
+        });
+        List<FlightNetwork.Route> out = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            double d = dist[i];
+            out.add(new FlightNetwork.Route(airports.get(routeFrom[i]).code, airports.get(routeTo[i]).code,
+                    costForDistance.applyAsDouble(d), d, d / FlightNetwork.CRUISE_KMH));
+        }
+        return out;
+    }
+
+    private int addKnown(FlightNetwork.Airport a) {
+        int idx = airports.size();
+        if (idx == lat.length) {
+            lat = Arrays.copyOf(lat, idx * 2);
+            lon = Arrays.copyOf(lon, idx * 2);
+        }
+        airports.add(a);
+        lat[idx] = a.latitude;
+        lon[idx] = a.longitude;
+        codes.put(a.code, idx);
+        return idx;
+    }
+
+    private void problem(String file, int lineNo, String reason) {
+        malformed++;
+        if (problems.size() < MAX_PROBLEMS) problems.add(file + ":" + lineNo + ": " + reason);
+    }
+
+    private static long pair(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    // Splits a CSV line into field offsets; quotes are excluded from the quoted fields' ranges
+    private int split(byte[] b, int from, int to) {
+        int n = 0, i = from;
+        while (n < MAX_FIELDS) {
+            if (i < to && b[i] == '"') {
+                start[n] = ++i;
+                while (i < to && !(b[i] == '"' && (i + 1 == to || b[i + 1] != '"'))) i += b[i] == '"' ? 2 : 1;
+                end[n] = Math.min(i, to);
+                quoted[n++] = true;
+                while (i < to && b[i] != ',') i++;
+            } else {
+                start[n] = i;
+                while (i < to && b[i] != ',') i++;
+                end[n] = i;
+                quoted[n++] = false;
+            }
+            if (i >= to) break;
+            i++;
+        }
+        return n;
+    }
+
+    private boolean isNull(byte[] b, int f) {
+        return end[f] - start[f] == 2 && b[start[f]] == '\\' && b[start[f] + 1] == 'N';
+    }
+
+    private String text(byte[] b, int f) {
+        if (isNull(b, f)) return "";
+        String s = new String(b, start[f], end[f] - start[f], StandardCharsets.UTF_8);
+        return quoted[f] && s.indexOf('"') >= 0 ? s.replace("\"\"", "\"") : s;
+    }
+
+    // Exact for up to 15 significant digits; longer numbers go through Double.parseDouble
+    private double number(byte[] b, int f) {
+        int i = start[f], e = end[f];
+        boolean neg = i < e && b[i] == '-';
+        if (i < e && (b[i] == '-' || b[i] == '+')) i++;
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, any = false;
+        for (; i < e; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                any = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0 && ++digits > 15) return Double.parseDouble(new String(b, start[f], e - start[f], StandardCharsets.ISO_8859_1));
+                if (dot) scale++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(new String(b, start[f], e - start[f], StandardCharsets.ISO_8859_1));
+            }
+        }
+        if (!any) throw new NumberFormatException("empty number");
+        if (scale >= POW10.length) return Double.parseDouble(new String(b, start[f], e - start[f], StandardCharsets.ISO_8859_1));
+        double v = mantissa / POW10[scale];
+        return neg ? -v : v;
+    }
+
+    // Open-addressing map from airport code to index that can be probed with raw bytes
+    private static final class CodeTable {
+        String[] keys = new String[2048];
+        int[] values = new int[2048];
+        int size;
+
+        void put(String code, int value) {
+            if (size * 2 >= keys.length) grow();
+            int i = hash(code) & (keys.length - 1);
+            while (keys[i] != null && !keys[i].equals(code)) i = (i + 1) & (keys.length - 1);
+            if (keys[i] == null) size++;
+            keys[i] = code;
+            values[i] = value;
+        }
+
+        int get(String code) {
+            for (int i = hash(code) & (keys.length - 1); keys[i] != null; i = (i + 1) & (keys.length - 1))
+                if (keys[i].equals(code)) return values[i];
+            return -1;
+        }
+
+        // Codes are ASCII; lower-case input matches the upper-cased stored code
+        int get(byte[] b, int from, int to) {
+            int h = 0;
+            for (int j = from; j < to; j++) h = h * 31 + upper(b[j]);
+            for (int i = mix(h) & (keys.length - 1); keys[i] != null; i = (i + 1) & (keys.length - 1))
+                if (matches(keys[i], b, from, to)) return values[i];
+            return -1;
+        }
+
+        private static boolean matches(String k, byte[] b, int from, int to) {
+            if (k.length() != to - from) return false;
+            for (int j = 0; j < k.length(); j++) if (k.charAt(j) != upper(b[from + j])) return false;
+            return true;
+        }
+
+        private static int upper(byte c) {
+            return c >= 'a' && c <= 'z' ? c - 32 : c & 0xff;
+        }
+
+        private static int hash(String s) {
+            int h = 0;
+            for (int j = 0; j < s.length(); j++) h = h * 31 + s.charAt(j);
+            return mix(h);
+        }
+
+        private static int mix(int h) {
+            return (h ^ (h >>> 16)) * 0x45d9f3b;
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != null) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    // Open-addressing set of longs; 0 marks an empty slot so keys are stored as value + 1
+    private static final class LongSet {
+        long[] slots = new long[4096];
+        int size;
+
+        boolean add(long v) {
+            if (size * 2 >= slots.length) grow();
+            long k = v + 1;
+            int i = (int) ((k * 0x9E3779B97F4A7C15L) >>> 32) & (slots.length - 1);
+            while (slots[i] != 0) {
+                if (slots[i] == k) return false;
+                i = (i + 1) & (slots.length - 1);
+            }
+            slots[i] = k;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = 0;
+            for (long k : old) if (k != 0) add(k - 1);
+        }
+    }
+}
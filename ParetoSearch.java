@@ -0,0 +1,196 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+// Multi-criteria label-setting search over (cost, distance, flight time, hops) on one RouteGraph snapshot,
+// returning the Pareto front of routes s -> t. Labels live in parallel primitive arrays and every airport
+// keeps a bag of the labels nothing else there dominates. Labels leave the heap in order of a weighted sum
+// of the criteria, so a popped label is final. A new label is dropped if a label at its airport dominates
+// it, or if a label at the target dominates it even after adding great-circle lower bounds for the rest
+// of the way. epsilon > 0 drops labels within a factor 1 + epsilon of another on cost, distance and time,
+// which keeps bags small on large networks at the price of near-duplicate options; maxHops caps the flights.
+public final class ParetoSearch {
+    private final RouteGraph g;
+    private final int s, t, maxHops;
+    private final double slack;
+    private final double[] scale;
+    // Label columns: totals, airport, predecessor label and the edge taken from it
+    private double[] cost = new double[64], dist = new double[64], time = new double[64], key = new double[64];
+    private int[] hops = new int[64], node = new int[64], prev = new int[64], edge = new int[64];
+    private boolean[] dead = new boolean[64];
+    private int size;
+    // Live labels per airport, created on first use
+    private final int[][] bag;
+    private final int[] bagSize;
+    // Lower bounds from each airport to t per criterion, computed on first use (NaN until then)
+    private final double[] lbCost, lbDist, lbTime;
+    // Binary min-heap of label ids by key
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    public static final class Option {
+        public final List<FlightNetwork.Route> path;
+        public final double cost, distance, flightTime;
+        public final int hops;
+
+        Option(List<FlightNetwork.Route> path, double cost, double distance, double flightTime) {
+            this.path = path;
+            this.cost = cost;
+            this.distance = distance;
+            this.flightTime = flightTime;
+            this.hops = path.size();
+        }
+
+        @Override
+        public String toString() {
+            String stops = hops == 1 ? "nonstop" : hops == 2 ? "1 stop" : hops - 1 + " stops";
+            return String.format("$%.2f, %.1f km, %.1f h, %s", cost, distance, flightTime, stops);
+        }
+    }
+
+    private ParetoSearch(RouteGraph g, int s, int t, double epsilon, int maxHops) {
+        this.g = g;
+        this.s = s;
+        this.t = t;
+        this.maxHops = maxHops;
+        slack = 1 + epsilon;
+        scale = g.meanWeights();
+        int n = g.airportCount;
+        bag = new int[n][];
+        bagSize = new int[n];
+        lbCost = new double[n];
+        lbDist = new double[n];
+        lbTime = new double[n];
+        Arrays.fill(lbCost, Double.NaN);
+    }
+
+    // The Pareto front s -> t, cheapest first; empty if t is unreachable within maxHops flights
+    static List<Option> search(RouteGraph g, int s, int t, double epsilon, int maxHops) {
+        if (s < 0 || t < 0 || s == t || maxHops < 1 || !(epsilon >= 0)) return new ArrayList<>();
+        return new ParetoSearch(g, s, t, epsilon, maxHops).run();
+    }
+
+    private List<Option> run() {
+        List<Integer> found = new ArrayList<>();
+        add(s, 0, 0, 0, 0, -1, -1);
+        for (int popped = 1; heapSize > 0; popped++) {
+            if ((popped & 4095) == 0 && Thread.currentThread().isInterrupted())
+                throw new CancellationException("Route search interrupted");
+            int l = pop();
+            if (dead[l]) continue;
+            int u = node[l];
+            if (u == t) {
+                found.add(l);
+                continue;
+            }
+            if (hops[l] == maxHops) continue;
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.head[e], h = hops[l] + 1;
+                if (v == s || (v != t && h == maxHops)) continue;
+                double c = cost[l] + g.cost[e], d = dist[l] + g.distance[e], f = time[l] + g.flightTime[e];
+                if (v != t) {
+                    bounds(v);
+                    if (dominated(t, c + lbCost[v], d + lbDist[v], f + lbTime[v], h + 1)) continue;
+                }
+                if (dominated(v, c, d, f, h) || dominated(t, c, d, f, h)) continue;
+                dropDominatedBy(v, c, d, f, h);
+                add(v, c, d, f, h, l, e);
+            }
+        }
+        List<Option> out = new ArrayList<>(found.size());
+        for (int l : found) {
+            ArrayDeque<FlightNetwork.Route> rev = new ArrayDeque<>();
+            for (int k = l; edge[k] >= 0; k = prev[k]) rev.addFirst(g.route(edge[k]));
+            out.add(new Option(new ArrayList<>(rev), cost[l], dist[l], time[l]));
+        }
+        out.sort(Comparator.comparingDouble((Option o) -> o.cost).thenComparingDouble(o -> o.flightTime).thenComparingInt(o -> o.hops));
+        return out;
+    }
+
+    private void bounds(int v) {
+        if (!Double.isNaN(lbCost[v])) return;
+        double km = g.greatCircle(v, t);
+        lbCost[v] = g.boundRatio[FlightNetwork.Metric.COST.ordinal()] * km;
+        lbDist[v] = g.boundRatio[FlightNetwork.Metric.DISTANCE.ordinal()] * km;
+        lbTime[v] = g.boundRatio[FlightNetwork.Metric.FLIGHT_TIME.ordinal()] * km;
+    }
+
+    // True if a live label at airport v is no worse (up to the epsilon slack) on every criterion
+    private boolean dominated(int v, double c, double d, double f, int h) {
+        int[] b = bag[v];
+        for (int i = 0, n = bagSize[v]; i < n; i++) {
+            int k = b[i];
+            if (hops[k] <= h && cost[k] <= c * slack && dist[k] <= d * slack && time[k] <= f * slack) return true;
+        }
+        return false;
+    }
+
+    // Removes the labels at v that (c, d, f, h) strictly dominates; they are skipped when popped
+    private void dropDominatedBy(int v, double c, double d, double f, int h) {
+        int[] b = bag[v];
+        for (int i = 0; i < bagSize[v]; ) {
+            int k = b[i];
+            if (h <= hops[k] && c <= cost[k] && d <= dist[k] && f <= time[k]) {
+                dead[k] = true;
+                b[i] = b[--bagSize[v]];
+            } else i++;
+        }
+    }
+
+    private void add(int v, double c, double d, double f, int h, int from, int e) {
+        if (size == cost.length) {
+            int cap = size * 2;
+            cost = Arrays.copyOf(cost, cap);
+            dist = Arrays.copyOf(dist, cap);
+            time = Arrays.copyOf(time, cap);
+            key = Arrays.copyOf(key, cap);
+            hops = Arrays.copyOf(hops, cap);
+            node = Arrays.copyOf(node, cap);
+            prev = Arrays.copyOf(prev, cap);
+            edge = Arrays.copyOf(edge, cap);
+            dead = Arrays.copyOf(dead, cap);
+        }
+        int l = size++;
+        cost[l] = c;
+        dist[l] = d;
+        time[l] = f;
+        hops[l] = h;
+        node[l] = v;
+        prev[l] = from;
+        edge[l] = e;
+        // Criteria in units of an average route, so none of them swamps the ordering
+        key[l] = c / scale[FlightNetwork.Metric.COST.ordinal()] + d / scale[FlightNetwork.Metric.DISTANCE.ordinal()]
+                + f / scale[FlightNetwork.Metric.FLIGHT_TIME.ordinal()] + h;
+        if (bag[v] == null) bag[v] = new int[4];
+        else if (bagSize[v] == bag[v].length) bag[v] = Arrays.copyOf(bag[v], bagSize[v] * 2);
+        bag[v][bagSize[v]++] = l;
+        push(l);
+    }
+
+    private void push(int l) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        double k = key[l];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (key[heap[p]] <= k) break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = l;
+    }
+
+    private int pop() {
+        int top = heap[0], last = heap[--heapSize];
+        int i = 0, half = heapSize >>> 1;
+        double k = key[last];
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < heapSize && key[heap[c + 1]] < key[heap[c]]) c++;
+            if (k <= key[heap[c]]) break;
+            heap[i] = heap[c];
+            i = c;
+        }
+        if (heapSize > 0) heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,509 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Headless query server: loads a network file and answers queries as JSON over HTTP on the loopback
+// interface, for internal tools that have no use for the GUI.
+//   GET  /route?from=LHE&to=KHI[&metric=COST|DISTANCE|FLIGHT_TIME][&strategy=AUTO|DIJKSTRA|...][&direct=true]
+//   GET  /nearest?lat=31.52&lon=74.40[&count=5]
+//   GET  /matrix?origins=LHE,KHI&destinations=ISB,PEW[&metric=COST]
+//   GET  /reachable?from=LHE&budget=500[&metric=COST|DISTANCE|FLIGHT_TIME|STOPS][&reverse=true]
+//   POST /batch   one query per line ("route?from=LHE&to=KHI", "nearest?..."), answered as one JSON array
+//                 in the same order; a bad line gets {"error": ...} in its slot instead of failing the batch.
+//                 Over MAX_BATCH queries or MAX_BATCH_BYTES of body is 413.
+//   GET  /stats   search counters and latency percentiles
+// Every request runs on its own virtual thread where the JDK has them (21+), else on a cached pool.
+// Replies are encoded straight onto the response stream as they are written; no reply is built as a string.
+public final class QueryServer {
+    static final int DEFAULT_PORT = 8080;
+    private static final int MAX_BATCH = 10_000, MAX_NEAREST = 1000, MAX_MATRIX_CELLS = 1_000_000;
+    // Room for MAX_BATCH queries of a few hundred bytes; the body is read no further than this
+    private static final int MAX_BATCH_BYTES = 4 << 20;
+    private static final String METRICS_NAME = "QueryServer";
+
+    private final FlightNetwork net;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    // True if executor starts a virtual thread per request
+    public final boolean virtualThreads;
+
+    public QueryServer(FlightNetwork net, InetSocketAddress address) throws IOException {
+        this.net = net;
+        http = HttpServer.create(address, 1024);
+        ExecutorService vt = virtualThreadExecutor();
+        virtualThreads = vt != null;
+        executor = vt != null ? vt : Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "query-server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(executor);
+        http.createContext("/", this::handle);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() looked up reflectively so the sources still build for
+    // Java 11; null before Java 21
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    // Stops accepting, gives running requests up to delaySeconds, then interrupts what is left
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public InetSocketAddress address() {
+        return http.getAddress();
+    }
+
+    // A parsed, validated query. run() searches and may fail; the Reply it returns only writes, so an
+    // error can still be reported with a proper status before any of the reply is sent.
+    private interface Query {
+        Reply run();
+    }
+
+    private interface Reply {
+        void write(Json out) throws IOException;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String path = ex.getRequestURI().getPath(), method = ex.getRequestMethod();
+            if (path.equals("/batch")) {
+                if (!method.equals("POST")) {
+                    fail(ex, 405, "use POST for /batch");
+                    return;
+                }
+                byte[] body = ex.getRequestBody().readNBytes(MAX_BATCH_BYTES + 1);
+                if (body.length > MAX_BATCH_BYTES) {
+                    fail(ex, 413, "at most " + MAX_BATCH_BYTES + " bytes per batch");
+                    return;
+                }
+                List<String> lines = new ArrayList<>();
+                BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.trim().isEmpty()) continue;
+                    if (lines.size() == MAX_BATCH) {
+                        fail(ex, 413, "at most " + MAX_BATCH + " queries per batch");
+                        return;
+                    }
+                    lines.add(line.trim());
+                }
+                Json out = reply(ex, 200);
+                out.beginArray();
+                for (String line : lines) {
+                    int q = line.indexOf('?');
+                    String name = q < 0 ? line : line.substring(0, q);
+                    Query query;
+                    try {
+                        query = parse(name.startsWith("/") ? name : "/" + name, params(q < 0 ? null : line.substring(q + 1)));
+                    } catch (IllegalArgumentException bad) {
+                        out.beginObject().name("error").value(bad.getMessage()).endObject();
+                        continue;
+                    }
+                    Reply reply = null;
+                    String error = query == null ? "unknown query " + name : null;
+                    try {
+                        if (query != null) reply = query.run();
+                    } catch (RuntimeException failed) {
+                        error = String.valueOf(failed.getMessage());
+                    }
+                    if (reply == null) out.beginObject().name("error").value(error).endObject();
+                    else reply.write(out);
+                }
+                out.endArray().close();
+                return;
+            }
+            if (!method.equals("GET")) {
+                fail(ex, 405, "use GET");
+                return;
+            }
+            Query query;
+            try {
+                query = parse(path, params(ex.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException bad) {
+                fail(ex, 400, bad.getMessage());
+                return;
+            }
+            if (query == null) {
+                fail(ex, 404, "unknown path " + path);
+                return;
+            }
+            Reply reply;
+            try {
+                reply = query.run();
+            } catch (RuntimeException failed) {
+                fail(ex, 500, String.valueOf(failed.getMessage()));
+                return;
+            }
+            Json out = reply(ex, 200);
+            reply.write(out);
+            out.close();
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Null for an unknown path; IllegalArgumentException for bad parameters
+    private Query parse(String path, Map<String, String> p) {
+        switch (path) {
+            case "/route": {
+                String from = required(p, "from"), to = required(p, "to");
+                FlightNetwork.Metric metric = option(p, "metric", FlightNetwork.Metric.COST);
+                FlightNetwork.SearchStrategy strategy = option(p, "strategy", FlightNetwork.SearchStrategy.AUTO);
+                boolean direct = Boolean.parseBoolean(p.get("direct"));
+                return () -> {
+                    List<FlightNetwork.Route> route = net.findRoute(from, to, metric, strategy, direct);
+                    return out -> writeRoute(out, from, to, route);
+                };
+            }
+            case "/nearest": {
+                double lat = number(p, "lat", -90, 90), lon = number(p, "lon", -180, 180);
+                int count = p.containsKey("count") ? (int) number(p, "count", 1, MAX_NEAREST) : 5;
+                return () -> {
+                    List<FlightNetwork.Airport> airports = net.nearestAirports(lat, lon, count);
+                    return out -> writeAirports(out, airports);
+                };
+            }
+            case "/matrix": {
+                List<String> origins = codes(p, "origins"), destinations = codes(p, "destinations");
+                if ((long) origins.size() * destinations.size() > MAX_MATRIX_CELLS)
+                    throw new IllegalArgumentException("at most " + MAX_MATRIX_CELLS + " matrix cells");
+                FlightNetwork.Metric metric = option(p, "metric", FlightNetwork.Metric.COST);
+                return () -> {
+                    RouteMatrix mx = net.routeMatrix(origins, destinations, metric, false);
+                    return out -> writeMatrix(out, mx);
+                };
+            }
+            case "/reachable": {
+                String from = required(p, "from");
+                double budget = number(p, "budget", 0, Double.POSITIVE_INFINITY);
+                boolean reverse = Boolean.parseBoolean(p.get("reverse"));
+                String by = p.getOrDefault("metric", "COST");
+                FlightNetwork.Metric metric = by.equalsIgnoreCase("STOPS") ? null : option(p, "metric", FlightNetwork.Metric.COST);
+                return () -> {
+                    Reachability r = metric == null ? net.reachableWithStops(from, (int) Math.min(budget, Integer.MAX_VALUE - 1), reverse)
+                            : net.reachable(from, metric, budget, reverse);
+                    return out -> writeReachable(out, r);
+                };
+            }
+            case "/stats":
+                return () -> this::writeStats;
+            default:
+                return null;
+        }
+    }
+
+    private static void writeRoute(Json out, String from, String to, List<FlightNetwork.Route> path) throws IOException {
+        out.beginObject().name("from").value(from).name("to").value(to).name("found").value(path != null);
+        if (path != null) {
+            double cost = 0, distance = 0, time = 0;
+            for (FlightNetwork.Route r : path) {
+                cost += r.cost;
+                distance += r.distance;
+                time += r.flightTime;
+            }
+            out.name("cost").value(cost, 2).name("distance").value(distance, 1).name("flightTime").value(time, 2);
+            out.name("routes").beginArray();
+            for (FlightNetwork.Route r : path)
+                out.beginObject().name("from").value(r.from).name("to").value(r.to).name("cost").value(r.cost, 2)
+                        .name("distance").value(r.distance, 1).name("flightTime").value(r.flightTime, 2).endObject();
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    private static void writeAirports(Json out, List<FlightNetwork.Airport> airports) throws IOException {
+        out.beginObject().name("airports").beginArray();
+        for (FlightNetwork.Airport a : airports)
+            out.beginObject().name("code").value(a.code).name("name").value(a.name).name("country").value(a.country)
+                    .name("latitude").value(a.latitude, 6).name("longitude").value(a.longitude, 6).endObject();
+        out.endArray().endObject();
+    }
+
+    // Unreachable pairs are null
+    private static void writeMatrix(Json out, RouteMatrix mx) throws IOException {
+        out.beginObject().name("metric").value(mx.metric.name()).name("origins").beginArray();
+        for (String o : mx.origins) out.value(o);
+        out.endArray().name("destinations").beginArray();
+        for (String d : mx.destinations) out.value(d);
+        out.endArray().name("totals").beginArray();
+        for (int i = 0; i < mx.origins.size(); i++) {
+            out.beginArray();
+            for (int j = 0; j < mx.destinations.size(); j++) out.value(mx.total(i, j), 2);
+            out.endArray();
+        }
+        out.endArray().endObject();
+    }
+
+    // Airports nearest first, each with its total and the neighbouring airport on its best path ("via": where
+    // it is reached from, or where it flies on to when reverse). With metric STOPS the totals count flights.
+    private static void writeReachable(Json out, Reachability r) throws IOException {
+        out.beginObject().name("airport").value(r.airport).name("metric").value(r.metric == null ? "STOPS" : r.metric.name())
+                .name("reverse").value(r.reverse).name("airports").beginArray();
+        for (FlightNetwork.Airport a : r.airports()) {
+            FlightNetwork.Route via = r.predecessor(a.code);
+            out.beginObject().name("code").value(a.code).name("total").value(r.total(a.code), 2)
+                    .name("via").value(via == null ? null : r.reverse ? via.to : via.from).endObject();
+        }
+        out.endArray().endObject();
+    }
+
+    private void writeStats(Json out) throws IOException {
+        SearchMetrics.Snapshot s = net.metrics() == null ? null : net.metrics().snapshot();
+        out.beginObject().name("airports").value(net.graph().liveAirportCount).name("routes").value(net.graph().routeCount);
+        if (s != null) {
+            out.name("queries").value(s.queries).name("cacheHits").value(s.cacheHits).name("notFound").value(s.notFound)
+                    .name("p50LatencyMicros").value(s.latency.percentile(50) / 1e3, 1)
+                    .name("p99LatencyMicros").value(s.latency.percentile(99) / 1e3, 1)
+                    .name("maxLatencyMicros").value(s.latency.max() / 1e3, 1);
+        }
+        out.endObject();
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+        Map<String, String> p = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return p;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq), v = eq < 0 ? "" : pair.substring(eq + 1);
+            p.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return p;
+    }
+
+    private static String required(Map<String, String> p, String name) {
+        String v = p.get(name);
+        if (v == null || v.isEmpty()) throw new IllegalArgumentException("missing " + name);
+        return v;
+    }
+
+    private static double number(Map<String, String> p, String name, double min, double max) {
+        String v = required(p, name);
+        try {
+            double d = Double.parseDouble(v);
+            if (d >= min && d <= max) return d;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(name + " must be a number " + (max == Double.POSITIVE_INFINITY ? "of at least " + min : "from " + min + " to " + max));
+    }
+
+    private static <E extends Enum<E>> E option(Map<String, String> p, String name, E byDefault) {
+        String v = p.get(name);
+        if (v == null) return byDefault;
+        for (E e : byDefault.getDeclaringClass().getEnumConstants())
+            if (e.name().equalsIgnoreCase(v)) return e;
+        throw new IllegalArgumentException("unknown " + name + " " + v);
+    }
+
+    private static List<String> codes(Map<String, String> p, String name) {
+        List<String> out = new ArrayList<>();
+        for (String c : required(p, name).split(",")) if (!c.trim().isEmpty()) out.add(c.trim());
+        return out;
+    }
+
+    private static Json reply(HttpExchange ex, int status) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, 0); // Chunked: the length is unknown until the reply is written
+        return new Json(ex.getResponseBody());
+    }
+
+    private static void fail(HttpExchange ex, int status, String message) throws IOException {
+        reply(ex, status).beginObject().name("error").value(message).endObject().close();
+    }
+
+    // Streaming JSON encoder: tokens go straight into a buffered UTF-8 writer. Numbers are written digit by
+    // digit with a fixed number of decimals (non-finite ones as null), so encoding a reply allocates nothing.
+    static final class Json implements Closeable {
+        private static final int MAX_DEPTH = 64;
+        private static final long[] POW10 = new long[10];
+
+        static {
+            POW10[0] = 1;
+            for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+        }
+
+        private final Writer w;
+        private final char[] digits = new char[20];
+        // Bit d set: the container at depth d already holds an element, so the next one needs a comma
+        private long nonEmpty;
+        private int depth;
+        private boolean afterName;
+
+        Json(OutputStream out) {
+            w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+        }
+
+        private void separate() throws IOException {
+            if (afterName) {
+                afterName = false;
+                return;
+            }
+            if (depth > 0) {
+                long bit = 1L << (depth - 1);
+                if ((nonEmpty & bit) != 0) w.write(',');
+                else nonEmpty |= bit;
+            }
+        }
+
+        private Json open(char c) throws IOException {
+            if (depth == MAX_DEPTH) throw new IllegalStateException("JSON nested too deep");
+            separate();
+            w.write(c);
+            depth++;
+            nonEmpty &= ~(1L << (depth - 1));
+            return this;
+        }
+
+        private Json end(char c) throws IOException {
+            depth--;
+            w.write(c);
+            return this;
+        }
+
+        Json beginObject() throws IOException { return open('{'); }
+        Json endObject() throws IOException { return end('}'); }
+        Json beginArray() throws IOException { return open('['); }
+        Json endArray() throws IOException { return end(']'); }
+
+        Json name(String name) throws IOException {
+            separate();
+            string(name);
+            w.write(':');
+            afterName = true;
+            return this;
+        }
+
+        Json value(String s) throws IOException {
+            separate();
+            if (s == null) w.write("null");
+            else string(s);
+            return this;
+        }
+
+        Json value(boolean b) throws IOException {
+            separate();
+            w.write(b ? "true" : "false");
+            return this;
+        }
+
+        Json value(long v) throws IOException {
+            separate();
+            if (v < 0) {
+                w.write('-');
+                v = -v; // Long.MIN_VALUE comes out wrong; nothing here counts that high
+            }
+            digits(v, 1);
+            return this;
+        }
+
+        // Rounded to the given number of decimals (at most 9)
+        Json value(double v, int decimals) throws IOException {
+            separate();
+            double scaled = Math.abs(v) * POW10[decimals];
+            if (!Double.isFinite(v) || scaled >= Long.MAX_VALUE) {
+                w.write("null");
+                return this;
+            }
+            long r = Math.round(scaled);
+            if (v < 0 && r != 0) w.write('-');
+            digits(r / POW10[decimals], 1);
+            if (decimals > 0) {
+                w.write('.');
+                digits(r % POW10[decimals], decimals);
+            }
+            return this;
+        }
+
+        // Non-negative v in decimal, zero-padded to at least width digits
+        private void digits(long v, int width) throws IOException {
+            int i = digits.length;
+            do {
+                digits[--i] = (char) ('0' + v % 10);
+                v /= 10;
+            } while (v > 0);
+            while (digits.length - i < width) digits[--i] = '0';
+            w.write(digits, i, digits.length - i);
+        }
+
+        private void string(String s) throws IOException {
+            w.write('"');
+            int start = 0;
+            for (int i = 0, n = s.length(); i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') continue;
+                w.write(s, start, i - start);
+                start = i + 1;
+                switch (c) {
+                    case '"': w.write("\\\""); break;
+                    case '\\': w.write("\\\\"); break;
+                    case '\n': w.write("\\n"); break;
+                    case '\r': w.write("\\r"); break;
+                    case '\t': w.write("\\t"); break;
+                    default:
+                        w.write("\\u00");
+                        w.write(Character.forDigit(c >> 4, 16));
+                        w.write(Character.forDigit(c & 15, 16));
+                }
+            }
+            w.write(s, start, s.length() - start);
+            w.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.close();
+        }
+    }
+
+    // java QueryServer <network file> [--port 8080] [--hierarchies]
+    public static void main(String[] args) throws Exception {
+        String file = null;
+        int port = DEFAULT_PORT;
+        boolean hierarchies = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--port")) port = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--hierarchies")) hierarchies = true;
+                else if (file == null && !args[i].startsWith("--")) file = args[i];
+                else throw new IllegalArgumentException();
+            }
+        } catch (RuntimeException ex) {
+            file = null;
+        }
+        if (file == null) {
+            System.err.println("Usage: java QueryServer <network file> [--port " + DEFAULT_PORT + "] [--hierarchies]");
+            System.exit(2);
+        }
+        // Chunked replies go out in several small writes; with Nagle on, each reply stalls on the client's
+        // delayed ACK (about 40 ms). The JDK's server reads this once, when the first one is created, so
+        // processes that embed QueryServer pass -Dsun.net.httpserver.nodelay=true themselves.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        FlightNetwork net = FlightNetwork.loadFromFile(file);
+        net.enableMetrics().register(METRICS_NAME);
+        // Built in the background; queries use plain search until the hierarchies are ready
+        if (hierarchies) net.enableHierarchies(true, FlightNetwork.Metric.values());
+        QueryServer server = new QueryServer(net, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Serving " + net.graph().liveAirportCount + " airports on http://" + server.address().getHostString() + ":"
+                + server.address().getPort() + "/ (" + (server.virtualThreads ? "virtual threads" : "thread pool") + ")");
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.*;
+
+// Airports reachable from one airport within a budget, or with reverse set, the airports that can reach it:
+// e.g. everywhere from LHE for $500, within 12 hours in the air, or with at most 2 stops. One Dijkstra that
+// never queues an airport over budget, so the work is proportional to the reachable region, not the
+// network. Keeps best totals and the route each airport was reached by, for reachable airports only.
+// One budget per search: $500 and 12 hours together is a constrained search with several labels per
+// airport (see ParetoSearch), which this does not do.
+public final class Reachability {
+    public final String airport;
+    // null when the budget counts flights (stops + 1) instead of a metric
+    public final FlightNetwork.Metric metric;
+    public final double budget;
+    public final boolean reverse;
+    final RouteGraph graph;
+    // Reachable airports nearest first (the airport itself first), their totals and the edge on their best
+    // path next to them (into them, or out of them when reverse; -1 for the airport itself)
+    final int[] ids;
+    final double[] totals;
+    final int[] via;
+    // Positions into ids sorted by airport id, for lookups by code
+    private final int[] byId;
+
+    private Reachability(RouteGraph g, String airport, FlightNetwork.Metric metric, double budget, boolean reverse,
+                         int[] ids, double[] totals, int[] via, int count) {
+        this.graph = g;
+        this.airport = airport;
+        this.metric = metric;
+        this.budget = budget;
+        this.reverse = reverse;
+        this.ids = Arrays.copyOf(ids, count);
+        this.totals = Arrays.copyOf(totals, count);
+        this.via = Arrays.copyOf(via, count);
+        long[] keys = new long[count];
+        for (int k = 0; k < count; k++) keys[k] = (long) ids[k] << 32 | k;
+        Arrays.sort(keys);
+        byId = new int[count];
+        for (int k = 0; k < count; k++) byId[k] = (int) keys[k];
+    }
+
+    // w null counts one per flight. Empty if the airport is unknown or the budget negative.
+    static Reachability compute(RouteGraph g, String airport, FlightNetwork.Metric metric, double[] w, double budget, boolean reverse) {
+        int s = g.id(airport);
+        if (s < 0 || !(budget >= 0))
+            return new Reachability(g, airport, metric, budget, reverse, new int[0], new double[0], new int[0], 0);
+        RouteGraph.SearchState st = RouteGraph.SearchState.get(g.airportCount);
+        RouteGraph.IndexedHeap pq = st.heap;
+        int[] ids = new int[64], via = new int[64];
+        double[] totals = new double[64];
+        int count = 0;
+        st.reach(s, 0.0, -1);
+        pq.push(s, 0.0);
+        while (!pq.isEmpty()) {
+            int u = pq.pop();
+            int begin = reverse ? g.inBegin(u) : g.begin(u), end = reverse ? g.inEnd(u) : g.end(u);
+            st.settle(end - begin);
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                via = Arrays.copyOf(via, count * 2);
+                totals = Arrays.copyOf(totals, count * 2);
+            }
+            double du = st.dist[u];
+            ids[count] = u;
+            totals[count] = du;
+            via[count++] = st.prev[u];
+            // Backwards, each in-neighbour stands for its parallel routes into u
+            for (int k = begin; k < end; k++) {
+                int v = reverse ? g.inTail[k] : g.head[k];
+                for (int e = reverse ? g.edge(v, u) : k; e >= 0; e = reverse ? g.nextParallel(e) : -1) {
+                    double alt = du + (w == null ? 1 : w[e]);
+                    if (alt <= budget) RouteGraph.relax(st, v, alt, e);
+                }
+            }
+        }
+        return new Reachability(g, airport, metric, budget, reverse, ids, totals, via, count);
+    }
+
+    // Number of reachable airports, the airport itself included
+    public int size() {
+        return ids.length;
+    }
+
+    // Reachable airports, nearest first
+    public List<FlightNetwork.Airport> airports() {
+        List<FlightNetwork.Airport> out = new ArrayList<>(ids.length);
+        for (int i : ids) out.add(graph.airport(i));
+        return out;
+    }
+
+    private int indexOf(String code) {
+        return indexOf(graph.id(code));
+    }
+
+    private int indexOf(int v) {
+        int lo = 0, hi = byId.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ids[byId[mid]] < v) lo = mid + 1;
+            else hi = mid;
+        }
+        return v >= 0 && lo < byId.length && ids[byId[lo]] == v ? byId[lo] : -1;
+    }
+
+    public boolean contains(String code) {
+        return indexOf(code) >= 0;
+    }
+
+    // Best total to (or from, when reverse) an airport; +Infinity if it is out of budget
+    public double total(String code) {
+        int k = indexOf(code);
+        return k < 0 ? Double.POSITIVE_INFINITY : totals[k];
+    }
+
+    // The route an airport is reached by on its best path (the one it leaves by when reverse); null for the
+    // airport itself and airports out of budget
+    public FlightNetwork.Route predecessor(String code) {
+        int k = indexOf(code);
+        return k < 0 || via[k] < 0 ? null : graph.route(via[k]);
+    }
+
+    // Best path from the airport to code (from code to the airport when reverse); null if out of budget
+    public List<FlightNetwork.Route> path(String code) {
+        int k = indexOf(code);
+        if (k < 0) return null;
+        List<FlightNetwork.Route> p = new ArrayList<>();
+        for (int e = via[k]; e >= 0; ) {
+            p.add(graph.route(e));
+            k = indexOf(reverse ? graph.head[e] : graph.tail[e]);
+            e = via[k];
+        }
+        if (!reverse) Collections.reverse(p);
+        return p;
+    }
+}
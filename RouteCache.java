@@ -0,0 +1,186 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+// Bounded LRU cache of findRoute results keyed on (start, end, metric); direct-only lookups bypass it.
+// The network reports each mutation so only entries it can affect are dropped; a version mismatch (a
+// change the cache was not told about) clears everything.
+public final class RouteCache {
+    // Returned by get for a cached "no route" result
+    static final List<FlightNetwork.Route> NO_ROUTE = Collections.unmodifiableList(new ArrayList<>());
+
+    // Rough heap cost of an entry and of each route reference in its cached path
+    private static final int ENTRY_BYTES = 160, ROUTE_BYTES = 8;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long version, bytes;
+    private long hits, misses, evictions, invalidations;
+
+    public RouteCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    static final class Key {
+        final String start, end;
+        final FlightNetwork.Metric metric;
+
+        Key(String start, String end, FlightNetwork.Metric metric) {
+            this.start = start;
+            this.end = end;
+            this.metric = metric;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return metric == k.metric && start.equals(k.start) && end.equals(k.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return (start.hashCode() * 31 + end.hashCode()) * 31 + metric.ordinal();
+        }
+    }
+
+    private static final class Entry {
+        final List<FlightNetwork.Route> path; // null when no route exists
+        final double total;
+        final FlightNetwork.Airport start, end;
+
+        Entry(List<FlightNetwork.Route> path, double total, FlightNetwork.Airport start, FlightNetwork.Airport end) {
+            this.path = path;
+            this.total = total;
+            this.start = start;
+            this.end = end;
+        }
+
+        long bytes() {
+            return ENTRY_BYTES + (path == null ? 0 : (long) path.size() * ROUTE_BYTES);
+        }
+
+        boolean uses(String from, String to) {
+            if (path != null)
+                for (FlightNetwork.Route r : path)
+                    if (r.from.equals(from) && r.to.equals(to)) return true;
+            return false;
+        }
+
+        boolean touches(String code) {
+            if (start.code.equals(code) || end.code.equals(code)) return true;
+            if (path != null)
+                for (FlightNetwork.Route r : path)
+                    if (r.to.equals(code)) return true;
+            return false;
+        }
+    }
+
+    // Copy of the cached path, NO_ROUTE for a cached miss, or null if not cached
+    synchronized List<FlightNetwork.Route> get(Key key, long networkVersion) {
+        sync(networkVersion);
+        Entry e = networkVersion == version ? entries.get(key) : null;
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.path == null ? NO_ROUTE : new ArrayList<>(e.path);
+    }
+
+    synchronized void put(Key key, List<FlightNetwork.Route> path, FlightNetwork.Metric metric,
+                          FlightNetwork.Airport start, FlightNetwork.Airport end, long networkVersion) {
+        sync(networkVersion);
+        if (networkVersion != version) return; // Computed before a change the cache has already seen
+        double total = path == null ? Double.POSITIVE_INFINITY : 0;
+        if (path != null) for (FlightNetwork.Route r : path) total += FlightNetwork.weight(r, metric);
+        Entry e = new Entry(path == null ? null : new ArrayList<>(path), total, start, end);
+        Entry old = entries.put(key, e);
+        if (old != null) bytes -= old.bytes();
+        bytes += e.bytes();
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // Versions only grow; a newer one than ours means a change went unreported
+    private void sync(long networkVersion) {
+        if (networkVersion <= version) return;
+        clear();
+        version = networkVersion;
+    }
+
+    // Airports without routes cannot change any result
+    synchronized void airportAdded(long oldVersion, long newVersion) {
+        advance(oldVersion, newVersion);
+    }
+
+    synchronized void airportRemoved(String code, long oldVersion, long newVersion) {
+        if (advance(oldVersion, newVersion)) evictIf(e -> e.touches(code));
+    }
+
+    // Removing routes only lengthens paths, so results that avoid from -> to stay optimal
+    synchronized void routeRemoved(String from, String to, long oldVersion, long newVersion) {
+        if (advance(oldVersion, newVersion)) evictIf(e -> e.uses(from, to));
+    }
+
+    // A new route can only improve (s, t) if lb(s, from) + weight + lb(to, t) beats the cached total,
+    // where lb is the metric's great-circle lower bound
+    synchronized void routeAdded(FlightNetwork.Route r, FlightNetwork.Airport from, FlightNetwork.Airport to,
+                                 long oldVersion, long newVersion) {
+        if (!advance(oldVersion, newVersion)) return;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> me = it.next();
+            Key k = me.getKey();
+            Entry e = me.getValue();
+            double perKm = FlightNetwork.lowerBoundPerKm(k.metric);
+            double lb = FlightNetwork.weight(r, k.metric);
+            if (perKm > 0)
+                lb += perKm * (FlightNetwork.haversine(e.start.latitude, e.start.longitude, from.latitude, from.longitude)
+                        + FlightNetwork.haversine(to.latitude, to.longitude, e.end.latitude, e.end.longitude));
+            if (lb < e.total) {
+                bytes -= e.bytes();
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    // False (and everything dropped) if the cache had already missed a change
+    private boolean advance(long oldVersion, long newVersion) {
+        boolean inSync = version == oldVersion;
+        if (!inSync) clear();
+        version = newVersion;
+        return inSync;
+    }
+
+    private void evictIf(Predicate<Entry> stale) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (stale.test(e)) {
+                bytes -= e.bytes();
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized long evictions() { return evictions; }
+    public synchronized long invalidations() { return invalidations; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long estimatedBytes() { return bytes; }
+    public long maxBytes() { return maxBytes; }
+
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,1095 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Immutable snapshot of a FlightNetwork in primitive columns. Airports are numbered 0..airportCount-1, new
+// ones after the rest; the routes leaving airport u are edge ids begin(u)..end(u)-1, and the airports with
+// routes into v are inTail[inBegin(v)..inEnd(v)-1]. A removed airport keeps its id, with no routes, until
+// the next full compile; codes resolve to the airport's live id only.
+//
+// Snapshots derived from one another share a Store of append-only columns. Each row sits in a region of
+// power-of-two capacity with a small hash table of its destinations beside it: a route to a new
+// destination is written past the end of its row, where older snapshots (which know the shorter length)
+// never look, and any other route edit rewrites that one row into fresh space. Where each row lives is kept
+// per snapshot in chunks under a spine, so a write copies the spine and the chunks it touches. Once
+// abandoned regions outweigh live ones, a write compacts the columns into a new Store.
+public final class RouteGraph {
+    public final int airportCount, routeCount;
+    // Airports not removed; ids still run up to airportCount
+    public final int liveAirportCount;
+    // FlightNetwork version this snapshot was built for
+    public final long version;
+    // Every edge id of this snapshot is below edgeBound; ids in abandoned regions belong to no row
+    final int edgeBound;
+    // Edge columns, shared with the other snapshots of the Store
+    final int[] head, tail, nextParallel;
+    final double[] cost, distance, flightTime;
+    private final FlightNetwork.Route[] routes;
+    // The row in edges [s, s + c) has its table in slots[2s, 2s + 2c): 0 for empty, else 1 + the offset in
+    // the row of the lowest edge to some destination. Later parallel edges chain through nextParallel.
+    private final int[] slots;
+    // In-neighbour lists, in regions like the rows
+    final int[] inTail;
+    // Airport columns; x, y, z are unit vectors on the sphere, for great-circle lower bounds
+    private final FlightNetwork.Airport[] airports;
+    final double[] latitude, longitude, x, y, z;
+    // Row index: entry u of out (in) is start << 32 | length of u's routes (in-neighbours)
+    private final long[][] out, in;
+    // Readers only look codes up in it; the rest belongs to the writer
+    private final Store store;
+    // Per metric: largest k with weight >= k * greatCircle(from, to) on every edge, and the exact minimum
+    // ratio it is shaved from (+Infinity without routes). Derived snapshots only ever lower it, which keeps
+    // the bound admissible when routes are removed.
+    final double[] boundRatio = new double[FlightNetwork.Metric.values().length];
+    private final double[] minRatio = new double[FlightNetwork.Metric.values().length];
+    // Total route weight per metric, for meanWeights
+    private final double[] weightSum = new double[FlightNetwork.Metric.values().length];
+    // Built on first geographic query
+    private volatile GeoIndex geo;
+
+    private static final double EARTH_KM = 6371.0;
+    private static final int CHUNK_BITS = 8, CHUNK = 1 << CHUNK_BITS, CHUNK_MASK = CHUNK - 1;
+
+    // Empty network
+    RouteGraph() {
+        this(new Edit(new Store(0, 0)), 0);
+    }
+
+    // Snapshot of a binary network file. The numeric columns are copied in; airports, and routes in their
+    // original order, are decoded from the file only when asked for.
+    RouteGraph(NetworkFile file, long version) {
+        this(load(file), version);
+    }
+
+    private static Edit load(NetworkFile file) {
+        int n = file.airportCount(), m = file.routeCount();
+        Store s = new Store(n, m);
+        s.file = file;
+        Edit ed = new Edit(s);
+        file.coordinates(s.latitude, s.longitude);
+        for (int i = 0; i < n; i++) {
+            ed.out.extend(i);
+            ed.in.extend(i);
+            s.locate(i);
+        }
+        ed.airportCount = ed.liveAirportCount = s.airportsUsed = n;
+        IntBuffer to = file.targets();
+        DoubleBuffer cost = file.costs(), distance = file.distances(), flightTime = file.flightTimes();
+        for (int u = 0; u < n; u++) {
+            int len = file.firstRoute(u + 1) - file.firstRoute(u), start = ed.allocRow(len);
+            to.get(s.head, start, len);
+            cost.get(s.cost, start, len);
+            distance.get(s.distance, start, len);
+            flightTime.get(s.flightTime, start, len);
+            Arrays.fill(s.tail, start, start + len, u);
+            ed.layRow(u, start, len);
+        }
+        ed.finishLayout();
+        return ed;
+    }
+
+    // The snapshot an edit ends at, from now on the one its Store appends after
+    private RouteGraph(Edit ed, long version) {
+        Store s = ed.store;
+        this.version = version;
+        airportCount = ed.airportCount;
+        liveAirportCount = ed.liveAirportCount;
+        routeCount = ed.routeCount;
+        edgeBound = s.edgesUsed;
+        head = s.head;
+        tail = s.tail;
+        nextParallel = s.nextParallel;
+        cost = s.cost;
+        distance = s.distance;
+        flightTime = s.flightTime;
+        routes = s.routes;
+        slots = s.slots;
+        inTail = s.inTail;
+        airports = s.airports;
+        latitude = s.latitude;
+        longitude = s.longitude;
+        x = s.x;
+        y = s.y;
+        z = s.z;
+        out = ed.out.chunks;
+        in = ed.in.chunks;
+        store = s;
+        geo = ed.geo;
+        System.arraycopy(ed.minRatio, 0, minRatio, 0, minRatio.length);
+        System.arraycopy(ed.weightSum, 0, weightSum, 0, weightSum.length);
+        for (int k = 0; k < minRatio.length; k++) {
+            double r = minRatio[k];
+            // Shave off rounding so the bound stays admissible and consistent
+            boundRatio[k] = r == Double.POSITIVE_INFINITY || r <= 0 ? 0 : r * (1 - 1e-9);
+        }
+        s.tip = this;
+    }
+
+    // Snapshot after adding route r; both its airports must be in this one
+    RouteGraph withRoute(FlightNetwork.Route r, long version) {
+        Edit ed = edit();
+        ed.addRoute(id(r.from), id(r.to), r);
+        return ed.done(version);
+    }
+
+    // Snapshot without the routes from -> to (airport ids)
+    RouteGraph withoutRoutes(int from, int to, long version) {
+        Edit ed = edit();
+        ed.removeRoutes(from, to);
+        return ed.done(version);
+    }
+
+    // Snapshot without the given airports (live ids) and every route touching them
+    RouteGraph withoutAirports(int[] ids, long version) {
+        Edit ed = edit();
+        for (int x : ids) ed.removeAirport(x);
+        ed.geo = null;
+        return ed.done(version);
+    }
+
+    // Snapshot after adding the airports whose codes it does not have, then the routes between airports it
+    // has. Laid out afresh, as this is for imports.
+    RouteGraph withAll(Collection<FlightNetwork.Airport> newAirports, Collection<FlightNetwork.Route> newRoutes, long version) {
+        Edit ed = edit();
+        for (FlightNetwork.Airport a : newAirports)
+            if (ed.id(a.code) < 0) ed.addAirport(a);
+        for (FlightNetwork.Route r : newRoutes) {
+            int u = ed.id(r.from), v = ed.id(r.to);
+            if (u >= 0 && v >= 0) ed.addRoute(u, v, r);
+        }
+        ed.geo = null;
+        return new RouteGraph(Edit.compacted(new RouteGraph(ed, version), false), version);
+    }
+
+    // Snapshot after adding an airport this one does not have
+    RouteGraph withAirport(FlightNetwork.Airport a, long version) {
+        Edit ed = edit();
+        ed.addAirport(a);
+        ed.geo = null;
+        return ed.done(version);
+    }
+
+    // Appends to the Store only from its newest snapshot, and only if no failed edit left anything behind
+    // it; an edit of any other snapshot starts a Store of its own
+    private Edit edit() {
+        return store.tip == this && store.airportsUsed == airportCount ? new Edit(this) : Edit.compacted(this, true);
+    }
+
+    // Row index entry of a removed airport: reads as an empty row
+    private static final long DEAD = Long.MIN_VALUE;
+
+    private static long pack(int start, int len) {
+        return (long) start << 32 | len;
+    }
+
+    // Region size for a row of len entries. Always derived from the length, so readers need no more than that:
+    // appending in place is allowed only while the length stays within it.
+    private static int capacity(int len) {
+        return len <= 1 ? len : Integer.highestOneBit(len - 1) << 1;
+    }
+
+    private static int hash(int v) {
+        int h = v * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Lowest edge of the row to v, or -1. Slots past the row's length belong to newer snapshots and are skipped.
+    private static int find(int[] slots, int[] head, long row, int v) {
+        int len = (int) row;
+        if (len <= 0) return -1;
+        int start = (int) (row >>> 32), base = 2 * start, mask = 2 * capacity(len) - 1;
+        for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+            int s = slots[base + i];
+            if (s == 0) return -1;
+            if (s <= len && head[start + s - 1] == v) return start + s - 1;
+        }
+    }
+
+    // Row index under construction: the spine is copied on its first change, and each chunk on its own
+    private static final class Spine {
+        long[][] chunks;
+        private boolean[] own;
+
+        Spine(long[][] chunks) {
+            this.chunks = chunks;
+        }
+
+        long get(int i) {
+            return chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+        }
+
+        void set(int i, long row) {
+            int c = i >>> CHUNK_BITS;
+            if (own == null) {
+                chunks = chunks.clone();
+                own = new boolean[chunks.length];
+            }
+            if (!own[c]) {
+                chunks[c] = chunks[c].clone();
+                own[c] = true;
+            }
+            chunks[c][i & CHUNK_MASK] = row;
+        }
+
+        // Makes room for entry i, one past the last
+        void extend(int i) {
+            int c = i >>> CHUNK_BITS;
+            if (c < chunks.length) return;
+            chunks = Arrays.copyOf(chunks, c + 1);
+            own = own == null ? new boolean[c + 1] : Arrays.copyOf(own, c + 1);
+            chunks[c] = new long[CHUNK];
+            own[c] = true;
+        }
+    }
+
+    // A snapshot under construction, changing only the rows it has to
+    private static final class Edit {
+        final Store store;
+        final Spine out, in;
+        int airportCount, liveAirportCount, routeCount;
+        final double[] minRatio = new double[FlightNetwork.Metric.values().length];
+        final double[] weightSum = new double[FlightNetwork.Metric.values().length];
+        GeoIndex geo;
+
+        // Empty, over a fresh Store
+        Edit(Store store) {
+            this.store = store;
+            out = new Spine(new long[0][]);
+            in = new Spine(new long[0][]);
+            Arrays.fill(minRatio, Double.POSITIVE_INFINITY);
+        }
+
+        // Starting from g, appending to its Store
+        Edit(RouteGraph g) {
+            store = g.store;
+            out = new Spine(g.out);
+            in = new Spine(g.in);
+            airportCount = g.airportCount;
+            liveAirportCount = g.liveAirportCount;
+            routeCount = g.routeCount;
+            System.arraycopy(g.minRatio, 0, minRatio, 0, minRatio.length);
+            System.arraycopy(g.weightSum, 0, weightSum, 0, weightSum.length);
+            geo = g.geo;
+        }
+
+        // g laid out tightly in a new Store. The airport columns and codes carry over unless fork is set, for
+        // a snapshot whose Store may have moved on past it.
+        static Edit compacted(RouteGraph g, boolean fork) {
+            Edit ed = new Edit(fork ? Store.copyAirports(g) : Store.shareAirports(g.store, g.routeCount));
+            int n = g.airportCount;
+            for (int u = 0; u < n; u++) {
+                ed.out.extend(u);
+                ed.in.extend(u);
+            }
+            ed.airportCount = n;
+            ed.liveAirportCount = g.liveAirportCount;
+            Store s = ed.store;
+            for (int u = 0; u < n; u++) {
+                if (!g.alive(u)) {
+                    ed.out.set(u, DEAD);
+                    continue;
+                }
+                int len = g.end(u) - g.begin(u), start = ed.allocRow(len);
+                for (int k = 0; k < len; k++) s.copyEdge(g, g.begin(u) + k, start + k);
+                ed.layRow(u, start, len);
+            }
+            ed.finishLayout();
+            ed.geo = g.geo;
+            return ed;
+        }
+
+        RouteGraph done(long version) {
+            // Compact once abandoned regions take more room than live ones
+            long live = 4L * routeCount + 1024;
+            if (store.edgesUsed > live || store.insUsed > live) return new RouteGraph(compacted(new RouteGraph(this, version), false), version);
+            return new RouteGraph(this, version);
+        }
+
+        // Fresh region for a row of len entries, its slots all empty
+        int allocRow(int len) {
+            return len == 0 ? 0 : store.allocEdges(capacity(len));
+        }
+
+        // Makes edges [start, start + len) the routes of u and fills in the row's slots and parallel chains
+        void layRow(int u, int start, int len) {
+            Store s = store;
+            int base = 2 * start, mask = 2 * capacity(len) - 1;
+            for (int o = 0; o < len; o++) {
+                int e = start + o, v = s.head[e], i = hash(v) & mask;
+                s.nextParallel[e] = -1;
+                while (s.slots[base + i] != 0) {
+                    int f = start + s.slots[base + i] - 1;
+                    if (s.head[f] == v) break;
+                    i = (i + 1) & mask;
+                }
+                if (s.slots[base + i] == 0) {
+                    s.slots[base + i] = o + 1;
+                    continue;
+                }
+                int f = start + s.slots[base + i] - 1;
+                while (s.nextParallel[f] >= 0) f = s.nextParallel[f];
+                s.nextParallel[f] = e;
+            }
+            out.set(u, pack(start, len));
+        }
+
+        // After a whole layout: exact in-neighbour lists, route count, weight sums and bound ratios
+        void finishLayout() {
+            Store s = store;
+            int n = airportCount;
+            int[] count = new int[n];
+            routeCount = 0;
+            Arrays.fill(weightSum, 0);
+            Arrays.fill(minRatio, Double.POSITIVE_INFINITY);
+            for (int u = 0; u < n; u++) {
+                long row = out.get(u);
+                for (int e = (int) (row >>> 32), end = e + (int) row; e < end; e++) counted(e);
+            }
+            // Each filled slot of a freshly laid row is one destination
+            for (int u = 0; u < n; u++) {
+                long row = out.get(u);
+                int start = (int) (row >>> 32), len = (int) row;
+                for (int i = 2 * start, end = i + 2 * capacity(len); i < end; i++)
+                    if (s.slots[i] != 0) count[s.head[start + s.slots[i] - 1]]++;
+            }
+            int[] fill = new int[n];
+            for (int v = 0; v < n; v++) fill[v] = count[v] == 0 ? 0 : s.allocIns(capacity(count[v]));
+            for (int u = 0; u < n; u++) {
+                long row = out.get(u);
+                int start = (int) (row >>> 32), len = (int) row;
+                for (int i = 2 * start, end = i + 2 * capacity(len); i < end; i++)
+                    if (s.slots[i] != 0) s.inTail[fill[s.head[start + s.slots[i] - 1]]++] = u;
+            }
+            for (int v = 0; v < n; v++) in.set(v, out.get(v) == DEAD ? DEAD : pack(fill[v] - count[v], count[v]));
+        }
+
+        // Counts edge e in, lowering the bound ratios if it needs
+        private void counted(int e) {
+            Store s = store;
+            routeCount++;
+            double chord = chord(s.x, s.y, s.z, s.tail[e], s.head[e]), gc = -1;
+            for (int k = 0; k < weightSum.length; k++) {
+                double w = s.weight(k, e);
+                weightSum[k] += w;
+                // The arc is at most pi / 2 times the chord, which rules most edges out without the arcsine
+                if (chord > 0 && w < minRatio[k] * EARTH_KM * Math.PI / 2 * chord) {
+                    if (gc < 0) gc = arc(chord);
+                    minRatio[k] = Math.min(minRatio[k], w / gc);
+                }
+            }
+        }
+
+        private void uncounted(int e) {
+            routeCount--;
+            for (int k = 0; k < weightSum.length; k++) weightSum[k] -= store.weight(k, e);
+        }
+
+        int id(String code) {
+            int i = code == null ? -1 : store.newest(code, airportCount);
+            return i >= 0 && out.get(i) != DEAD ? i : -1;
+        }
+
+        void addAirport(FlightNetwork.Airport a) {
+            int id = airportCount++;
+            liveAirportCount++;
+            out.extend(id);
+            in.extend(id);
+            store.putAirport(id, a);
+            out.set(id, 0);
+            in.set(id, 0);
+        }
+
+        // A route to a new destination goes past the end of the row when its region has room; anything else
+        // moves the row
+        void addRoute(int u, int v, FlightNetwork.Route r) {
+            Store s = store;
+            long row = out.get(u);
+            int start = (int) (row >>> 32), len = (int) row, e;
+            boolean newPair = find(s.slots, s.head, row, v) < 0;
+            if (newPair && len < capacity(len)) {
+                e = start + len;
+                s.writeEdge(e, u, v, r);
+                s.nextParallel[e] = -1;
+                int base = 2 * start, mask = 2 * capacity(len) - 1, i = hash(v) & mask;
+                while (s.slots[base + i] != 0) i = (i + 1) & mask;
+                s.slots[base + i] = len + 1;
+                out.set(u, pack(start, len + 1));
+            } else {
+                int to = allocRow(len + 1);
+                for (int k = 0; k < len; k++) s.copyEdge(start + k, to + k);
+                e = to + len;
+                s.writeEdge(e, u, v, r);
+                layRow(u, to, len + 1);
+            }
+            counted(e);
+            if (newPair) inAdd(v, u);
+        }
+
+        // Rewrites the rows of x's in-neighbours without their routes to x and drops x from the in-neighbour
+        // lists of its destinations; the rest of the snapshot is untouched
+        void removeAirport(int x) {
+            Store s = store;
+            long into = in.get(x), from = out.get(x);
+            for (int k = (int) (into >>> 32), end = k + (int) into; k < end; k++)
+                if (s.inTail[k] != x) dropRoutes(s.inTail[k], x);
+            for (int e = (int) (from >>> 32), end = e + (int) from; e < end; e++) {
+                uncounted(e);
+                int v = s.head[e];
+                if (v != x && find(s.slots, s.head, from, v) == e) inRemove(v, x);
+            }
+            out.set(x, DEAD);
+            in.set(x, DEAD);
+            liveAirportCount--;
+        }
+
+        // Rewrites u's row without its routes to v
+        void removeRoutes(int u, int v) {
+            if (dropRoutes(u, v)) inRemove(v, u);
+        }
+
+        // removeRoutes leaving v's in-neighbour list as it is; false if there were no such routes
+        private boolean dropRoutes(int u, int v) {
+            Store s = store;
+            long row = out.get(u);
+            int start = (int) (row >>> 32), len = (int) row, gone = 0;
+            for (int e = find(s.slots, s.head, row, v); e >= 0; e = s.nextParallel[e]) {
+                uncounted(e);
+                gone++;
+            }
+            if (gone == 0) return false;
+            int to = allocRow(len - gone), p = to;
+            for (int k = start; k < start + len; k++)
+                if (s.head[k] != v) s.copyEdge(k, p++);
+            layRow(u, to, len - gone);
+            return true;
+        }
+
+        private void inAdd(int v, int u) {
+            Store s = store;
+            long row = in.get(v);
+            int start = (int) (row >>> 32), len = (int) row;
+            if (len == capacity(len)) {
+                int to = s.allocIns(capacity(len + 1));
+                System.arraycopy(s.inTail, start, s.inTail, to, len);
+                start = to;
+            }
+            s.inTail[start + len] = u;
+            in.set(v, pack(start, len + 1));
+        }
+
+        private void inRemove(int v, int u) {
+            Store s = store;
+            long row = in.get(v);
+            int start = (int) (row >>> 32), len = (int) row, to = len == 1 ? 0 : s.allocIns(capacity(len - 1)), p = to;
+            for (int k = start; k < start + len; k++)
+                if (s.inTail[k] != u) s.inTail[p++] = s.inTail[k];
+            in.set(v, pack(to, p - to));
+        }
+    }
+
+    // The columns behind a lineage of snapshots. Only the writer touches it, apart from ids, which readers
+    // query concurrently.
+    private static final class Store {
+        // Every id a code has had, ascending: an airport removed and added again gets a new one, and older
+        // snapshots still resolve the id they knew it by. Airports loaded from the file are not in it.
+        final ConcurrentHashMap<String, int[]> ids;
+        // File the first airports were loaded from, whose ids they keep; their Airport objects start out null
+        NetworkFile file;
+        FlightNetwork.Airport[] airports;
+        double[] latitude, longitude, x, y, z;
+        int[] head, tail, nextParallel, slots, inTail;
+        double[] cost, distance, flightTime;
+        FlightNetwork.Route[] routes;
+        int airportsUsed, edgesUsed, insUsed;
+        // Newest snapshot, the only one allowed to append; null once the Store is retired
+        RouteGraph tip;
+
+        Store(int airportCapacity, int routeCapacity) {
+            this(new ConcurrentHashMap<>(Math.max(16, airportCapacity * 2)));
+            int n = Math.max(16, airportCapacity);
+            airports = new FlightNetwork.Airport[n];
+            latitude = new double[n];
+            longitude = new double[n];
+            x = new double[n];
+            y = new double[n];
+            z = new double[n];
+            allocColumns(routeCapacity);
+        }
+
+        private Store(ConcurrentHashMap<String, int[]> ids) {
+            this.ids = ids;
+        }
+
+        // Rows of tight layouts take up to twice their length, and in-neighbour lists no more than the routes
+        private void allocColumns(int routeCapacity) {
+            int m = Math.max(16, routeCapacity + routeCapacity / 2);
+            head = new int[m];
+            tail = new int[m];
+            nextParallel = new int[m];
+            slots = new int[2 * m];
+            cost = new double[m];
+            distance = new double[m];
+            flightTime = new double[m];
+            routes = new FlightNetwork.Route[m];
+            inTail = new int[Math.max(16, routeCapacity + routeCapacity / 2)];
+        }
+
+        // New edge columns over the same airports, which the old Store must no longer append to
+        static Store shareAirports(Store old, int routeCapacity) {
+            Store s = new Store(old.ids);
+            s.airports = old.airports;
+            s.latitude = old.latitude;
+            s.longitude = old.longitude;
+            s.x = old.x;
+            s.y = old.y;
+            s.z = old.z;
+            s.airportsUsed = old.airportsUsed;
+            s.file = old.file;
+            s.allocColumns(routeCapacity);
+            old.tip = null;
+            return s;
+        }
+
+        // Copies of g's airports and codes, independent of g's Store
+        static Store copyAirports(RouteGraph g) {
+            int n = g.airportCount;
+            Store s = new Store(new ConcurrentHashMap<>(Math.max(16, n * 2)));
+            for (Map.Entry<String, int[]> e : g.store.ids.entrySet()) {
+                int[] known = e.getValue();
+                int k = 0;
+                while (k < known.length && known[k] < n) k++;
+                if (k > 0) s.ids.put(e.getKey(), Arrays.copyOf(known, k));
+            }
+            int cap = Math.max(16, n);
+            s.airports = Arrays.copyOf(g.airports, cap);
+            s.latitude = Arrays.copyOf(g.latitude, cap);
+            s.longitude = Arrays.copyOf(g.longitude, cap);
+            s.x = Arrays.copyOf(g.x, cap);
+            s.y = Arrays.copyOf(g.y, cap);
+            s.z = Arrays.copyOf(g.z, cap);
+            Arrays.fill(s.airports, n, cap, null);
+            s.airportsUsed = n;
+            s.file = g.store.file;
+            s.allocColumns(g.routeCount);
+            return s;
+        }
+
+        // Newest id of the code below limit, whether or not that airport was removed since; -1 if none
+        int newest(String code, int limit) {
+            int[] known = ids.get(code);
+            if (known != null)
+                for (int k = known.length - 1; k >= 0; k--)
+                    if (known[k] < limit) return known[k];
+            return file != null ? file.airportId(code) : -1;
+        }
+
+        void putAirport(int id, FlightNetwork.Airport a) {
+            if (id == airports.length) {
+                int cap = 2 * id;
+                airports = Arrays.copyOf(airports, cap);
+                latitude = Arrays.copyOf(latitude, cap);
+                longitude = Arrays.copyOf(longitude, cap);
+                x = Arrays.copyOf(x, cap);
+                y = Arrays.copyOf(y, cap);
+                z = Arrays.copyOf(z, cap);
+            }
+            airports[id] = a;
+            latitude[id] = a.latitude;
+            longitude[id] = a.longitude;
+            locate(id);
+            airportsUsed = id + 1;
+            int[] known = ids.get(a.code);
+            if (known == null) known = new int[]{id};
+            else {
+                known = Arrays.copyOf(known, known.length + 1);
+                known[known.length - 1] = id;
+            }
+            ids.put(a.code, known);
+        }
+
+        // Unit vector of an airport from its latitude and longitude
+        void locate(int id) {
+            double la = Math.toRadians(latitude[id]), lo = Math.toRadians(longitude[id]);
+            x[id] = Math.cos(la) * Math.cos(lo);
+            y[id] = Math.cos(la) * Math.sin(lo);
+            z[id] = Math.sin(la);
+        }
+
+        // Start of count fresh edge slots, growing the columns by doubling; readers of older snapshots keep
+        // the arrays they had
+        int allocEdges(int count) {
+            int start = edgesUsed;
+            if (start + count > head.length) {
+                int m = Math.max(start + count, 2 * head.length);
+                head = Arrays.copyOf(head, m);
+                tail = Arrays.copyOf(tail, m);
+                nextParallel = Arrays.copyOf(nextParallel, m);
+                slots = Arrays.copyOf(slots, 2 * m);
+                cost = Arrays.copyOf(cost, m);
+                distance = Arrays.copyOf(distance, m);
+                flightTime = Arrays.copyOf(flightTime, m);
+                routes = Arrays.copyOf(routes, m);
+            }
+            edgesUsed = start + count;
+            return start;
+        }
+
+        int allocIns(int count) {
+            int start = insUsed;
+            if (start + count > inTail.length) inTail = Arrays.copyOf(inTail, Math.max(start + count, 2 * inTail.length));
+            insUsed = start + count;
+            return start;
+        }
+
+        void writeEdge(int e, int u, int v, FlightNetwork.Route r) {
+            head[e] = v;
+            tail[e] = u;
+            cost[e] = r.cost;
+            distance[e] = r.distance;
+            flightTime[e] = r.flightTime;
+            routes[e] = r;
+        }
+
+        void copyEdge(int from, int to) {
+            head[to] = head[from];
+            tail[to] = tail[from];
+            cost[to] = cost[from];
+            distance[to] = distance[from];
+            flightTime[to] = flightTime[from];
+            routes[to] = routes[from];
+        }
+
+        // Edge e of snapshot g, which may belong to another Store
+        void copyEdge(RouteGraph g, int e, int to) {
+            head[to] = g.head[e];
+            tail[to] = g.tail[e];
+            cost[to] = g.cost[e];
+            distance[to] = g.distance[e];
+            flightTime[to] = g.flightTime[e];
+            routes[to] = g.routes[e];
+        }
+
+        // Weight of edge e by Metric ordinal
+        double weight(int metric, int e) {
+            return metric == 0 ? cost[e] : metric == 1 ? distance[e] : flightTime[e];
+        }
+    }
+
+    // Great-circle distance in km between two airports
+    double greatCircle(int u, int v) {
+        return greatCircle(x, y, z, u, v);
+    }
+
+    private static double greatCircle(double[] x, double[] y, double[] z, int u, int v) {
+        return arc(chord(x, y, z, u, v));
+    }
+
+    // Straight-line distance between two unit vectors
+    private static double chord(double[] x, double[] y, double[] z, int u, int v) {
+        double dx = x[u] - x[v], dy = y[u] - y[v], dz = z[u] - z[v];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static double arc(double chord) {
+        return EARTH_KM * 2 * Math.asin(Math.min(1.0, chord / 2));
+    }
+
+    // Routes leaving u are edge ids begin(u)..end(u)-1
+    int begin(int u) {
+        return (int) (out[u >>> CHUNK_BITS][u & CHUNK_MASK] >>> 32);
+    }
+
+    int end(int u) {
+        long row = out[u >>> CHUNK_BITS][u & CHUNK_MASK];
+        return (int) (row >>> 32) + (int) row;
+    }
+
+    // Airports with routes into v are inTail[inBegin(v)..inEnd(v)-1]; the routes themselves are edge(u, v)
+    // and its parallel chain
+    int inBegin(int v) {
+        return (int) (in[v >>> CHUNK_BITS][v & CHUNK_MASK] >>> 32);
+    }
+
+    int inEnd(int v) {
+        long row = in[v >>> CHUNK_BITS][v & CHUNK_MASK];
+        return (int) (row >>> 32) + (int) row;
+    }
+
+    // Lowest edge id from u to v, or -1; the others follow via nextParallel
+    int edge(int u, int v) {
+        return find(slots, head, out[u >>> CHUNK_BITS][u & CHUNK_MASK], v);
+    }
+
+    int nextParallel(int e) {
+        return nextParallel[e];
+    }
+
+    // Routes loaded from a file are made up on each call, so only the ones a caller asks for exist
+    FlightNetwork.Route route(int e) {
+        FlightNetwork.Route r = routes[e];
+        return r != null ? r : new FlightNetwork.Route(code(tail[e]), code(head[e]), cost[e], distance[e], flightTime[e]);
+    }
+
+    // Airports loaded from a file are decoded on first use. Airport is immutable, so a reader racing
+    // another one here at worst decodes it twice.
+    FlightNetwork.Airport airport(int id) {
+        FlightNetwork.Airport a = airports[id];
+        if (a == null) airports[id] = a = store.file.airport(id);
+        return a;
+    }
+
+    GeoIndex geo() {
+        GeoIndex g = geo;
+        if (g == null) geo = g = new GeoIndex(this);
+        return g;
+    }
+
+    // Indexed by Metric ordinal; 1 where there are no routes, so callers can always divide by them
+    double[] meanWeights() {
+        double[] mw = new double[weightSum.length];
+        for (int k = 0; k < mw.length; k++) mw[k] = routeCount > 0 && weightSum[k] > 0 ? weightSum[k] / routeCount : 1;
+        return mw;
+    }
+
+    // Newest id the code had in this snapshot, if that airport is still here
+    public int id(String code) {
+        int i = code == null ? -1 : store.newest(code, airportCount);
+        return i >= 0 && alive(i) ? i : -1;
+    }
+
+    boolean alive(int id) {
+        return out[id >>> CHUNK_BITS][id & CHUNK_MASK] != DEAD;
+    }
+
+    public String code(int id) {
+        FlightNetwork.Airport a = airports[id];
+        return a != null ? a.code : store.file.code(id);
+    }
+
+    double[] weights(FlightNetwork.Metric metric) {
+        switch (metric) {
+            case COST: return cost;
+            case DISTANCE: return distance;
+            default: return flightTime;
+        }
+    }
+
+    // Allocates only the returned path
+    public List<FlightNetwork.Route> shortestPath(int s, int t, FlightNetwork.Metric metric,
+                                                  FlightNetwork.SearchStrategy strategy, boolean directOnly) {
+        if (s < 0 || t < 0 || s == t) return null;
+        double[] w = weights(metric);
+        if (directOnly) return directRoute(s, t, w);
+        switch (plan(metric, strategy)) {
+            case A_STAR: return aStar(s, t, w, boundRatio[metric.ordinal()]);
+            case BIDIRECTIONAL: return bidirectional(s, t, w);
+            default: return aStar(s, t, w, 0);
+        }
+    }
+
+    // The search shortestPath actually runs for a requested strategy
+    static FlightNetwork.SearchStrategy plan(FlightNetwork.Metric metric, FlightNetwork.SearchStrategy strategy) {
+        switch (strategy) {
+            case AUTO: return metric == FlightNetwork.Metric.COST ? FlightNetwork.SearchStrategy.BIDIRECTIONAL : FlightNetwork.SearchStrategy.A_STAR;
+            case CONTRACTION_HIERARCHY: return FlightNetwork.SearchStrategy.DIJKSTRA; // No hierarchy on a bare snapshot
+            default: return strategy;
+        }
+    }
+
+    // A* with h(v) = ratio * greatCircle(v, t); ratio 0 degrades to plain Dijkstra
+    List<FlightNetwork.Route> aStar(int s, int t, double[] w, double ratio) {
+        SearchState st = SearchState.get(airportCount);
+        IndexedHeap pq = st.heap;
+        double[] h = st.aux;
+        st.reach(s, 0.0, -1);
+        h[s] = ratio == 0 ? 0 : ratio * greatCircle(s, t);
+        pq.push(s, h[s]);
+        while (!pq.isEmpty()) {
+            int u = pq.pop();
+            int begin = begin(u), end = end(u);
+            st.settle(end - begin);
+            if (u == t) break;
+            double du = st.dist[u];
+            for (int e = begin; e < end; e++) {
+                int v = head[e];
+                double alt = du + w[e];
+                if (!st.reached(v)) {
+                    st.reach(v, alt, e);
+                    h[v] = ratio == 0 ? 0 : ratio * greatCircle(v, t);
+                    pq.push(v, alt + h[v]);
+                } else if (alt < st.dist[v] && pq.contains(v)) {
+                    st.dist[v] = alt;
+                    st.prev[v] = e;
+                    pq.decrease(v, alt + h[v]);
+                }
+            }
+        }
+        return st.reached(t) ? path(st.prev, t) : null;
+    }
+
+    // Dijkstra from both ends, always advancing the smaller frontier; the backward side walks the
+    // in-neighbour lists and their parallel chains
+    List<FlightNetwork.Route> bidirectional(int s, int t, double[] w) {
+        SearchState fw = SearchState.get(airportCount), bw = SearchState.backward(airportCount);
+        fw.reach(s, 0.0, -1);
+        fw.heap.push(s, 0.0);
+        bw.reach(t, 0.0, -1);
+        bw.heap.push(t, 0.0);
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (!fw.heap.isEmpty() && !bw.heap.isEmpty()) {
+            if (fw.heap.peekKey() + bw.heap.peekKey() >= best) break;
+            if (fw.heap.size <= bw.heap.size) {
+                int u = fw.heap.pop(), begin = begin(u), end = end(u);
+                double du = fw.dist[u];
+                fw.settle(end - begin);
+                for (int e = begin; e < end; e++) {
+                    int v = head[e];
+                    if (relax(fw, v, du + w[e], e) && bw.reached(v) && fw.dist[v] + bw.dist[v] < best) {
+                        best = fw.dist[v] + bw.dist[v];
+                        meet = v;
+                    }
+                }
+            } else {
+                int u = bw.heap.pop(), begin = inBegin(u), end = inEnd(u);
+                double du = bw.dist[u];
+                bw.settle(end - begin);
+                for (int i = begin; i < end; i++) {
+                    int v = inTail[i];
+                    for (int e = edge(v, u); e >= 0; e = nextParallel[e])
+                        if (relax(bw, v, du + w[e], e) && fw.reached(v) && fw.dist[v] + bw.dist[v] < best) {
+                            best = fw.dist[v] + bw.dist[v];
+                            meet = v;
+                        }
+                }
+            }
+        }
+        if (meet < 0) return null;
+        List<FlightNetwork.Route> p = path(fw.prev, meet);
+        for (int e = bw.prev[meet]; e >= 0; e = bw.prev[head[e]]) p.add(route(e));
+        return p;
+    }
+
+    // Reaches v at alt through edge e, or lowers it there while it is still queued; true if either happened
+    static boolean relax(SearchState st, int v, double alt, int e) {
+        if (!st.reached(v)) {
+            st.reach(v, alt, e);
+            st.heap.push(v, alt);
+        } else if (alt < st.dist[v] && st.heap.contains(v)) {
+            st.dist[v] = alt;
+            st.prev[v] = e;
+            st.heap.decrease(v, alt);
+        } else return false;
+        return true;
+    }
+
+    // Dijkstra from s that stops once every airport flagged in targets is settled (all of them when
+    // targets is null). The returned per-thread state is valid until the next search on this thread.
+    SearchState oneToAll(int s, double[] w, boolean[] targets, int targetCount) {
+        SearchState st = SearchState.get(airportCount);
+        IndexedHeap pq = st.heap;
+        st.reach(s, 0.0, -1);
+        pq.push(s, 0.0);
+        int left = targets == null ? Integer.MAX_VALUE : targetCount;
+        while (!pq.isEmpty()) {
+            int u = pq.pop();
+            int begin = begin(u), end = end(u);
+            st.settle(end - begin);
+            if (targets != null && targets[u] && --left == 0) break;
+            double du = st.dist[u];
+            for (int e = begin; e < end; e++) {
+                int v = head[e];
+                double alt = du + w[e];
+                if (!st.reached(v)) {
+                    st.reach(v, alt, e);
+                    pq.push(v, alt);
+                } else if (alt < st.dist[v] && pq.contains(v)) {
+                    st.dist[v] = alt;
+                    st.prev[v] = e;
+                    pq.decrease(v, alt);
+                }
+            }
+        }
+        return st;
+    }
+
+    // Cheapest of possibly several parallel routes s -> t
+    List<FlightNetwork.Route> directRoute(int s, int t, double[] w) {
+        int best = edge(s, t);
+        for (int e = best < 0 ? -1 : nextParallel[best]; e >= 0; e = nextParallel[e])
+            if (w[e] < w[best]) best = e;
+        return best < 0 ? null : new ArrayList<>(Collections.singletonList(route(best)));
+    }
+
+    // Walks predecessor edge ids back from t
+    List<FlightNetwork.Route> path(int[] prevEdge, int t) {
+        ArrayDeque<FlightNetwork.Route> rev = new ArrayDeque<>();
+        for (int e = prevEdge[t]; e >= 0; e = prevEdge[tail[e]])
+            rev.addFirst(route(e));
+        return new ArrayList<>(rev);
+    }
+
+    // Binary min-heap of airport ids with a position index for decrease-key
+    static final class IndexedHeap {
+        int[] heap, pos;
+        double[] key;
+        int size, pushes;
+
+        IndexedHeap(int n) {
+            heap = new int[n];
+            pos = new int[n];
+            key = new double[n];
+            Arrays.fill(pos, -1);
+        }
+
+        void ensure(int n) {
+            if (pos.length >= n) return;
+            int old = pos.length;
+            heap = Arrays.copyOf(heap, n);
+            key = Arrays.copyOf(key, n);
+            pos = Arrays.copyOf(pos, n);
+            Arrays.fill(pos, old, n, -1);
+        }
+
+        boolean isEmpty() { return size == 0; }
+        boolean contains(int v) { return pos[v] >= 0; }
+        double peekKey() { return key[heap[0]]; }
+
+        void clear() {
+            for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+            size = 0;
+        }
+
+        void push(int v, double k) {
+            pushes++;
+            key[v] = k;
+            heap[size] = v;
+            pos[v] = size;
+            up(size++);
+        }
+
+        void decrease(int v, double k) {
+            key[v] = k;
+            up(pos[v]);
+        }
+
+        int pop() {
+            int top = heap[0];
+            pos[top] = -1;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                down(0);
+            }
+            return top;
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            double k = key[v];
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                int pv = heap[p];
+                if (key[pv] <= k) break;
+                heap[i] = pv;
+                pos[pv] = i;
+                i = p;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            double k = key[v];
+            int half = size >>> 1;
+            while (i < half) {
+                int c = 2 * i + 1;
+                if (c + 1 < size && key[heap[c + 1]] < key[heap[c]]) c++;
+                int cv = heap[c];
+                if (k <= key[cv]) break;
+                heap[i] = cv;
+                pos[cv] = i;
+                i = c;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+
+    // Per-thread scratch arrays, reset in O(1) by bumping an epoch instead of refilling. Also counts the
+    // work of the last search on the thread (settled airports, scanned edges, heap pushes) for SearchMetrics.
+    static final class SearchState {
+        private static final ThreadLocal<SearchState> LOCAL = ThreadLocal.withInitial(SearchState::new);
+
+        double[] dist = new double[0], aux = new double[0];
+        int[] prev = new int[0], mark = new int[0];
+        int epoch, settled, relaxed;
+        final IndexedHeap heap = new IndexedHeap(0);
+        // Reverse half of a bidirectional search, created on first use
+        private SearchState backward;
+
+        static SearchState get(int n) {
+            SearchState st = LOCAL.get();
+            st.reset(n);
+            if (st.backward != null) st.backward.clearCounts();
+            return st;
+        }
+
+        // Second state for the reverse half of a bidirectional search
+        static SearchState backward(int n) {
+            SearchState fw = LOCAL.get();
+            if (fw.backward == null) fw.backward = new SearchState();
+            fw.backward.reset(n);
+            return fw.backward;
+        }
+
+        // State of the last search on this thread, both halves counted through it
+        static SearchState last() {
+            return LOCAL.get();
+        }
+
+        int settledTotal() { return settled + (backward == null ? 0 : backward.settled); }
+        int relaxedTotal() { return relaxed + (backward == null ? 0 : backward.relaxed); }
+        int pushesTotal() { return heap.pushes + (backward == null ? 0 : backward.heap.pushes); }
+
+        private void clearCounts() {
+            settled = relaxed = heap.pushes = 0;
+        }
+
+        void reset(int n) {
+            if (mark.length < n) {
+                dist = new double[n];
+                aux = new double[n];
+                prev = new int[n];
+                mark = new int[n];
+                epoch = 0;
+            }
+            clearCounts();
+            heap.ensure(n);
+            heap.clear();
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                epoch = 1;
+            }
+        }
+
+        // Counts a settled airport and its edges; every few thousand, gives up if the searching thread
+        // was interrupted
+        void settle(int edges) {
+            relaxed += edges;
+            if ((++settled & 4095) == 0 && Thread.currentThread().isInterrupted())
+                throw new CancellationException("Route search interrupted");
+        }
+
+        boolean reached(int v) { return mark[v] == epoch; }
+
+        void reach(int v, double d, int edge) {
+            mark[v] = epoch;
+            dist[v] = d;
+            prev[v] = edge;
+        }
+    }
+}
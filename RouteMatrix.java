@@ -0,0 +1,98 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Dense origin x destination table of best totals for one metric, filled with one one-to-all search per
+// origin. Unknown or unreachable pairs hold +Infinity. Predecessor trees are kept only when asked for.
+public final class RouteMatrix {
+    public final List<String> origins, destinations;
+    public final FlightNetwork.Metric metric;
+    final RouteGraph graph;
+    // Row-major: totals[i * destinations.size() + j]
+    final double[] totals;
+    // Per origin, the predecessor edge of every airport (-1 if none); null unless paths were requested
+    final int[][] predecessors;
+
+    private RouteMatrix(RouteGraph g, List<String> origins, List<String> destinations, FlightNetwork.Metric metric, boolean keepPaths) {
+        this.graph = g;
+        this.origins = Collections.unmodifiableList(new ArrayList<>(origins));
+        this.destinations = Collections.unmodifiableList(new ArrayList<>(destinations));
+        this.metric = metric;
+        totals = new double[origins.size() * destinations.size()];
+        predecessors = keepPaths ? new int[origins.size()][] : null;
+    }
+
+    // Spreads origins over the executor, or the common fork/join pool when executor is null
+    static RouteMatrix compute(RouteGraph g, List<String> origins, List<String> destinations, FlightNetwork.Metric metric,
+                               boolean keepPaths, ExecutorService executor) {
+        RouteMatrix mx = new RouteMatrix(g, origins, destinations, metric, keepPaths);
+        int cols = destinations.size();
+        int[] destIds = new int[cols];
+        boolean[] targets = new boolean[g.airportCount];
+        int targetCount = 0;
+        for (int j = 0; j < cols; j++) {
+            destIds[j] = g.id(destinations.get(j));
+            if (destIds[j] >= 0 && !targets[destIds[j]]) {
+                targets[destIds[j]] = true;
+                targetCount++;
+            }
+        }
+        double[] w = g.weights(metric);
+        int finalTargetCount = targetCount;
+        List<Callable<Void>> rows = new ArrayList<>(origins.size());
+        for (int i = 0; i < origins.size(); i++) {
+            int row = i, s = g.id(origins.get(i));
+            rows.add(() -> {
+                mx.fillRow(row, s, destIds, w, targets, finalTargetCount);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : (executor == null ? ForkJoinPool.commonPool() : executor).invokeAll(rows)) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Route matrix interrupted");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+        return mx;
+    }
+
+    // Stops once all destinations are settled; every airport on their paths is settled by then too
+    private void fillRow(int row, int s, int[] destIds, double[] w, boolean[] targets, int targetCount) {
+        int cols = destIds.length, base = row * cols;
+        if (s < 0) {
+            Arrays.fill(totals, base, base + cols, Double.POSITIVE_INFINITY);
+            return;
+        }
+        RouteGraph.SearchState st = graph.oneToAll(s, w, targets, targetCount);
+        for (int j = 0; j < cols; j++) {
+            int t = destIds[j];
+            totals[base + j] = t >= 0 && st.reached(t) ? st.dist[t] : Double.POSITIVE_INFINITY;
+        }
+        if (predecessors != null) {
+            int[] pred = new int[graph.airportCount];
+            for (int v = 0; v < pred.length; v++) pred[v] = st.reached(v) ? st.prev[v] : -1;
+            predecessors[row] = pred;
+        }
+    }
+
+    public double total(int originIndex, int destinationIndex) {
+        return totals[originIndex * destinations.size() + destinationIndex];
+    }
+
+    // Copy of the row-major totals
+    public double[] totals() {
+        return totals.clone();
+    }
+
+    public boolean hasPaths() {
+        return predecessors != null;
+    }
+
+    // Rebuilds one path from the stored predecessor tree; null if unreachable, empty for origin == destination
+    public List<FlightNetwork.Route> path(int originIndex, int destinationIndex) {
+        if (predecessors == null) throw new IllegalStateException("Route matrix was computed without paths");
+        if (total(originIndex, destinationIndex) == Double.POSITIVE_INFINITY) return null;
+        return graph.path(predecessors[originIndex], graph.id(destinations.get(destinationIndex)));
+    }
+}
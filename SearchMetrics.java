@@ -0,0 +1,332 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.*;
+
+// Counters and histograms for one network's route searches and writes, switched on with
+// FlightNetwork.enableMetrics. While it is off findRoute takes its old path untouched; the only work
+// left is counting settled airports, scanned edges and heap pushes in the per-thread search state.
+// Every search and snapshot compile is also a JFR event (flightplanner.RouteSearch and
+// flightplanner.SnapshotCompile), written only while a recording enables them.
+public final class SearchMetrics implements SearchMetricsMBean {
+    private final LongAdder queries = new LongAdder(), cacheHits = new LongAdder(), directLookups = new LongAdder();
+    private final LongAdder notFound = new LongAdder(), writes = new LongAdder();
+    private final LongAdder settled = new LongAdder(), relaxed = new LongAdder(), pushes = new LongAdder();
+    private final LongAdder[] byStrategy = new LongAdder[FlightNetwork.SearchStrategy.values().length];
+    private final Histogram latency = new Histogram(), work = new Histogram(), compileTime = new Histogram();
+    private volatile Query last;
+    private ObjectName registered;
+    // Checked before an event is allocated, so nothing is while no recording enables them
+    static final EventType ROUTE_SEARCH = EventType.getEventType(RouteSearchEvent.class);
+    static final EventType SNAPSHOT_COMPILE = EventType.getEventType(SnapshotCompileEvent.class);
+
+    SearchMetrics() {
+        for (int i = 0; i < byStrategy.length; i++) byStrategy[i] = new LongAdder();
+    }
+
+    // One findRoute call. Filled in while the search runs, then published and never changed.
+    public static final class Query {
+        final String start, end;
+        final FlightNetwork.Metric metric;
+        final boolean directOnly;
+        FlightNetwork.SearchStrategy strategy; // Search actually run; null for cache hits and direct lookups
+        boolean cacheHit;
+        int hops = -1, settled, relaxed, pushes;
+        long nanos;
+
+        Query(String start, String end, FlightNetwork.Metric metric, boolean directOnly) {
+            this.start = start;
+            this.end = end;
+            this.metric = metric;
+            this.directOnly = directOnly;
+        }
+
+        // Takes the work counters of the search that just ran on this thread
+        void finish(List<FlightNetwork.Route> path, long elapsed) {
+            nanos = elapsed;
+            hops = path == null ? -1 : path.size();
+            if (strategy == null) return;
+            RouteGraph.SearchState st = RouteGraph.SearchState.last();
+            settled = st.settledTotal();
+            relaxed = st.relaxedTotal();
+            pushes = st.pushesTotal();
+        }
+
+        public String start() { return start; }
+        public String end() { return end; }
+        public FlightNetwork.Metric metric() { return metric; }
+        public FlightNetwork.SearchStrategy strategy() { return strategy; }
+        public boolean directOnly() { return directOnly; }
+        public boolean cacheHit() { return cacheHit; }
+        public boolean found() { return hops >= 0; }
+        public int hops() { return hops; }
+        public int settled() { return settled; }
+        public int relaxed() { return relaxed; }
+        public int pushes() { return pushes; }
+        public long nanos() { return nanos; }
+
+        @Override
+        public String toString() {
+            String how = cacheHit ? "cache hit" : directOnly ? "direct lookup" : strategy == null ? "no search"
+                    : String.format("%s: %,d airports settled, %,d edges, %,d heap pushes", strategy, settled, relaxed, pushes);
+            return how + String.format(", %.3f ms", nanos / 1e6);
+        }
+    }
+
+    void record(Query q) {
+        queries.increment();
+        if (q.cacheHit) cacheHits.increment();
+        else if (q.directOnly) directLookups.increment();
+        else if (q.strategy != null) {
+            byStrategy[q.strategy.ordinal()].increment();
+            settled.add(q.settled);
+            relaxed.add(q.relaxed);
+            pushes.add(q.pushes);
+            work.record(q.settled);
+        }
+        if (q.hops < 0) notFound.increment();
+        latency.record(q.nanos);
+        last = q;
+    }
+
+    void written() {
+        writes.increment();
+    }
+
+    void compiled(long nanos) {
+        compileTime.record(nanos);
+    }
+
+    // Most recent search on any thread, or null
+    public Query lastQuery() {
+        return last;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Point-in-time copy of every counter and histogram
+    public static final class Snapshot {
+        public final long queries, cacheHits, directLookups, notFound, writes;
+        public final long settled, relaxed, pushes;
+        public final Map<FlightNetwork.SearchStrategy, Long> byStrategy;
+        // Search latency (ns), airports settled per search (cache hits and direct lookups excluded), and
+        // snapshot compile time (ns)
+        public final Histogram latency, work, compileTime;
+
+        private Snapshot(SearchMetrics m) {
+            queries = m.queries.sum();
+            cacheHits = m.cacheHits.sum();
+            directLookups = m.directLookups.sum();
+            notFound = m.notFound.sum();
+            writes = m.writes.sum();
+            settled = m.settled.sum();
+            relaxed = m.relaxed.sum();
+            pushes = m.pushes.sum();
+            Map<FlightNetwork.SearchStrategy, Long> counts = new EnumMap<>(FlightNetwork.SearchStrategy.class);
+            for (FlightNetwork.SearchStrategy s : FlightNetwork.SearchStrategy.values())
+                if (m.byStrategy[s.ordinal()].sum() > 0) counts.put(s, m.byStrategy[s.ordinal()].sum());
+            byStrategy = Collections.unmodifiableMap(counts);
+            latency = m.latency.copy();
+            work = m.work.copy();
+            compileTime = m.compileTime.copy();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d searches (%,d cached, %,d direct, %,d not found) %s; latency p50 %.3f ms, p99 %.3f ms, max %.3f ms;"
+                            + " settled p50 %,d, p99 %,d; %,d writes, %,d snapshot compiles, p99 %.3f ms",
+                    queries, cacheHits, directLookups, notFound, byStrategy, latency.percentile(50) / 1e6,
+                    latency.percentile(99) / 1e6, latency.max() / 1e6, work.percentile(50), work.percentile(99),
+                    writes, compileTime.count(), compileTime.percentile(99) / 1e6);
+        }
+    }
+
+    public void reset() {
+        for (LongAdder a : new LongAdder[]{queries, cacheHits, directLookups, notFound, writes, settled, relaxed, pushes})
+            a.reset();
+        for (LongAdder a : byStrategy) a.reset();
+        latency.reset();
+        work.reset();
+        compileTime.reset();
+        last = null;
+    }
+
+    // Log-linear histogram of non-negative longs in the style of HdrHistogram: values below 64 are exact,
+    // above that each power of two is split into 32 buckets, so percentiles are within about 3%.
+    // Recording is lock-free and allocation-free.
+    public static final class Histogram {
+        private static final int SUB_BITS = 5, SUB = 1 << SUB_BITS, BUCKETS = (64 - SUB_BITS) * SUB;
+
+        private final AtomicLongArray counts;
+        private final AtomicLong max = new AtomicLong();
+        private final LongAdder total = new LongAdder(), sum = new LongAdder();
+
+        Histogram() {
+            counts = new AtomicLongArray(BUCKETS);
+        }
+
+        private static int bucket(long v) {
+            if (v < 2 * SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift + 1) * SUB + (int) (v >>> shift) - SUB;
+        }
+
+        // Largest value that lands in bucket b
+        private static long highest(int b) {
+            if (b < 2 * SUB) return b;
+            int shift = b / SUB - 1;
+            long sub = b % SUB + SUB;
+            return ((sub + 1) << shift) - 1;
+        }
+
+        void record(long v) {
+            if (v < 0) v = 0;
+            counts.incrementAndGet(bucket(v));
+            total.increment();
+            sum.add(v);
+            if (v > max.get()) max.accumulateAndGet(v, Math::max);
+        }
+
+        public long count() { return total.sum(); }
+        public long max() { return max.get(); }
+
+        public double mean() {
+            long n = total.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        // Value at or below which p percent of the recorded values fall, 0 if none were recorded
+        public long percentile(double p) {
+            long n = 0;
+            for (int b = 0; b < BUCKETS; b++) n += counts.get(b);
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * n)), seen = 0;
+            for (int b = 0; b < BUCKETS; b++)
+                if ((seen += counts.get(b)) >= rank) return Math.min(highest(b), max.get());
+            return max.get();
+        }
+
+        Histogram copy() {
+            Histogram h = new Histogram();
+            for (int b = 0; b < BUCKETS; b++) h.counts.set(b, counts.get(b));
+            h.max.set(max.get());
+            h.total.add(total.sum());
+            h.sum.add(sum.sum());
+            return h;
+        }
+
+        void reset() {
+            for (int b = 0; b < BUCKETS; b++) counts.set(b, 0);
+            max.set(0);
+            total.reset();
+            sum.reset();
+        }
+    }
+
+    // Registers these counters with the platform MBean server as flightplanner:type=SearchMetrics,name=<name>,
+    // replacing whatever was registered under that name before. Returns false if JMX refuses.
+    public synchronized boolean register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("flightplanner:type=SearchMetrics,name=" + ObjectName.quote(name));
+            unregister();
+            if (server.isRegistered(on)) server.unregisterMBean(on);
+            server.registerMBean(this, on);
+            registered = on;
+            return true;
+        } catch (JMException ex) {
+            return false;
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registered == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException ignored) {
+            // Already gone
+        }
+        registered = null;
+    }
+
+    // SearchMetricsMBean, for JConsole and friends
+    @Override public long getQueries() { return queries.sum(); }
+    @Override public long getCacheHits() { return cacheHits.sum(); }
+    @Override public long getDirectLookups() { return directLookups.sum(); }
+    @Override public long getNotFound() { return notFound.sum(); }
+    @Override public long getAirportsSettled() { return settled.sum(); }
+    @Override public long getEdgesRelaxed() { return relaxed.sum(); }
+    @Override public long getHeapPushes() { return pushes.sum(); }
+    @Override public double getMeanLatencyMicros() { return latency.mean() / 1e3; }
+    @Override public double getP50LatencyMicros() { return latency.percentile(50) / 1e3; }
+    @Override public double getP99LatencyMicros() { return latency.percentile(99) / 1e3; }
+    @Override public double getP999LatencyMicros() { return latency.percentile(99.9) / 1e3; }
+    @Override public double getMaxLatencyMicros() { return latency.max() / 1e3; }
+    @Override public long getP99AirportsSettled() { return work.percentile(99); }
+    @Override public long getWrites() { return writes.sum(); }
+    @Override public long getSnapshotCompiles() { return compileTime.count(); }
+    @Override public double getP99CompileMicros() { return compileTime.percentile(99) / 1e3; }
+
+    @Override
+    public String getLastQuery() {
+        Query q = last;
+        return q == null ? "" : q.start + " -> " + q.end + " " + q.metric + ": " + q;
+    }
+
+    @Name("flightplanner.RouteSearch")
+    @Label("Route Search")
+    @Category("Flight Planner")
+    @Description("One FlightNetwork.findRoute call")
+    static final class RouteSearchEvent extends Event {
+        @Label("From") String start;
+        @Label("To") String end;
+        @Label("Metric") String metric;
+        @Label("Strategy") String strategy;
+        @Label("Direct Only") boolean directOnly;
+        @Label("Cache Hit") boolean cacheHit;
+        @Label("Hops") int hops;
+        @Label("Airports Settled") int settled;
+        @Label("Edges Relaxed") int relaxed;
+        @Label("Heap Pushes") int pushes;
+
+        void commit(Query q) {
+            if (!shouldCommit()) return;
+            start = q.start;
+            end = q.end;
+            metric = q.metric.name();
+            strategy = q.strategy == null ? null : q.strategy.name();
+            directOnly = q.directOnly;
+            cacheHit = q.cacheHit;
+            hops = q.hops;
+            settled = q.settled;
+            relaxed = q.relaxed;
+            pushes = q.pushes;
+            commit();
+        }
+    }
+
+    @Name("flightplanner.SnapshotCompile")
+    @Label("Snapshot Compile")
+    @Category("Flight Planner")
+    @Description("Compiling the edited network into a new RouteGraph snapshot")
+    static final class SnapshotCompileEvent extends Event {
+        @Label("Airports") int airports;
+        @Label("Routes") int routes;
+        @Label("Version") long version;
+
+        void commit(RouteGraph g) {
+            if (!shouldCommit()) return;
+            airports = g.liveAirportCount;
+            routes = g.routeCount;
+            version = g.version;
+            commit();
+        }
+    }
+}
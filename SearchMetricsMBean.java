@@ -0,0 +1,21 @@
+// JMX view of SearchMetrics; times in microseconds
+public interface SearchMetricsMBean {
+    long getQueries();
+    long getCacheHits();
+    long getDirectLookups();
+    long getNotFound();
+    long getAirportsSettled();
+    long getEdgesRelaxed();
+    long getHeapPushes();
+    double getMeanLatencyMicros();
+    double getP50LatencyMicros();
+    double getP99LatencyMicros();
+    double getP999LatencyMicros();
+    double getMaxLatencyMicros();
+    long getP99AirportsSettled();
+    long getWrites();
+    long getSnapshotCompiles();
+    double getP99CompileMicros();
+    String getLastQuery();
+    void reset();
+}
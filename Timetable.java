@@ -0,0 +1,185 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Weekly schedule of flights over a network's routes, plus the minimum connection time at each airport.
+// All times are minutes in one time zone; a week starts Monday 00:00, and arrivals may run past its end.
+// Text format, one record per line ('#' starts a comment):
+//   flight,PK301,LHE,KHI,07:00,08:45,1234567   number, from, to, departs, arrives (earlier = next day), days (1 = Monday)
+//   mct,LHE,60                                  minimum connection time at an airport, minutes
+//   default-mct,45
+public final class Timetable {
+    public static final int DAY = 24 * 60, WEEK = 7 * DAY, DEFAULT_MIN_CONNECT = 45;
+    private static final int MAX_PROBLEMS = 1000;
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+    // One scheduled flight on a route, repeated on the days in its mask
+    public static final class Flight {
+        public final String number;
+        public final FlightNetwork.Route route;
+        public final int departure, duration; // Minute of the day, minutes in the air
+        public final int days; // Bit d set: operates on day d, 0 = Monday
+
+        public Flight(String number, FlightNetwork.Route route, int departure, int duration, int days) {
+            if (departure < 0 || departure >= DAY || duration <= 0 || (days & 0x7F) == 0)
+                throw new IllegalArgumentException("Bad schedule for flight " + number);
+            this.number = number;
+            this.route = route;
+            this.departure = departure;
+            this.duration = duration;
+            this.days = days & 0x7F;
+        }
+
+        public boolean operatesOn(int day) {
+            return (days >> day & 1) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return number + " " + route.from + " -> " + route.to + " " + clock(departure) + "-" + clock(departure + duration);
+        }
+    }
+
+    public final List<Flight> flights;
+    private final Map<String, Integer> minConnect;
+    public final int defaultMinConnect;
+    // Rows read() skipped, as "file:line: reason" (first MAX_PROBLEMS only)
+    public final List<String> problems;
+
+    public Timetable(Collection<Flight> flights, Map<String, Integer> minConnect, int defaultMinConnect) {
+        this(flights, minConnect, defaultMinConnect, new ArrayList<>());
+    }
+
+    private Timetable(Collection<Flight> flights, Map<String, Integer> minConnect, int defaultMinConnect, List<String> problems) {
+        if (defaultMinConnect < 0) throw new IllegalArgumentException("Negative connection time");
+        this.flights = Collections.unmodifiableList(new ArrayList<>(flights));
+        this.minConnect = Collections.unmodifiableMap(new HashMap<>(minConnect));
+        this.defaultMinConnect = defaultMinConnect;
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    // Minutes needed between arriving at an airport and flying on
+    public int minConnect(String airport) {
+        return minConnect.getOrDefault(airport, defaultMinConnect);
+    }
+
+    // Reads a timetable for net. Flights need an existing route (the cheapest one between the airports);
+    // rows that are malformed or name no route are skipped and listed in problems.
+    public static Timetable read(Path file, FlightNetwork net) throws IOException {
+        List<Flight> flights = new ArrayList<>();
+        Map<String, Integer> mct = new HashMap<>();
+        int defaultMct = DEFAULT_MIN_CONNECT;
+        List<String> problems = new ArrayList<>();
+        String name = file.getFileName().toString();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            for (int lineNo = 1; (line = in.readLine()) != null; lineNo++) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                if (line.trim().isEmpty()) continue;
+                String[] f = line.split(",", -1);
+                for (int i = 0; i < f.length; i++) f[i] = f[i].trim();
+                String why = null;
+                try {
+                    switch (f[0]) {
+                        case "flight":
+                            if (f.length != 7) why = "expected 7 fields";
+                            else why = addFlight(flights, net, f);
+                            break;
+                        case "mct":
+                            if (f.length != 3) why = "expected 3 fields";
+                            else mct.put(f[1], minutes(f[2]));
+                            break;
+                        case "default-mct":
+                            if (f.length != 2) why = "expected 2 fields";
+                            else defaultMct = minutes(f[1]);
+                            break;
+                        default:
+                            why = "unknown record type " + f[0];
+                    }
+                } catch (IllegalArgumentException ex) {
+                    why = ex.getMessage();
+                }
+                if (why != null && problems.size() < MAX_PROBLEMS) problems.add(name + ":" + lineNo + ": " + why);
+            }
+        }
+        return new Timetable(flights, mct, defaultMct, problems);
+    }
+
+    private static String addFlight(List<Flight> flights, FlightNetwork net, String[] f) {
+        FlightNetwork.Route route = null;
+        for (FlightNetwork.Route r : net.getRoutes(f[2], f[3]))
+            if (route == null || r.cost < route.cost) route = r;
+        if (route == null) return "no route " + f[2] + " -> " + f[3];
+        int departs = time(f[4]), arrives = time(f[5]), days = 0;
+        for (char c : f[6].toCharArray()) {
+            if (c < '1' || c > '7') return "bad days " + f[6];
+            days |= 1 << (c - '1');
+        }
+        if (days == 0) return "no operating days";
+        int duration = arrives - departs;
+        if (duration <= 0) duration += DAY;
+        flights.add(new Flight(f[1], route, departs, duration, days));
+        return null;
+    }
+
+    private static int minutes(String s) {
+        try {
+            int m = Integer.parseInt(s);
+            if (m < 0) throw new IllegalArgumentException("negative minutes " + s);
+            return m;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("bad minutes " + s);
+        }
+    }
+
+    // "HH:MM" to minute of the day
+    private static int time(String s) {
+        int colon = s.indexOf(':');
+        try {
+            int h = Integer.parseInt(s.substring(0, Math.max(colon, 0))), m = Integer.parseInt(s.substring(colon + 1));
+            if (colon < 0 || h < 0 || h > 23 || m < 0 || m > 59) throw new NumberFormatException();
+            return h * 60 + m;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("bad time " + s);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("default-mct," + defaultMinConnect + "\n");
+            for (Map.Entry<String, Integer> e : new TreeMap<>(minConnect).entrySet())
+                out.write("mct," + e.getKey() + "," + e.getValue() + "\n");
+            for (Flight fl : flights) {
+                StringBuilder days = new StringBuilder();
+                for (int d = 0; d < 7; d++) if (fl.operatesOn(d)) days.append(d + 1);
+                out.write("flight," + fl.number + "," + fl.route.from + "," + fl.route.to + "," + clock(fl.departure) + ","
+                        + clock(fl.departure + fl.duration) + "," + days + "\n");
+            }
+        }
+    }
+
+    // Minute of the week for a date and time
+    public static int minuteOfWeek(LocalDateTime t) {
+        return (t.getDayOfWeek().getValue() - 1) * DAY + t.getHour() * 60 + t.getMinute();
+    }
+
+    // "HH:MM" of a minute count, ignoring whole days
+    static String clock(int minutes) {
+        int m = Math.floorMod(minutes, DAY);
+        return String.format("%02d:%02d", m / 60, m % 60);
+    }
+
+    // "Tue 08:10" for a minute of the week; later weeks are marked, e.g. "Mon 06:00 (+1 wk)"
+    public static String format(int minuteOfWeek) {
+        int week = Math.floorDiv(minuteOfWeek, WEEK), m = Math.floorMod(minuteOfWeek, WEEK);
+        return DAY_NAMES[m / DAY] + " " + clock(m) + (week == 0 ? "" : " (+" + week + " wk)");
+    }
+
+    // "6 h 25 min"
+    public static String duration(int minutes) {
+        return minutes < 60 ? minutes + " min" : minutes / 60 + " h " + minutes % 60 + " min";
+    }
+}
@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Earliest arrival and profiles against a brute force over the same dated connections: arrival times are
+// relaxed over all connections until nothing changes, and profiles are rebuilt from earliest arrivals at
+// every departure from the origin
+class ConnectionScanTest {
+    private static final int AIRPORTS = 60;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 240, 5);
+    private final Timetable tt = timetable(net, 600, 9);
+    private final ConnectionScan csa = new ConnectionScan(net.graph(), tt);
+    // Every dated connection, unrolled like ConnectionScan does but unsorted
+    private final List<int[]> connections = new ArrayList<>(); // from, to, departure, arrival
+
+    ConnectionScanTest() {
+        RouteGraph g = net.graph();
+        for (Timetable.Flight f : tt.flights)
+            for (int d = 0; d < ConnectionScan.HORIZON / Timetable.DAY; d++)
+                if (f.operatesOn(d % 7)) {
+                    int dep = d * Timetable.DAY + f.departure;
+                    connections.add(new int[]{g.id(f.route.from), g.id(f.route.to), dep, dep + f.duration});
+                }
+    }
+
+    static Timetable timetable(FlightNetwork net, int flights, long seed) {
+        Random rnd = new Random(seed);
+        List<FlightNetwork.Route> routes = new ArrayList<>();
+        for (FlightNetwork.Airport a : net.getAirports()) routes.addAll(net.getRoutesFrom(a.code));
+        List<Timetable.Flight> fs = new ArrayList<>();
+        for (int i = 0; i < flights; i++)
+            fs.add(new Timetable.Flight("F" + i, routes.get(rnd.nextInt(routes.size())), rnd.nextInt(Timetable.DAY),
+                    30 + rnd.nextInt(600), 1 + rnd.nextInt(127)));
+        Map<String, Integer> mct = new HashMap<>();
+        for (int i = 0; i < AIRPORTS; i += 3) mct.put(TestNetworks.code(i), rnd.nextInt(180));
+        return new Timetable(fs, mct, 45);
+    }
+
+    // Earliest arrival per airport leaving s in [departAfter, lastDeparture] on connections departing
+    // before limit
+    private int[] bruteArrivals(int s, int departAfter, int lastDeparture, int limit) {
+        int[] best = new int[AIRPORTS];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        best[s] = departAfter;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int[] c : connections) {
+                int u = c[0], v = c[1];
+                if (best[u] == Integer.MAX_VALUE || v == s || c[2] >= limit || u == s && c[2] > lastDeparture) continue;
+                int ready = u == s ? departAfter : best[u] + csa.minConnect[u];
+                if (c[2] >= ready && c[3] < best[v]) {
+                    best[v] = c[3];
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Legs chain up from s to t with the connection times kept
+    private void assertFeasible(ConnectionScan.Journey j, int s, int t, int departAfter) {
+        RouteGraph g = net.graph();
+        assertEquals(s, g.id(j.legs.get(0).flight.route.from));
+        assertEquals(t, g.id(j.legs.get(j.legs.size() - 1).flight.route.to));
+        int ready = departAfter;
+        for (ConnectionScan.Leg l : j.legs) {
+            assertTrue(l.departure >= ready, j::toString);
+            assertEquals(l.flight.departure, l.departure % Timetable.DAY);
+            assertTrue(l.flight.operatesOn(l.departure / Timetable.DAY % 7));
+            assertEquals(l.departure + l.flight.duration, l.arrival);
+            int v = g.id(l.flight.route.to);
+            ready = l.arrival + csa.minConnect[v];
+        }
+    }
+
+    @Test
+    void earliestArrivalMatchesBruteForce() {
+        Random rnd = new Random(1);
+        int found = 0;
+        for (int q = 0; q < 40; q++) {
+            int s = rnd.nextInt(AIRPORTS), departAfter = rnd.nextInt(Timetable.WEEK);
+            int[] best = bruteArrivals(s, departAfter, Integer.MAX_VALUE, departAfter + ConnectionScan.MAX_JOURNEY);
+            for (int target = 0; target < AIRPORTS; target++) {
+                int t = target;
+                if (t == s) continue;
+                ConnectionScan.Journey j = csa.earliestArrival(s, t, departAfter);
+                if (best[t] == Integer.MAX_VALUE) {
+                    assertNull(j);
+                    continue;
+                }
+                assertNotNull(j, () -> "no journey " + s + " -> " + t);
+                assertEquals(best[t], j.arrival);
+                assertFeasible(j, s, t, departAfter);
+                found++;
+            }
+        }
+        assertTrue(found > 100);
+    }
+
+    @Test
+    void profileMatchesBruteForce() {
+        Random rnd = new Random(2);
+        int found = 0;
+        for (int q = 0; q < 30; q++) {
+            int s = rnd.nextInt(AIRPORTS), t = rnd.nextInt(AIRPORTS);
+            if (s == t) continue;
+            int from = rnd.nextInt(Timetable.WEEK), to = from + rnd.nextInt(2 * Timetable.DAY);
+            int limit = to + ConnectionScan.MAX_JOURNEY;
+            // Departures from s in the window, ascending and distinct
+            int[] deps = connections.stream().filter(c -> c[0] == s && c[2] >= from && c[2] <= to)
+                    .mapToInt(c -> c[2]).distinct().sorted().toArray();
+            // A departure is in the profile if leaving at it arrives strictly before leaving at the next one;
+            // journeys leaving after the window do not count
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < deps.length; i++) {
+                int arrival = bruteArrivals(s, deps[i], to, limit)[t];
+                int later = i + 1 < deps.length ? bruteArrivals(s, deps[i + 1], to, limit)[t] : Integer.MAX_VALUE;
+                if (arrival != Integer.MAX_VALUE && arrival < later) expected.add(deps[i] + "-" + arrival);
+            }
+            List<String> actual = new ArrayList<>();
+            for (ConnectionScan.Journey j : csa.profile(s, t, from, to)) {
+                actual.add(j.departure + "-" + j.arrival);
+                assertFeasible(j, s, t, j.departure);
+            }
+            assertEquals(expected, actual, () -> s + " -> " + t + " in [" + from + ", " + to + "]");
+            found += actual.size();
+        }
+        assertTrue(found > 10);
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+// Hierarchy queries against plain Dijkstra through a sequence of edits: answers unpack to real routes of
+// the network, an edit retires the index, and queries search plainly until it is rebuilt
+class ContractionHierarchyTest {
+    private static final int AIRPORTS = 150;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 600, 31);
+    private final Random rnd = new Random(12);
+
+    private String code() {
+        return TestNetworks.code(rnd.nextInt(AIRPORTS));
+    }
+
+    // The search findRoute ran for a CONTRACTION_HIERARCHY request, and checks its answer against Dijkstra
+    private FlightNetwork.SearchStrategy query(String start, String end, FlightNetwork.Metric metric) {
+        SearchMetrics.Query q = new SearchMetrics.Query(start, end, metric, false);
+        List<FlightNetwork.Route> path = net.findRoute(q, FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY);
+        List<FlightNetwork.Route> plain = net.findRoute(start, end, metric, FlightNetwork.SearchStrategy.DIJKSTRA, false);
+        String what = start + " -> " + end + " by " + metric;
+        if (plain == null) assertNull(path, what);
+        else {
+            double best = RouteSearchTest.total(net, plain, start, end, metric);
+            assertEquals(best, RouteSearchTest.total(net, path, start, end, metric), 1e-9 * (1 + best), what);
+        }
+        return q.strategy;
+    }
+
+    // Many pairs on every metric, all of which must be answered from the hierarchy
+    private void checkIndexed() {
+        for (FlightNetwork.Metric metric : FlightNetwork.Metric.values())
+            for (int q = 0; q < 150; q++) {
+                String start = code(), end = code();
+                if (start.equals(end) || net.graph().id(start) < 0 || net.graph().id(end) < 0) continue;
+                assertEquals(FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY, query(start, end, metric));
+            }
+    }
+
+    // Applies an edit, checks the next queries fall back to plain search, then rebuilds and checks again
+    private void afterEdit(Consumer<FlightNetwork> edit) {
+        edit.accept(net);
+        for (FlightNetwork.Metric metric : FlightNetwork.Metric.values()) {
+            String start = code(), end = code();
+            if (start.equals(end) || net.graph().id(start) < 0 || net.graph().id(end) < 0) continue;
+            assertTrue(query(start, end, metric) != FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY, "stale index used");
+        }
+        net.enableHierarchies(false, FlightNetwork.Metric.values());
+        checkIndexed();
+    }
+
+    @Test
+    void matchesDijkstraThroughEdits() {
+        for (int k = 0; k < 20; k++) net.addRoute(code(), code(), k % 4 == 0 ? 0 : 30 + k);
+        net.enableHierarchies(false, FlightNetwork.Metric.values());
+        checkIndexed();
+        afterEdit(n -> {
+            for (int k = 0; k < 30; k++) n.addRoute(code(), code(), 5 + k);
+        });
+        afterEdit(n -> {
+            for (FlightNetwork.Route r : RouteSearchTest.routes(n).subList(0, 60)) n.removeRoute(r.from, r.to);
+        });
+        afterEdit(n -> {
+            for (int k = 0; k < 10; k++) n.removeAirport(code());
+        });
+        afterEdit(n -> n.removeAirports(a -> a.country.equals("C3")));
+        // Removed codes come back as new airports with new routes
+        afterEdit(n -> {
+            for (int i = 0; i < AIRPORTS; i += 7)
+                if (n.addAirport(new FlightNetwork.Airport(TestNetworks.code(i), "Back " + i, "C9", i % 90, i)))
+                    for (int k = 0; k < 4; k++) {
+                        n.addRoute(TestNetworks.code(i), code(), 40 + k);
+                        n.addRoute(code(), TestNetworks.code(i), 60 + k);
+                    }
+        });
+    }
+
+    @Test
+    void rebuildsInTheBackground() throws InterruptedException {
+        net.enableHierarchies(true, FlightNetwork.Metric.COST);
+        net.addRoute(code(), code(), 1);
+        String start = TestNetworks.code(0), end = TestNetworks.code(1);
+        // The first query after the edit queues the rebuild and searches plainly; the rebuilt index follows
+        assertTrue(query(start, end, FlightNetwork.Metric.COST) != FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY);
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (query(start, end, FlightNetwork.Metric.COST) != FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY) {
+            assertTrue(System.nanoTime() < deadline, "index not rebuilt");
+            Thread.sleep(10);
+        }
+        // Metrics without an index always search plainly
+        assertTrue(query(start, end, FlightNetwork.Metric.DISTANCE) != FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY);
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+// Radius and nearest-N queries against a linear scan, with airports and query points near the poles and
+// the date line, and after airports are removed
+class GeoIndexTest {
+    private final FlightNetwork net = TestNetworks.random(1500, 0, 21);
+    private final Random rnd = new Random(2);
+
+    GeoIndexTest() {
+        // Crowd the awkward places: both poles and both sides of the date line
+        for (int i = 0; i < 200; i++) {
+            double lat = i % 2 == 0 ? 90 - 5 * rnd.nextDouble() : -90 + 5 * rnd.nextDouble();
+            double lon = i % 4 < 2 ? 360 * rnd.nextDouble() - 180 : (rnd.nextBoolean() ? 180 : -180) - 4 * rnd.nextDouble() + 2;
+            net.addAirport(new FlightNetwork.Airport("E" + i, "Edge " + i, "X", i % 8 < 4 ? lat : 60 * rnd.nextDouble() - 30,
+                    Math.max(-180, Math.min(180, lon))));
+        }
+    }
+
+    private double[] point() {
+        switch (rnd.nextInt(4)) {
+            case 0: return new double[]{rnd.nextBoolean() ? 90 : -90, 360 * rnd.nextDouble() - 180};
+            case 1: return new double[]{160 * rnd.nextDouble() - 80, rnd.nextBoolean() ? 179.9 : -179.9};
+            default: return new double[]{180 * rnd.nextDouble() - 90, 360 * rnd.nextDouble() - 180};
+        }
+    }
+
+    private static double km(double[] p, FlightNetwork.Airport a) {
+        return FlightNetwork.haversine(p[0], p[1], a.latitude, a.longitude);
+    }
+
+    private void checkWithin() {
+        for (int q = 0; q < 300; q++) {
+            double[] p = point();
+            double radius = q % 10 == 0 ? 20000 * rnd.nextDouble() : 3000 * rnd.nextDouble();
+            TreeSet<String> expected = new TreeSet<>(), actual = new TreeSet<>();
+            for (FlightNetwork.Airport a : net.getAirports())
+                if (km(p, a) <= radius) expected.add(a.code);
+            double last = 0;
+            for (FlightNetwork.Airport a : net.airportsWithin(p[0], p[1], radius)) {
+                actual.add(a.code);
+                assertTrue(km(p, a) >= last, "nearest first");
+                last = km(p, a);
+            }
+            assertEquals(expected, actual, () -> Arrays.toString(p) + " within " + radius);
+        }
+    }
+
+    private void checkNearest() {
+        for (int q = 0; q < 300; q++) {
+            double[] p = point();
+            int count = 1 + rnd.nextInt(q % 10 == 0 ? 2000 : 30);
+            double[] expected = net.getAirports().stream().mapToDouble(a -> km(p, a)).sorted().toArray();
+            expected = Arrays.copyOf(expected, Math.min(count, expected.length));
+            List<FlightNetwork.Airport> found = net.nearestAirports(p[0], p[1], count);
+            double[] actual = found.stream().mapToDouble(a -> km(p, a)).toArray();
+            assertTrue(Arrays.equals(expected, actual), () -> Arrays.toString(p) + " nearest " + count);
+        }
+    }
+
+    @Test
+    void matchesLinearScan() {
+        checkWithin();
+        checkNearest();
+    }
+
+    @Test
+    void leavesRemovedAirportsOut() {
+        List<String> doomed = new ArrayList<>();
+        for (FlightNetwork.Airport a : net.getAirports()) if (rnd.nextInt(3) == 0) doomed.add(a.code);
+        for (String code : doomed) net.removeAirport(code);
+        net.removeAirports(a -> a.code.startsWith("E") && a.latitude > 0);
+        checkWithin();
+        checkNearest();
+    }
+
+    @Test
+    void degenerateQueries() {
+        assertEquals(0, net.airportsWithin(0, 0, -1).size());
+        assertEquals(0, net.airportsWithin(0, 0, Double.NaN).size());
+        assertEquals(0, net.nearestAirports(0, 0, 0).size());
+        assertEquals(0, new FlightNetwork().nearestAirports(0, 0, 5).size());
+    }
+}
@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Binary round trips (non-ASCII text decoded lazily, removed airports left out), legacy files through
+// loadFromFile's class filter, and damaged files failing with IOException
+class NetworkFileTest {
+    @TempDir
+    Path dir;
+
+    private final FlightNetwork net = TestNetworks.random(200, 800, 47);
+
+    NetworkFileTest() {
+        net.addAirport(new FlightNetwork.Airport("ZRH", "Zürich Flughafen", "Schweiz", 47.46, 8.55));
+        net.addAirport(new FlightNetwork.Airport("HND", "東京国際空港", "日本", 35.55, 139.78));
+        net.addAirport(new FlightNetwork.Airport("ÅLE", "Ålesund lufthavn, Vigra", "Norge", 62.56, 6.12));
+        net.addRoute("ZRH", "HND", 900);
+        net.addRoute("HND", "ÅLE", 700);
+        net.addRoute("ÅLE", "ZRH", 150);
+        net.removeAirport(TestNetworks.code(3));
+        net.removeAirport(TestNetworks.code(150));
+    }
+
+    // Everything a network holds, as text
+    static TreeSet<String> contents(FlightNetwork net) {
+        TreeSet<String> out = new TreeSet<>();
+        for (FlightNetwork.Airport a : net.getAirports()) {
+            out.add(a.code + "|" + a.name + "|" + a.country + "|" + a.latitude + "|" + a.longitude);
+            for (FlightNetwork.Route r : net.getRoutesFrom(a.code))
+                out.add(r.from + ">" + r.to + "|" + r.cost + "|" + r.distance + "|" + r.flightTime);
+        }
+        return out;
+    }
+
+    @Test
+    void binaryRoundTrip() throws Exception {
+        Path file = dir.resolve("net.frn");
+        net.saveToFile(file.toString());
+        assertTrue(NetworkFile.isBinary(file));
+        NetworkFile nf = NetworkFile.open(file);
+        assertEquals(net.graph().liveAirportCount, nf.airportCount());
+        assertEquals(net.graph().routeCount, nf.routeCount());
+        FlightNetwork loaded = FlightNetwork.loadFromFile(file.toString());
+        // Lookups before anything is decoded, then everything
+        assertEquals("東京国際空港", loaded.getAirports().stream().filter(a -> a.code.equals("HND")).findFirst().get().name);
+        assertEquals(1, loaded.getRoutes("ÅLE", "ZRH").size());
+        assertFalse(loaded.hasRoute("ZRH", "ÅLE"));
+        assertEquals(-1, loaded.graph().id(TestNetworks.code(3)));
+        assertEquals(contents(net), contents(loaded));
+        List<FlightNetwork.Route> path = loaded.findRoute("ZRH", "ÅLE", FlightNetwork.Metric.COST, FlightNetwork.SearchStrategy.AUTO, false);
+        // Routes of a loaded network are made up per call, so compare by value rather than identity
+        assertEquals(List.of("ZRH>HND|900.0", "HND>ÅLE|700.0"),
+                path.stream().map(r -> r.from + ">" + r.to + "|" + r.cost).collect(Collectors.toList()));
+
+        // A loaded network edits and saves like any other
+        loaded.removeAirport("ZRH");
+        loaded.addAirport(new FlightNetwork.Airport("ŁÓD", "Łódź", "Polska", 51.72, 19.39));
+        loaded.addRoute("ŁÓD", "HND", 640);
+        Path again = dir.resolve("again.frn");
+        loaded.saveToFile(again.toString());
+        assertEquals(contents(loaded), contents(FlightNetwork.loadFromFile(again.toString())));
+    }
+
+    @Test
+    void legacyRoundTrip() throws Exception {
+        Path file = dir.resolve("net.ser");
+        net.saveLegacy(file.toString());
+        assertFalse(NetworkFile.isBinary(file));
+        FlightNetwork loaded = FlightNetwork.loadFromFile(file.toString());
+        assertEquals(contents(net), contents(loaded));
+        // And on to the binary format, as the converter does
+        Path binary = dir.resolve("net.frn");
+        NetworkFile.write(loaded, binary);
+        assertEquals(contents(net), contents(FlightNetwork.loadFromFile(binary.toString())));
+    }
+
+    @Test
+    void legacyFilterRejectsOtherClasses() throws IOException {
+        Path file = dir.resolve("other.ser");
+        try (OutputStream out = Files.newOutputStream(file); ObjectOutputStream o = new ObjectOutputStream(out)) {
+            o.writeObject(new Date());
+        }
+        assertThrows(IOException.class, () -> FlightNetwork.loadFromFile(file.toString()));
+    }
+
+    // Either IOException, or a network that can be used without failing
+    private static void loadOrIOException(Path file) throws ClassNotFoundException {
+        FlightNetwork loaded;
+        try {
+            loaded = FlightNetwork.loadFromFile(file.toString());
+        } catch (IOException expected) {
+            return;
+        }
+        for (FlightNetwork.Airport a : loaded.getAirports()) loaded.getRoutesFrom(a.code);
+        List<FlightNetwork.Airport> all = loaded.getAirports();
+        if (all.size() > 1)
+            for (FlightNetwork.Metric metric : FlightNetwork.Metric.values())
+                loaded.findRoute(all.get(0).code, all.get(all.size() - 1).code, metric, FlightNetwork.SearchStrategy.AUTO, false);
+    }
+
+    @Test
+    void damagedFilesThrowIOException() throws Exception {
+        Path file = dir.resolve("net.frn"), bad = dir.resolve("bad.frn");
+        TestNetworks.random(20, 60, 3).saveToFile(file.toString());
+        byte[] good = Files.readAllBytes(file);
+        // Every truncation, down to an empty file
+        for (int len = 0; len < good.length; len += len < 64 ? 1 : 7) {
+            Files.write(bad, Arrays.copyOf(good, len));
+            int cut = len;
+            assertThrows(IOException.class, () -> FlightNetwork.loadFromFile(bad.toString()), () -> "cut at " + cut);
+        }
+        Files.write(bad, Arrays.copyOf(good, good.length + 8));
+        assertThrows(IOException.class, () -> FlightNetwork.loadFromFile(bad.toString()));
+        // Each byte overwritten with a few values; counts, offsets and ids must be caught
+        Random rnd = new Random(1);
+        for (int i = 0; i < good.length; i++)
+            for (int value : new int[]{0xFF, 0x7F, rnd.nextInt(256)}) {
+                byte[] b = good.clone();
+                b[i] = (byte) value;
+                Files.write(bad, b);
+                loadOrIOException(bad);
+            }
+        // Version from the future
+        byte[] b = good.clone();
+        b[4] = 99;
+        Files.write(bad, b);
+        assertThrows(IOException.class, () -> FlightNetwork.loadFromFile(bad.toString()));
+    }
+}
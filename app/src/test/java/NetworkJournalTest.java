@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Edits recovered from the journal, across many small flushes, a batch larger than the append buffer and
+// a compaction
+class NetworkJournalTest {
+    @TempDir
+    Path dir;
+
+    private static TreeSet<String> contents(FlightNetwork net) {
+        TreeSet<String> out = new TreeSet<>();
+        for (FlightNetwork.Airport a : net.getAirports()) {
+            out.add(a.code + " " + a.latitude + " " + a.longitude);
+            for (FlightNetwork.Route r : net.getRoutesFrom(a.code)) out.add(r.from + "-" + r.to + " " + r.cost);
+        }
+        return out;
+    }
+
+    @Test
+    void recoversEveryEdit() throws IOException {
+        TreeSet<String> expected;
+        try (NetworkJournal j = NetworkJournal.open(dir, NetworkJournal.Durability.EVERY_COMMIT, 100, 0)) {
+            FlightNetwork net = j.network();
+            Random rnd = new Random(5);
+            for (int i = 0; i < 200; i++)
+                net.addAirport(new FlightNetwork.Airport(TestNetworks.code(i), "Airport " + i, "X", 180 * rnd.nextDouble() - 90,
+                        360 * rnd.nextDouble() - 180));
+            for (int i = 0; i < 500; i++) net.addRoute(TestNetworks.code(rnd.nextInt(200)), TestNetworks.code(rnd.nextInt(200)), i);
+            j.compact();
+            // Well past the 64 KiB append buffer in one flush
+            net.batch(() -> {
+                for (int i = 0; i < 5000; i++)
+                    net.addRoute(TestNetworks.code(rnd.nextInt(200)), TestNetworks.code(rnd.nextInt(200)), i);
+            });
+            for (int i = 0; i < 300; i++) {
+                String a = TestNetworks.code(rnd.nextInt(200)), b = TestNetworks.code(rnd.nextInt(200));
+                if (i % 3 == 0) net.removeRoute(a, b);
+                else net.addRoute(a, b, i);
+            }
+            net.removeAirport(TestNetworks.code(7));
+            expected = contents(net);
+        }
+        try (NetworkJournal j = NetworkJournal.open(dir, NetworkJournal.Durability.EVERY_COMMIT, 100, 0)) {
+            assertEquals(expected, contents(j.network()));
+        }
+    }
+}
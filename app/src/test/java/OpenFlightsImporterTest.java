@@ -0,0 +1,168 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Small hand-written OpenFlights files, checked row by row against the report and the network, plus
+// generated files large enough that lines straddle the reader's 1 MB chunks
+class OpenFlightsImporterTest {
+    private static final int CHUNK = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    // CRLF endings, quoted commas and quotes, lower-case and missing IATA codes, no final newline
+    private static final String AIRPORTS = String.join("\r\n",
+            "1,\"Charles de Gaulle, Paris\",\"Paris\",\"France\",\"CDG\",\"LFPG\",49.012798,2.55,392,1,\"E\",\"Europe/Paris\"",
+            "2,\"Zürich \"\"Kloten\"\"\",Zurich,Switzerland,zrh,LSZH,47.464699,8.54917,1416,1,E,Europe/Zurich",
+            "3,Heathrow,London,United Kingdom,\\N,EGLL,51.4706,-0.461941,83,0,E,Europe/London",
+            "4,Nowhere,X,Y,\\N,\\N,1,1",
+            "5,Bad,X,Y,BAD,\\N,north,1",
+            "6,Far,X,Y,FAR,\\N,91,0",
+            "7,Short,X",
+            "",
+            "9,Frankfurt am Main,Frankfurt,Germany,FRA,EDDF,50.033333,8.570556");
+
+    // airline,airlineId,source,sourceId,destination,destinationId,codeshare,stops,equipment
+    private static final String ROUTES = String.join("\n",
+            "AF,137,CDG,1,ZRH,2,,0,320",
+            "AF,137,\\N,1,EGLL,3,,0,320",
+            "LX,1,ZRH,2,\\N,9,,0,320",
+            "LX,1,zrh,\\N,FRA,\\N,Y,0,321",
+            "BA,1,EGLL,3,EGLL,3,,0,319",
+            "BA,1,XXX,99,CDG,1,,0,319",
+            "BA,1,CDG,1,\\N,\\N,,0,319",
+            "short,row",
+            "LH,1,FRA,9,CDG,1,,0,320",
+            "");
+
+    private Counts run(FlightNetwork net) throws IOException {
+        Path airports = dir.resolve("airports.dat"), routes = dir.resolve("routes.dat");
+        Files.write(airports, AIRPORTS.getBytes(StandardCharsets.UTF_8));
+        Files.write(routes, ROUTES.getBytes(StandardCharsets.UTF_8));
+        return new Counts(new OpenFlightsImporter(net).importFiles(airports, routes));
+    }
+
+    // Report fields as a string, so a mismatch shows all of them
+    private static final class Counts {
+        final OpenFlightsImporter.Report r;
+
+        Counts(OpenFlightsImporter.Report r) {
+            this.r = r;
+        }
+
+        void is(int airports, int routes, int dupAirports, int dupRoutes, int malformed) {
+            assertEquals(airports + "," + routes + "," + dupAirports + "," + dupRoutes + "," + malformed,
+                    r.airportsAdded + "," + r.routesAdded + "," + r.duplicateAirports + "," + r.duplicateRoutes + "," + r.malformedRows, r::toString);
+        }
+    }
+
+    private static Map<String, FlightNetwork.Airport> byCode(FlightNetwork net) {
+        return net.getAirports().stream().collect(Collectors.toMap(a -> a.code, Function.identity()));
+    }
+
+    @Test
+    void parsesRows() throws IOException {
+        FlightNetwork net = new FlightNetwork();
+        Counts report = run(net);
+        report.is(4, 4, 0, 1, 8);
+        assertEquals(List.of(
+                "airports.dat:4: no IATA or ICAO code",
+                "airports.dat:5: bad coordinates",
+                "airports.dat:6: coordinates out of range",
+                "airports.dat:7: expected at least 8 fields",
+                "routes.dat:5: route starts and ends at the same airport",
+                "routes.dat:6: unknown airport",
+                "routes.dat:7: unknown airport",
+                "routes.dat:8: expected at least 6 fields"), report.r.problems);
+
+        Map<String, FlightNetwork.Airport> airports = byCode(net);
+        assertEquals(Set.of("CDG", "ZRH", "EGLL", "FRA"), airports.keySet());
+        assertEquals("Charles de Gaulle, Paris", airports.get("CDG").name);
+        assertEquals("France", airports.get("CDG").country);
+        assertEquals("Zürich \"Kloten\"", airports.get("ZRH").name);
+        assertEquals("United Kingdom", airports.get("EGLL").country);
+        assertEquals(50.033333, airports.get("FRA").latitude);
+        assertEquals(-0.461941, airports.get("EGLL").longitude);
+
+        // Routes given by OpenFlights id alone resolve, and are priced from the great-circle distance
+        String[][] expected = {{"CDG", "ZRH"}, {"CDG", "EGLL"}, {"ZRH", "FRA"}, {"FRA", "CDG"}};
+        for (String[] e : expected) {
+            List<FlightNetwork.Route> rs = net.getRoutes(e[0], e[1]);
+            assertEquals(1, rs.size(), e[0] + ">" + e[1]);
+            FlightNetwork.Airport a = airports.get(e[0]), b = airports.get(e[1]);
+            double d = FlightNetwork.haversine(a.latitude, a.longitude, b.latitude, b.longitude);
+            assertEquals(d, rs.get(0).distance);
+            assertEquals(Math.round(50 + 0.1 * d), rs.get(0).cost);
+            assertEquals(d / FlightNetwork.CRUISE_KMH, rs.get(0).flightTime);
+        }
+        assertEquals(4, net.graph().routeCount);
+    }
+
+    @Test
+    void duplicatesOfTheExistingNetwork() throws IOException {
+        FlightNetwork net = new FlightNetwork();
+        net.addAirport(new FlightNetwork.Airport("CDG", "Roissy", "FR", 49, 2.5));
+        net.addAirport(new FlightNetwork.Airport("ZRH", "Kloten", "CH", 47.5, 8.5));
+        net.addRoute("CDG", "ZRH", 100);
+        // The existing airports keep their data, but their OpenFlights ids still resolve routes
+        run(net).is(2, 3, 2, 2, 8);
+        Map<String, FlightNetwork.Airport> airports = byCode(net);
+        assertEquals("Roissy", airports.get("CDG").name);
+        assertEquals(List.of(100.0), net.getRoutes("CDG", "ZRH").stream().map(r -> r.cost).collect(Collectors.toList()));
+        assertEquals(1, net.getRoutes("CDG", "EGLL").size());
+        assertEquals(1, net.getRoutes("FRA", "CDG").size());
+
+        // A second import of the same files adds nothing
+        run(net).is(0, 0, 4, 5, 8);
+    }
+
+    @Test
+    void linesAcrossChunks() throws IOException {
+        int n = 40_000;
+        StringBuilder airports = new StringBuilder(), routes = new StringBuilder();
+        String longName = "x".repeat(CHUNK + CHUNK / 2);
+        for (int i = 0; i < n; i++) {
+            // One line longer than a whole chunk, and CRLF on every third line
+            String name = i == n / 2 ? longName : "Airport, number " + i;
+            airports.append(i).append(",\"").append(name).append("\",City,Country,").append(code(i)).append(",\\N,")
+                    .append(String.format(Locale.ROOT, "%.6f,%.6f", (i % 170) - 85.0 + i / 1e6, (i % 350) - 175.0))
+                    .append(",0,1,E,UTC").append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i > 0) routes.append("XX,1,").append(code(i - 1)).append(',').append(i - 1).append(',')
+                    .append(i % 2 == 0 ? code(i) : "\\N").append(',').append(i).append(",,0,").append("E".repeat(i % 40)).append('\n');
+        }
+        byte[] airportBytes = airports.toString().getBytes(StandardCharsets.UTF_8), routeBytes = routes.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(airportBytes.length > 3 * CHUNK && routeBytes.length > CHUNK);
+        assertTrue(airportBytes[CHUNK - 1] != '\n' && routeBytes[CHUNK - 1] != '\n', "a line must straddle the first chunk");
+        Path a = dir.resolve("airports.dat"), r = dir.resolve("routes.dat");
+        Files.write(a, airportBytes);
+        Files.write(r, routeBytes);
+
+        FlightNetwork net = new FlightNetwork();
+        new Counts(new OpenFlightsImporter(net).importFiles(a, r)).is(n, n - 1, 0, 0, 0);
+        Map<String, FlightNetwork.Airport> byCode = byCode(net);
+        for (int i = 0; i < n; i++) {
+            FlightNetwork.Airport ap = byCode.get(code(i));
+            assertEquals(i == n / 2 ? longName : "Airport, number " + i, ap.name);
+            assertEquals("Country", ap.country);
+            assertEquals((i % 350) - 175.0, ap.longitude);
+            if (i > 0) assertEquals(1, net.getRoutes(code(i - 1), code(i)).size(), code(i));
+        }
+    }
+
+    private static String code(int i) {
+        return "Q" + Integer.toString(i, 36).toUpperCase();
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+// The Pareto front against enumerating every simple path on a small network
+class ParetoSearchTest {
+    private static final int AIRPORTS = 30;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 110, 13);
+
+    // (cost, distance, flight time, hops) of every simple path from u to t in at most maxHops flights
+    private void paths(RouteGraph g, int u, int t, int maxHops, boolean[] seen, double[] sum, int hops, List<double[]> out) {
+        if (u == t) {
+            out.add(new double[]{sum[0], sum[1], sum[2], hops});
+            return;
+        }
+        if (hops == maxHops) return;
+        seen[u] = true;
+        for (int e = g.begin(u); e < g.end(u); e++) {
+            int v = g.head[e];
+            if (seen[v]) continue;
+            double[] next = {sum[0] + g.cost[e], sum[1] + g.distance[e], sum[2] + g.flightTime[e]};
+            paths(g, v, t, maxHops, seen, next, hops + 1, out);
+        }
+        seen[u] = false;
+    }
+
+    private static boolean dominates(double[] a, double[] b) {
+        boolean better = false;
+        for (int i = 0; i < 4; i++) {
+            if (a[i] > b[i]) return false;
+            if (a[i] < b[i]) better = true;
+        }
+        return better;
+    }
+
+    private static String key(double c, double d, double f, int h) {
+        return c + "/" + d + "/" + f + "/" + h;
+    }
+
+    @Test
+    void frontMatchesEnumeration() {
+        RouteGraph g = net.graph();
+        Random rnd = new Random(3);
+        int options = 0;
+        for (int q = 0; q < 60; q++) {
+            int s = rnd.nextInt(AIRPORTS), t = rnd.nextInt(AIRPORTS), maxHops = 1 + rnd.nextInt(5);
+            if (s == t) continue;
+            List<double[]> all = new ArrayList<>();
+            paths(g, s, t, maxHops, new boolean[AIRPORTS], new double[3], 0, all);
+            TreeSet<String> expected = new TreeSet<>();
+            for (double[] p : all) {
+                boolean front = true;
+                for (double[] o : all) front &= !dominates(o, p);
+                if (front) expected.add(key(p[0], p[1], p[2], (int) p[3]));
+            }
+            TreeSet<String> actual = new TreeSet<>();
+            List<ParetoSearch.Option> found = net.findRouteOptions(TestNetworks.code(s), TestNetworks.code(t), 0, maxHops);
+            for (int i = 0; i < found.size(); i++) {
+                ParetoSearch.Option o = found.get(i);
+                actual.add(key(o.cost, o.distance, o.flightTime, o.hops));
+                if (i > 0) assertTrue(found.get(i - 1).cost <= o.cost, "cheapest first");
+                // The path is a chain s -> t adding up to the totals
+                String at = TestNetworks.code(s);
+                double c = 0, d = 0, f = 0;
+                for (FlightNetwork.Route r : o.path) {
+                    assertEquals(at, r.from);
+                    at = r.to;
+                    c += r.cost;
+                    d += r.distance;
+                    f += r.flightTime;
+                }
+                assertEquals(TestNetworks.code(t), at);
+                assertEquals(key(c, d, f, o.path.size()), key(o.cost, o.distance, o.flightTime, o.hops));
+            }
+            int query = q;
+            assertEquals(expected, actual, () -> "query " + query + ": " + s + " -> " + t + " in " + maxHops);
+            options += actual.size();
+        }
+        assertTrue(options > 50);
+    }
+
+    // With slack every option of the exact front has one within a factor 1 + epsilon per hop on each criterion
+    @Test
+    void epsilonKeepsNearOptions() {
+        Random rnd = new Random(4);
+        double epsilon = 0.05;
+        for (int q = 0; q < 40; q++) {
+            String s = TestNetworks.code(rnd.nextInt(AIRPORTS)), t = TestNetworks.code(rnd.nextInt(AIRPORTS));
+            if (s.equals(t)) continue;
+            List<ParetoSearch.Option> exact = net.findRouteOptions(s, t, 0, 4), near = net.findRouteOptions(s, t, epsilon, 4);
+            for (ParetoSearch.Option o : exact) {
+                double slack = Math.pow(1 + epsilon, o.hops);
+                boolean covered = false;
+                for (ParetoSearch.Option p : near)
+                    covered |= p.hops <= o.hops && p.cost <= o.cost * slack && p.distance <= o.distance * slack
+                            && p.flightTime <= o.flightTime * slack;
+                assertTrue(covered, () -> s + " -> " + t + ": " + o + " has nothing near it in " + near);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// /batch answers in order and refuses oversized bodies without reading them to the end
+class QueryServerTest {
+    private QueryServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new QueryServer(TestNetworks.random(100, 400, 1), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + server.address().getPort() + "/batch");
+        return client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void answersEachLine() throws Exception {
+        HttpResponse<String> res = post("route?from=T1&to=T2\n\nnearest?lat=10&lon=20&count=2\nbogus\n");
+        assertEquals(200, res.statusCode());
+        assertTrue(res.body().startsWith("["), res.body());
+        assertTrue(res.body().contains("unknown query"), res.body());
+    }
+
+    @Test
+    void refusesOversizedBatches() throws Exception {
+        // One huge line: no query limit is reached before the byte limit
+        StringBuilder line = new StringBuilder("route?from=T1&to=");
+        while (line.length() <= 5 << 20) line.append("T2T2T2T2T2T2T2T2");
+        assertEquals(413, post(line.toString()).statusCode());
+        assertEquals(413, post("route?from=T1&to=T2\n".repeat(10_001)).statusCode());
+        assertEquals(200, post("route?from=T1&to=T2\n".repeat(10_000)).statusCode());
+    }
+}
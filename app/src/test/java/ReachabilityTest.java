@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// The budget-pruned search against full Bellman-Ford totals over every route, both directions
+class ReachabilityTest {
+    private static final int AIRPORTS = 150;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 600, 17);
+    private final List<FlightNetwork.Route> routes = new ArrayList<>();
+
+    ReachabilityTest() {
+        for (FlightNetwork.Airport a : net.getAirports()) routes.addAll(net.getRoutesFrom(a.code));
+    }
+
+    // Best total from (or, reverse, to) airport a over all routes; metric null counts flights
+    private double[] totals(int a, FlightNetwork.Metric metric, boolean reverse) {
+        double[] best = new double[AIRPORTS];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        best[a] = 0;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (FlightNetwork.Route r : routes) {
+                int u = id(reverse ? r.to : r.from), v = id(reverse ? r.from : r.to);
+                double alt = best[u] + (metric == null ? 1 : FlightNetwork.weight(r, metric));
+                if (alt < best[v]) {
+                    best[v] = alt;
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int id(String code) {
+        return Integer.parseInt(code.substring(1));
+    }
+
+    private void check(Reachability r, double[] best, double budget) {
+        double last = 0;
+        for (FlightNetwork.Airport a : r.airports()) {
+            double total = r.total(a.code);
+            assertTrue(total >= last, "nearest first");
+            last = total;
+        }
+        int inBudget = 0;
+        for (int v = 0; v < AIRPORTS; v++) {
+            String code = TestNetworks.code(v);
+            if (best[v] > budget) {
+                assertTrue(!r.contains(code) && r.total(code) == Double.POSITIVE_INFINITY, code);
+                assertNull(r.path(code));
+                continue;
+            }
+            inBudget++;
+            assertEquals(best[v], r.total(code), 1e-9 * (1 + best[v]), code);
+            // The path runs between the two airports and adds up to the total
+            List<FlightNetwork.Route> p = r.path(code);
+            String at = r.reverse ? code : r.airport;
+            double sum = 0;
+            for (FlightNetwork.Route x : p) {
+                assertEquals(at, x.from);
+                at = x.to;
+                sum += r.metric == null ? 1 : FlightNetwork.weight(x, r.metric);
+            }
+            assertEquals(r.reverse ? r.airport : code, at);
+            assertEquals(best[v], sum, 1e-9 * (1 + best[v]));
+            FlightNetwork.Route via = r.predecessor(code);
+            if (p.isEmpty()) assertNull(via);
+            else assertEquals(r.reverse ? p.get(0) : p.get(p.size() - 1), via);
+        }
+        assertEquals(inBudget, r.size());
+    }
+
+    @Test
+    void budgetedSearchMatchesFullSearch() {
+        Random rnd = new Random(6);
+        for (int q = 0; q < 40; q++) {
+            int a = rnd.nextInt(AIRPORTS);
+            FlightNetwork.Metric metric = FlightNetwork.Metric.values()[q % 3];
+            boolean reverse = q % 2 == 1;
+            double[] best = totals(a, metric, reverse);
+            // A budget reaching about a third of what is reachable at all
+            double[] finite = Arrays.stream(best).filter(d -> d < Double.POSITIVE_INFINITY).sorted().toArray();
+            double budget = finite[finite.length / 3];
+            check(net.reachable(TestNetworks.code(a), metric, budget, reverse), best, budget);
+        }
+    }
+
+    @Test
+    void stopsMatchFullSearch() {
+        Random rnd = new Random(8);
+        for (int q = 0; q < 40; q++) {
+            int a = rnd.nextInt(AIRPORTS), maxStops = q % 4;
+            boolean reverse = q % 2 == 1;
+            check(net.reachableWithStops(TestNetworks.code(a), maxStops, reverse), totals(a, null, reverse), maxStops + 1);
+        }
+    }
+
+    @Test
+    void unknownAirportOrNegativeBudgetIsEmpty() {
+        assertEquals(0, net.reachable("nowhere", FlightNetwork.Metric.COST, 500, false).size());
+        assertEquals(0, net.reachable(TestNetworks.code(0), FlightNetwork.Metric.COST, -1, false).size());
+    }
+}
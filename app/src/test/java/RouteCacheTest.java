@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+// Targeted invalidation: after edits that must and must not evict, cached answers still equal uncached
+// Dijkstra on an identical network, and the hit, miss and invalidation counts are exactly as expected
+class RouteCacheTest {
+    private static final int AIRPORTS = 80;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 320, 41), mirror = TestNetworks.random(AIRPORTS, 320, 41);
+    private final List<String[]> pairs = new ArrayList<>();
+    // Latest answer per pair, as the cache holds it
+    private final List<List<FlightNetwork.Route>> cached = new ArrayList<>();
+    private RouteCache cache;
+
+    private void edit(Consumer<FlightNetwork> edit) {
+        edit.accept(net);
+        edit.accept(mirror);
+    }
+
+    // Queries every pair by cost and checks the answers and counters; returns how many were misses
+    private long queryAll(FlightNetwork.Metric metric, long expectedMisses) {
+        long hits = cache.hits(), misses = cache.misses();
+        cached.clear();
+        for (String[] p : pairs) {
+            List<FlightNetwork.Route> path = net.findRoute(p[0], p[1], metric, FlightNetwork.SearchStrategy.AUTO, false);
+            List<FlightNetwork.Route> plain = mirror.findRoute(p[0], p[1], metric, FlightNetwork.SearchStrategy.DIJKSTRA, false);
+            String what = p[0] + " -> " + p[1];
+            if (plain == null) assertNull(path, what);
+            else {
+                double best = RouteSearchTest.total(mirror, plain, p[0], p[1], metric);
+                assertEquals(best, RouteSearchTest.total(net, path, p[0], p[1], metric), 1e-9 * (1 + best), what);
+            }
+            cached.add(path);
+        }
+        long missed = cache.misses() - misses;
+        if (expectedMisses >= 0) assertEquals(expectedMisses, missed, "misses");
+        assertEquals(pairs.size() - missed, cache.hits() - hits, "hits");
+        return missed;
+    }
+
+    private long using(String from, String to) {
+        return cached.stream().filter(p -> p.stream().anyMatch(r -> r.from.equals(from) && r.to.equals(to))).count();
+    }
+
+    private long touching(String code) {
+        return cached.stream().filter(p -> p.get(0).from.equals(code) || p.stream().anyMatch(r -> r.to.equals(code))).count();
+    }
+
+    private void expectInvalidations(long before, long count, FlightNetwork.Metric metric) {
+        assertEquals(before + count, cache.invalidations(), "invalidations");
+        assertEquals(pairs.size() - count, cache.size());
+        queryAll(metric, count);
+    }
+
+    @Test
+    void evictsExactlyWhatAnEditCanChange() {
+        Random rnd = new Random(3);
+        while (pairs.size() < 60) {
+            String a = TestNetworks.code(rnd.nextInt(AIRPORTS)), b = TestNetworks.code(rnd.nextInt(AIRPORTS));
+            if (!a.equals(b) && net.findRoute(a, b, FlightNetwork.Metric.COST, FlightNetwork.SearchStrategy.DIJKSTRA, false) != null)
+                pairs.add(new String[]{a, b});
+        }
+        net.enableCache(1 << 20);
+        cache = net.routeCache();
+        queryAll(FlightNetwork.Metric.COST, pairs.size());
+        queryAll(FlightNetwork.Metric.COST, 0);
+        assertEquals(0, cache.invalidations());
+
+        // Must not evict: an airport without routes, a route too dear to shorten anything, a route no path uses
+        edit(n -> n.addAirport(new FlightNetwork.Airport("N1", "New", "X", 1, 1)));
+        edit(n -> n.addRoute(pairs.get(0)[0], pairs.get(0)[1], 1e7));
+        FlightNetwork.Route unused = null;
+        for (FlightNetwork.Route r : RouteSearchTest.routes(net))
+            if (using(r.from, r.to) == 0 && r.cost < 1e7) unused = r;
+        String uf = unused.from, ut = unused.to;
+        edit(n -> n.removeRoute(uf, ut));
+        expectInvalidations(0, 0, FlightNetwork.Metric.COST);
+
+        // Must evict: the paths over a removed route, the paths through a removed airport, then everything a
+        // free route could shorten (every cached path costs something)
+        FlightNetwork.Route used = cached.get(0).get(0);
+        long before = cache.invalidations(), count = using(used.from, used.to);
+        edit(n -> n.removeRoute(used.from, used.to));
+        expectInvalidations(before, count, FlightNetwork.Metric.COST);
+
+        String via = cached.get(1).get(0).to;
+        before = cache.invalidations();
+        count = touching(via);
+        edit(n -> n.removeAirport(via));
+        pairs.removeIf(p -> p[0].equals(via) || p[1].equals(via));
+        assertEquals(before + count, cache.invalidations(), "invalidations");
+        queryAll(FlightNetwork.Metric.COST, -1);
+
+        before = cache.invalidations();
+        long size = cache.size();
+        edit(n -> n.addRoute(pairs.get(2)[1], pairs.get(3)[0], 0));
+        assertEquals(before + size, cache.invalidations());
+        queryAll(FlightNetwork.Metric.COST, pairs.size());
+    }
+
+    // Distance and flight time bound the rest of the trip by great-circle distance; routes that beat the
+    // bound must evict, and cached answers must stay right either way
+    @Test
+    void boundedMetricsStayCorrect() {
+        Random rnd = new Random(5);
+        while (pairs.size() < 60) {
+            String a = TestNetworks.code(rnd.nextInt(AIRPORTS)), b = TestNetworks.code(rnd.nextInt(AIRPORTS));
+            if (!a.equals(b)) pairs.add(new String[]{a, b});
+        }
+        net.enableCache(1 << 20);
+        cache = net.routeCache();
+        for (FlightNetwork.Metric metric : new FlightNetwork.Metric[]{FlightNetwork.Metric.DISTANCE, FlightNetwork.Metric.FLIGHT_TIME}) {
+            queryAll(metric, -1);
+            for (int k = 0; k < 30; k++) {
+                String a = TestNetworks.code(rnd.nextInt(AIRPORTS)), b = TestNetworks.code(rnd.nextInt(AIRPORTS));
+                edit(n -> n.addRoute(a, b, 100));
+                queryAll(metric, -1);
+            }
+        }
+        assertTrue(cache.invalidations() > 0 && cache.hits() > 0);
+    }
+}
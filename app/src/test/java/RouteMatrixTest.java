@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+// Matrix totals and paths against one findRoute per pair, with unknown, removed and repeated airports
+// among the origins and destinations, on the common pool and on a supplied executor
+class RouteMatrixTest {
+    private static final int AIRPORTS = 120;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 480, 43);
+    private final List<String> origins = new ArrayList<>(), destinations = new ArrayList<>();
+
+    RouteMatrixTest() {
+        Random rnd = new Random(8);
+        for (int i = 0; i < 25; i++) origins.add(TestNetworks.code(rnd.nextInt(AIRPORTS)));
+        for (int j = 0; j < 40; j++) destinations.add(TestNetworks.code(rnd.nextInt(AIRPORTS)));
+        origins.add(origins.get(3)); // Twice, and also a destination
+        destinations.add(origins.get(3));
+        origins.add("nowhere");
+        destinations.add("nowhere");
+        net.removeAirport(origins.get(5));
+        net.removeAirport(destinations.get(7));
+    }
+
+    private void check(RouteMatrix mx, FlightNetwork.Metric metric) {
+        assertEquals(origins, mx.origins);
+        assertEquals(destinations, mx.destinations);
+        for (int i = 0; i < origins.size(); i++)
+            for (int j = 0; j < destinations.size(); j++) {
+                String start = origins.get(i), end = destinations.get(j), what = start + " -> " + end + " by " + metric;
+                List<FlightNetwork.Route> path = mx.hasPaths() ? mx.path(i, j) : null;
+                if (start.equals(end) && net.graph().id(start) >= 0) {
+                    assertEquals(0, mx.total(i, j), what);
+                    if (mx.hasPaths()) assertTrue(path.isEmpty(), what);
+                    continue;
+                }
+                List<FlightNetwork.Route> best = net.findRoute(start, end, metric, FlightNetwork.SearchStrategy.DIJKSTRA, false);
+                if (best == null) {
+                    assertEquals(Double.POSITIVE_INFINITY, mx.total(i, j), what);
+                    assertNull(path, what);
+                    continue;
+                }
+                double total = RouteSearchTest.total(net, best, start, end, metric);
+                assertEquals(total, mx.total(i, j), 1e-9 * (1 + total), what);
+                if (mx.hasPaths()) assertEquals(total, RouteSearchTest.total(net, path, start, end, metric), 1e-9 * (1 + total), what);
+            }
+        double[] totals = mx.totals();
+        assertEquals(origins.size() * destinations.size(), totals.length);
+        assertEquals(mx.total(2, 3), totals[2 * destinations.size() + 3]);
+    }
+
+    @Test
+    void commonPoolMatchesFindRoute() {
+        for (FlightNetwork.Metric metric : FlightNetwork.Metric.values()) {
+            check(net.routeMatrix(origins, destinations, metric, true), metric);
+            RouteMatrix bare = net.routeMatrix(origins, destinations, metric, false);
+            assertFalse(bare.hasPaths());
+            check(bare, metric);
+            assertThrows(IllegalStateException.class, () -> bare.path(0, 0));
+        }
+    }
+
+    @Test
+    void suppliedExecutorMatchesFindRoute() {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (FlightNetwork.Metric metric : FlightNetwork.Metric.values())
+                check(net.routeMatrix(origins, destinations, metric, true, pool), metric);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void emptyLists() {
+        RouteMatrix mx = net.routeMatrix(new ArrayList<>(), destinations, FlightNetwork.Metric.COST, true);
+        assertEquals(0, mx.totals().length);
+        assertEquals(0, net.routeMatrix(origins, new ArrayList<>(), FlightNetwork.Metric.COST, false).totals().length);
+    }
+}
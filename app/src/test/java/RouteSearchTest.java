@@ -0,0 +1,203 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Every search strategy on every metric against Bellman-Ford totals over all routes, with zero-cost and
+// parallel routes in the network, and on snapshots with removed airports before and after compaction. Also
+// pins what findRoute answered before the snapshot search: null for no trip or unknown airports, and the
+// cheapest of parallel routes for direct-only queries.
+class RouteSearchTest {
+    private static final int AIRPORTS = 120;
+
+    private final FlightNetwork net = TestNetworks.random(AIRPORTS, 480, 23);
+
+    RouteSearchTest() {
+        Random rnd = new Random(4);
+        for (int k = 0; k < 40; k++) {
+            String a = TestNetworks.code(rnd.nextInt(AIRPORTS)), b = TestNetworks.code(rnd.nextInt(AIRPORTS));
+            if (a.equals(b)) continue;
+            // Free legs, and a second or third route on a pair that may already have one
+            net.addRoute(a, b, k % 2 == 0 ? 0 : 20 + rnd.nextInt(400));
+            if (k % 3 == 0) net.addRoute(a, b, 10 + rnd.nextInt(600));
+        }
+    }
+
+    static List<FlightNetwork.Route> routes(FlightNetwork net) {
+        List<FlightNetwork.Route> out = new ArrayList<>();
+        for (FlightNetwork.Airport a : net.getAirports()) out.addAll(net.getRoutesFrom(a.code));
+        return out;
+    }
+
+    // Best total from airport s to every airport id (TestNetworks codes) over all routes of net
+    static double[] totals(FlightNetwork net, int airports, int s, FlightNetwork.Metric metric) {
+        List<FlightNetwork.Route> routes = routes(net);
+        double[] best = new double[airports];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        best[s] = 0;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (FlightNetwork.Route r : routes) {
+                int u = id(r.from), v = id(r.to);
+                double alt = best[u] + FlightNetwork.weight(r, metric);
+                if (alt < best[v]) {
+                    best[v] = alt;
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    static int id(String code) {
+        return Integer.parseInt(code.substring(1));
+    }
+
+    // Total of a path that must run from start to end without gaps, over routes the network has
+    static double total(FlightNetwork net, List<FlightNetwork.Route> path, String start, String end, FlightNetwork.Metric metric) {
+        assertTrue(!path.isEmpty(), "empty path");
+        String at = start;
+        double sum = 0;
+        for (FlightNetwork.Route r : path) {
+            assertEquals(at, r.from, "path has a gap");
+            assertTrue(net.getRoutes(r.from, r.to).contains(r), () -> r + " is not a route of the network");
+            at = r.to;
+            sum += FlightNetwork.weight(r, metric);
+        }
+        assertEquals(end, at, "path ends elsewhere");
+        return sum;
+    }
+
+    // Every strategy finds a path exactly when one exists, and one as short as the best
+    static void checkAll(FlightNetwork net, int airports, Random rnd, int origins) {
+        int found = 0;
+        for (int q = 0; q < origins; q++) {
+            int s = rnd.nextInt(airports);
+            String start = TestNetworks.code(s);
+            if (net.graph().id(start) < 0) continue;
+            for (FlightNetwork.Metric metric : FlightNetwork.Metric.values()) {
+                double[] best = totals(net, airports, s, metric);
+                for (int t = 0; t < airports; t++) {
+                    String end = TestNetworks.code(t);
+                    if (t == s || net.graph().id(end) < 0) continue;
+                    for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values()) {
+                        List<FlightNetwork.Route> path = net.findRoute(start, end, metric, strategy, false);
+                        String what = start + " -> " + end + " by " + metric + " with " + strategy;
+                        if (best[t] == Double.POSITIVE_INFINITY) {
+                            assertNull(path, what);
+                            continue;
+                        }
+                        assertNotNull(path, what);
+                        assertEquals(best[t], total(net, path, start, end, metric), 1e-9 * (1 + best[t]), what);
+                        found++;
+                    }
+                }
+            }
+        }
+        assertTrue(found > 1000);
+    }
+
+    @Test
+    void everyStrategyFindsAShortestPath() {
+        checkAll(net, AIRPORTS, new Random(1), 12);
+    }
+
+    @Test
+    void freeRoutesAreTaken() {
+        // A free detour beats any priced direct route on cost
+        net.addAirport(new FlightNetwork.Airport("X1", "X1", "X", 10, 10));
+        net.addAirport(new FlightNetwork.Airport("X2", "X2", "X", 10, 12));
+        net.addAirport(new FlightNetwork.Airport("X3", "X3", "X", 30, 40));
+        net.addRoute("X1", "X2", 100);
+        net.addRoute("X1", "X3", 0);
+        net.addRoute("X3", "X2", 0);
+        for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values()) {
+            List<FlightNetwork.Route> path = net.findRoute("X1", "X2", FlightNetwork.Metric.COST, strategy, false);
+            assertEquals(2, path.size(), strategy::toString);
+            assertEquals(0, total(net, path, "X1", "X2", FlightNetwork.Metric.COST));
+            assertEquals(1, net.findRoute("X1", "X2", FlightNetwork.Metric.DISTANCE, strategy, false).size(), strategy::toString);
+        }
+    }
+
+    @Test
+    void cheapestParallelRouteIsTaken() {
+        net.addAirport(new FlightNetwork.Airport("P1", "P1", "X", 0, 0));
+        net.addAirport(new FlightNetwork.Airport("P2", "P2", "X", 0, 5));
+        net.addRoute("P1", "P2", 300);
+        net.addRoute("P1", "P2", 120);
+        net.addRoute("P1", "P2", 250);
+        for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values()) {
+            List<FlightNetwork.Route> path = net.findRoute("P1", "P2", FlightNetwork.Metric.COST, strategy, false);
+            assertEquals(1, path.size(), strategy::toString);
+            assertEquals(120, path.get(0).cost, strategy::toString);
+        }
+    }
+
+    @Test
+    void noTripNoRoute() {
+        for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values())
+            for (FlightNetwork.Metric metric : FlightNetwork.Metric.values())
+                for (boolean direct : new boolean[]{false, true}) {
+                    String what = strategy + " " + metric + " " + direct;
+                    assertNull(net.findRoute("T1", "T1", metric, strategy, direct), what);
+                    assertNull(net.findRoute("T1", "nowhere", metric, strategy, direct), what);
+                    assertNull(net.findRoute("nowhere", "T1", metric, strategy, direct), what);
+                    assertNull(net.findRoute(null, "T1", metric, strategy, direct), what);
+                }
+    }
+
+    @Test
+    void directOnlyTakesTheBestParallelRoute() {
+        net.addAirport(new FlightNetwork.Airport("P1", "P1", "X", 0, 0));
+        net.addAirport(new FlightNetwork.Airport("P2", "P2", "X", 0, 5));
+        net.addAirport(new FlightNetwork.Airport("P3", "P3", "X", 0, 9));
+        net.addRoute("P1", "P2", 300);
+        net.addRoute("P1", "P2", 120);
+        net.addRoute("P1", "P2", 250);
+        net.addRoute("P2", "P3", 10);
+        for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values())
+            for (FlightNetwork.Metric metric : FlightNetwork.Metric.values()) {
+                List<FlightNetwork.Route> direct = net.findRoute("P1", "P2", metric, strategy, true);
+                assertEquals(1, direct.size());
+                double best = Double.POSITIVE_INFINITY;
+                for (FlightNetwork.Route r : net.getRoutes("P1", "P2")) best = Math.min(best, FlightNetwork.weight(r, metric));
+                assertEquals(best, FlightNetwork.weight(direct.get(0), metric));
+                if (metric == FlightNetwork.Metric.COST) assertEquals(120, direct.get(0).cost);
+                assertTrue(net.getRoutes("P1", "P2").contains(direct.get(0)));
+                // A trip with a stop is no direct route
+                assertNull(net.findRoute("P1", "P3", metric, strategy, true));
+            }
+    }
+
+    @Test
+    void searchesSkipRemovedAirports() {
+        Random rnd = new Random(9);
+        List<String> removed = new ArrayList<>();
+        for (int k = 0; k < 15; k++) {
+            String code = TestNetworks.code(rnd.nextInt(AIRPORTS));
+            if (net.removeAirport(code)) removed.add(code);
+        }
+        net.removeAirports(a -> a.country.equals("C2"));
+        RouteGraph g = net.graph();
+        assertTrue(g.liveAirportCount < g.airportCount, "removed airports leave dead rows");
+        checkAll(net, AIRPORTS, new Random(2), 6);
+        // A bulk import lays the snapshot out afresh; the dead rows stay dead
+        net.addAll(Collections.emptyList(), Collections.emptyList());
+        assertEquals(g.airportCount, net.graph().airportCount);
+        assertEquals(g.liveAirportCount, net.graph().liveAirportCount);
+        checkAll(net, AIRPORTS, new Random(3), 6);
+        for (String code : removed)
+            for (FlightNetwork.SearchStrategy strategy : FlightNetwork.SearchStrategy.values()) {
+                assertNull(net.findRoute(code, "T0", FlightNetwork.Metric.COST, strategy, false));
+                assertNull(net.findRoute("T0", code, FlightNetwork.Metric.COST, strategy, false));
+            }
+    }
+}
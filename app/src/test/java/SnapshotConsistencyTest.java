@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+// Short run of bench's SnapshotStressTest: one writer toggles routes on pairs that had none, some singly and
+// some as a there-and-back pair in one batch, while readers check every snapshot they take
+class SnapshotConsistencyTest {
+    private static final int PAIRS = 32, READERS = 3;
+
+    private final FlightNetwork net = TestNetworks.random(2000, 8000, 3);
+    private final String[] from = new String[PAIRS], to = new String[PAIRS];
+    private final int baseRoutes = net.graph().routeCount;
+    private final AtomicLong violations = new AtomicLong();
+    private final List<String> first = new ArrayList<>();
+    private volatile boolean done;
+
+    @Test
+    void readersNeverSeeHalfAnEdit() throws InterruptedException {
+        Random rnd = new Random(7);
+        for (int p = 0; p < PAIRS; ) {
+            String a = TestNetworks.code(rnd.nextInt(2000)), b = TestNetworks.code(rnd.nextInt(2000));
+            if (a.equals(b) || net.hasRoute(a, b) || net.hasRoute(b, a) || used(a, b, p)) continue;
+            from[p] = a;
+            to[p++] = b;
+        }
+        AtomicInteger reads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            long seed = i;
+            threads.add(new Thread(() -> reader(seed, reads)));
+        }
+        for (Thread t : threads) t.start();
+        int writes = writer(3000);
+        done = true;
+        for (Thread t : threads) t.join();
+        assertEquals(0, violations.get(), () -> "violations, first: " + first);
+        assertTrue(reads.get() > 0);
+        assertEquals(writes + 1, net.version());
+        checkWhole(net.graph());
+        assertEquals(0, violations.get(), () -> "violations, first: " + first);
+    }
+
+    private boolean used(String a, String b, int count) {
+        for (int p = 0; p < count; p++)
+            if (from[p].equals(a) && to[p].equals(b) || from[p].equals(b) && to[p].equals(a)) return true;
+        return false;
+    }
+
+    // Returns the number of versions written
+    private int writer(int edits) {
+        Random rnd = new Random(11);
+        boolean[] on = new boolean[PAIRS];
+        int versions = 0;
+        for (int i = 0; i < edits; i++) {
+            int p = rnd.nextInt(PAIRS);
+            String a = from[p], b = to[p];
+            if (p < PAIRS / 2) {
+                boolean add = !on[p];
+                net.batch(() -> {
+                    if (add) {
+                        net.addRoute(a, b, 100);
+                        net.addRoute(b, a, 100);
+                    } else {
+                        net.removeRoute(a, b);
+                        net.removeRoute(b, a);
+                    }
+                });
+                versions += 2;
+            } else {
+                if (on[p]) net.removeRoute(a, b);
+                else net.addRoute(a, b, 100);
+                versions++;
+            }
+            on[p] = !on[p];
+            if ((i & 63) == 0) Thread.yield(); // Let the readers in on a single core
+        }
+        return versions;
+    }
+
+    private void reader(long seed, AtomicInteger reads) {
+        Random rnd = new Random(seed);
+        long lastVersion = -1;
+        for (int n = 1; !done; n++) {
+            RouteGraph g = net.graph();
+            if (g.version < lastVersion) fail("snapshot version went back from " + lastVersion + " to " + g.version);
+            lastVersion = g.version;
+            int toggled = 0;
+            for (int p = 0; p < PAIRS; p++) {
+                boolean there = g.edge(g.id(from[p]), g.id(to[p])) >= 0;
+                if (there) toggled++;
+                if (p < PAIRS / 2) {
+                    boolean back = g.edge(g.id(to[p]), g.id(from[p])) >= 0;
+                    if (there != back) fail("half of a batch visible at version " + g.version);
+                    if (back) toggled++;
+                }
+            }
+            if (g.routeCount != baseRoutes + toggled)
+                fail(g.routeCount + " routes at version " + g.version + ", expected " + (baseRoutes + toggled));
+            if ((n & 63) == 0) checkWhole(g);
+            g.shortestPath(rnd.nextInt(g.airportCount), rnd.nextInt(g.airportCount), FlightNetwork.Metric.DISTANCE,
+                    FlightNetwork.SearchStrategy.AUTO, false);
+            reads.incrementAndGet();
+        }
+    }
+
+    // Rows, incoming lists and pair lookups of one snapshot describe the same edges
+    private void checkWhole(RouteGraph g) {
+        int m = 0, pairs = 0, incoming = 0;
+        for (int u = 0; u < g.airportCount; u++)
+            for (int e = g.begin(u); e < g.end(u); e++) {
+                FlightNetwork.Route r = g.route(e);
+                m++;
+                if (g.tail[e] != u || g.head[e] != g.id(r.to) || !r.from.equals(g.code(u)) || g.cost[e] != r.cost)
+                    fail("edge " + e + " inconsistent at version " + g.version);
+                int k = g.edge(u, g.head[e]);
+                if (k == e) pairs++;
+                while (k >= 0 && k != e) k = g.nextParallel(k);
+                if (k != e) fail("pair lookup misses edge " + e + " at version " + g.version);
+            }
+        for (int v = 0; v < g.airportCount; v++)
+            for (int k = g.inBegin(v); k < g.inEnd(v); k++, incoming++)
+                if (g.edge(g.inTail[k], v) < 0) fail("incoming list of " + g.code(v) + " at version " + g.version);
+        if (m != g.routeCount || incoming != pairs) fail("row bounds at version " + g.version);
+    }
+
+    private void fail(String what) {
+        if (violations.getAndIncrement() < 10)
+            synchronized (first) {
+                first.add(what);
+            }
+    }
+}
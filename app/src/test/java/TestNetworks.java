@@ -0,0 +1,31 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Small random networks for the tests: airports scattered over the globe, routes between random pairs
+// (parallel routes and dead ends included) with costs that do not follow the distances
+final class TestNetworks {
+    private TestNetworks() {}
+
+    static FlightNetwork random(int airports, int routes, long seed) {
+        Random rnd = new Random(seed);
+        List<FlightNetwork.Airport> as = new ArrayList<>();
+        for (int i = 0; i < airports; i++)
+            as.add(new FlightNetwork.Airport(code(i), "Airport " + i, "C" + i % 7,
+                    Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1)), 360 * rnd.nextDouble() - 180));
+        List<FlightNetwork.Route> rs = new ArrayList<>();
+        for (int k = 0; k < routes; k++) {
+            FlightNetwork.Airport a = as.get(rnd.nextInt(airports)), b = as.get(rnd.nextInt(airports));
+            if (a == b) continue;
+            double dist = FlightNetwork.haversine(a.latitude, a.longitude, b.latitude, b.longitude);
+            rs.add(new FlightNetwork.Route(a.code, b.code, 50 + rnd.nextInt(500), dist, dist / FlightNetwork.CRUISE_KMH));
+        }
+        FlightNetwork net = new FlightNetwork();
+        net.addAll(as, rs);
+        return net;
+    }
+
+    static String code(int i) {
+        return "T" + i;
+    }
+}
@@ -0,0 +1,29 @@
+package flightplanner;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// Runs JMH with the GC profiler (allocation rate per op) and JSON results in results/, so runs from
+// different commits can be compared. Any JMH option can be passed, e.g. "Query -p airports=10000".
+public final class BenchMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        String file = cli.getResult().hasValue() ? cli.getResult().get()
+                : "results/jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json";
+        new File(file).getAbsoluteFile().getParentFile().mkdirs();
+        OptionsBuilder opts = new OptionsBuilder();
+        opts.parent(cli);
+        if (!cli.getResultFormat().hasValue()) opts.resultFormat(ResultFormatType.JSON);
+        opts.result(file);
+        if (cli.getProfilers().isEmpty()) opts.addProfiler(GCProfiler.class);
+        new Runner(opts.build()).run();
+        System.out.println("Results written to " + file);
+    }
+}
@@ -0,0 +1,63 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Stress test for snapshot reads: reader threads search while one writer streams batches of edits.
+// Reader throughput should grow with the reader count (-tg 1,1 vs -tg 1,4 ...) despite the writer.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrencyBenchmark {
+    @Param({"10000"})
+    int airports;
+
+    FlightNetwork net;
+    List<FlightNetwork.Airport> all;
+    // Pairs without a route, so the writer's add-then-remove leaves the network as it was
+    String[] from = new String[MutationBenchmark.PAIRS], to = new String[MutationBenchmark.PAIRS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        net = NetworkGenerator.generate(airports, 42);
+        all = net.getAirports();
+        MutationBenchmark.freePairs(net, all, from, to);
+    }
+
+    // Per-thread position in the airport list, so threads do not share a counter
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 104729;
+    }
+
+    private String code(int k) {
+        return all.get(Math.floorMod(k * 7919, all.size())).code;
+    }
+
+    @Benchmark
+    @Group("snapshotReads")
+    @GroupThreads(1)
+    public void writer(Cursor c) {
+        int k = c.next++;
+        net.batch(() -> {
+            for (int i = 0; i < 20; i++) {
+                int p = Math.floorMod(k + i, from.length);
+                net.addRoute(from[p], to[p], 100);
+                net.removeRoute(from[p], to[p]);
+            }
+        });
+    }
+
+    @Benchmark
+    @Group("snapshotReads")
+    @GroupThreads(3)
+    public List<FlightNetwork.Route> reader(Cursor c) {
+        int k = c.next++;
+        return net.findRoute(code(k), code(k + 1), FlightNetwork.Metric.DISTANCE, FlightNetwork.SearchStrategy.AUTO, false);
+    }
+}
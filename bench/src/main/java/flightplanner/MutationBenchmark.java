@@ -0,0 +1,114 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Edit throughput. Each route edit derives the next snapshot from the previous one, so single edits with
+// no reads in between are compared against edits that are each followed by a read, and against batches.
+// Every benchmark leaves the network as it found it: route edits add and remove routes on pairs that had
+// none, and a removed airport comes back with all of its routes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int airports;
+
+    // Distinct pairs of airports with no route from the first to the second
+    static final int PAIRS = 4096;
+
+    FlightNetwork net;
+    List<FlightNetwork.Airport> all;
+    String[] from, to;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        net = NetworkGenerator.generate(airports, 42);
+        all = net.getAirports();
+        from = new String[PAIRS];
+        to = new String[PAIRS];
+        freePairs(net, all, from, to);
+    }
+
+    // Fills from/to with distinct pairs that have no route from -> to, so adding and then removing one
+    // leaves the network unchanged
+    static void freePairs(FlightNetwork net, List<FlightNetwork.Airport> all, String[] from, String[] to) {
+        int n = all.size();
+        Set<String> seen = new HashSet<>();
+        for (int k = 0, p = 0; p < from.length; k++) {
+            // Neighbours in a scrambled order, then every second airport, every third ...
+            String a = all.get(Math.floorMod(k * 7919, n)).code, b = all.get(Math.floorMod((k + 1 + k / n) * 7919, n)).code;
+            if (a.equals(b) || net.hasRoute(a, b) || !seen.add(a + " " + b)) continue;
+            from[p] = a;
+            to[p++] = b;
+        }
+    }
+
+    private FlightNetwork.Airport airport(int k) {
+        return all.get(Math.floorMod(k * 7919, all.size()));
+    }
+
+    // addRoute and removeRoute of the same pair, nobody reading
+    @Benchmark
+    public boolean addAndRemoveRoute() {
+        int p = Math.floorMod(next++, PAIRS);
+        String a = from[p], b = to[p];
+        net.addRoute(a, b, 100);
+        return net.removeRoute(a, b);
+    }
+
+    // The same with a lookup after each edit, answered from the published snapshot without locking
+    @Benchmark
+    public boolean addAndRemoveRouteWithReads() {
+        int p = Math.floorMod(next++, PAIRS);
+        String a = from[p], b = to[p];
+        net.addRoute(a, b, 100);
+        boolean added = net.hasRoute(a, b);
+        net.removeRoute(a, b);
+        return added & !net.hasRoute(a, b);
+    }
+
+    // 2 x 50 edits in one batch, one publish
+    @Benchmark
+    @OperationsPerInvocation(50)
+    public void batchedRouteEdits() {
+        int k = next++;
+        net.batch(() -> {
+            for (int i = 0; i < 50; i++) {
+                int p = Math.floorMod(k + i, PAIRS);
+                net.addRoute(from[p], to[p], 100);
+                net.removeRoute(from[p], to[p]);
+            }
+        });
+    }
+
+    // removeAirport followed by putting the airport and its routes back in one batch
+    @Benchmark
+    public void removeAndRestoreAirport() {
+        FlightNetwork.Airport a = airport(next++);
+        List<FlightNetwork.Route> out = net.getRoutesFrom(a.code), in = new ArrayList<>();
+        // Every route into it, from the snapshot's incoming lists; routes to itself are already in out
+        RouteGraph g = net.graph();
+        int v = g.id(a.code);
+        for (int k = g.inBegin(v); k < g.inEnd(v); k++)
+            for (int e = g.edge(g.inTail[k], v); e >= 0; e = g.nextParallel(e)) {
+                FlightNetwork.Route r = g.route(e);
+                if (!r.from.equals(a.code)) in.add(r);
+            }
+        net.removeAirport(a.code);
+        net.batch(() -> {
+            net.addAirport(a);
+            for (FlightNetwork.Route r : out) net.addRoute(r.from, r.to, r.cost);
+            for (FlightNetwork.Route r : in) net.addRoute(r.from, r.to, r.cost);
+        });
+    }
+}
@@ -0,0 +1,168 @@
+package flightplanner;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+// Deterministic hub-and-spoke networks scattered around real metropolitan areas. Each region has a few
+// hubs linked to each other and to hubs elsewhere; every other airport (spoke) flies to one or two hubs
+// of its region and sometimes to a neighbouring spoke. Roughly 3.5 routes per airport at 1k, 5.5 at 100k.
+public final class NetworkGenerator {
+    // Region centres: latitude, longitude, relative weight
+    private static final double[][] REGIONS = {
+            {40.7, -74.0, 9}, {34.0, -118.2, 7}, {41.9, -87.6, 6}, {29.8, -95.4, 5}, {33.7, -84.4, 5},
+            {47.6, -122.3, 3}, {25.8, -80.2, 4}, {39.7, -105.0, 3}, {43.7, -79.4, 4}, {19.4, -99.1, 5},
+            {-23.5, -46.6, 6}, {-34.6, -58.4, 4}, {4.7, -74.1, 3}, {-12.0, -77.0, 3}, {51.5, -0.1, 8},
+            {48.9, 2.4, 7}, {50.1, 8.7, 6}, {52.4, 4.9, 5}, {40.4, -3.7, 5}, {41.9, 12.5, 4},
+            {55.8, 37.6, 5}, {41.0, 29.0, 5}, {30.0, 31.2, 4}, {6.5, 3.4, 4}, {-26.2, 28.0, 3},
+            {-1.3, 36.8, 2}, {25.3, 55.3, 6}, {24.7, 46.7, 3}, {28.6, 77.2, 7}, {19.1, 72.9, 7},
+            {13.1, 80.3, 4}, {23.8, 90.4, 4}, {13.8, 100.5, 5}, {1.4, 103.8, 5}, {-6.2, 106.8, 5},
+            {14.6, 121.0, 4}, {22.3, 114.2, 6}, {31.2, 121.5, 8}, {39.9, 116.4, 8}, {23.1, 113.3, 6},
+            {37.6, 127.0, 6}, {35.7, 139.7, 8}, {34.7, 135.5, 5}, {-33.9, 151.2, 5}, {-37.8, 145.0, 4},
+            {-36.8, 174.8, 2}, {64.1, -21.9, 1}, {61.2, -149.9, 1}, {21.3, -157.9, 1}, {-4.3, 15.3, 2},
+    };
+    private static final double SPREAD_DEG = 4.0, HUB_SHARE = 0.025;
+
+    private NetworkGenerator() {
+    }
+
+    // Same size and seed always give the same network
+    public static FlightNetwork generate(int airportCount, long seed) {
+        Random rnd = new Random(seed);
+        int regions = REGIONS.length;
+        double totalWeight = 0;
+        for (double[] r : REGIONS) totalWeight += r[2];
+        int hubCount = Math.max(regions, (int) (airportCount * HUB_SHARE));
+        hubCount = Math.min(hubCount, airportCount);
+        int codeLength = airportCount <= 26 * 26 * 26 ? 3 : 4;
+
+        List<FlightNetwork.Airport> airports = new ArrayList<>(airportCount);
+        int[] regionOf = new int[airportCount];
+        List<List<Integer>> hubsOf = new ArrayList<>(), spokesOf = new ArrayList<>();
+        for (int r = 0; r < regions; r++) {
+            hubsOf.add(new ArrayList<>());
+            spokesOf.add(new ArrayList<>());
+        }
+        for (int i = 0; i < airportCount; i++) {
+            boolean hub = i < hubCount;
+            int r = hub ? i % regions : pick(rnd, totalWeight);
+            double spread = hub ? SPREAD_DEG / 4 : SPREAD_DEG;
+            double lat = clamp(REGIONS[r][0] + rnd.nextGaussian() * spread, -60, 72);
+            double lon = wrap(REGIONS[r][1] + rnd.nextGaussian() * spread / Math.max(0.3, Math.cos(Math.toRadians(lat))));
+            String code = code(i, codeLength);
+            airports.add(new FlightNetwork.Airport(code, (hub ? "Hub " : "Airport ") + code, "R" + r, lat, lon));
+            regionOf[i] = r;
+            (hub ? hubsOf : spokesOf).get(r).add(i);
+        }
+
+        List<FlightNetwork.Route> routes = new ArrayList<>(airportCount * 6);
+        for (int r = 0; r < regions; r++) {
+            List<Integer> hubs = hubsOf.get(r);
+            for (int a = 0; a < hubs.size(); a++)
+                for (int b = a + 1; b < hubs.size(); b++) both(routes, airports, hubs.get(a), hubs.get(b), rnd);
+        }
+        for (int h = 0; h < hubCount; h++)
+            for (int k = 0; k < 8; k++) {
+                int other = rnd.nextInt(hubCount);
+                if (regionOf[other] != regionOf[h]) both(routes, airports, h, other, rnd);
+            }
+        for (int i = hubCount; i < airportCount; i++) {
+            List<Integer> hubs = hubsOf.get(regionOf[i]), spokes = spokesOf.get(regionOf[i]);
+            int first = hubs.get(rnd.nextInt(hubs.size()));
+            both(routes, airports, i, first, rnd);
+            if (hubs.size() > 1 && rnd.nextBoolean()) {
+                int second = hubs.get(rnd.nextInt(hubs.size()));
+                if (second != first) both(routes, airports, i, second, rnd);
+            }
+            if (rnd.nextBoolean()) {
+                int neighbour = spokes.get(rnd.nextInt(spokes.size()));
+                if (neighbour != i) both(routes, airports, i, neighbour, rnd);
+            }
+        }
+        FlightNetwork net = new FlightNetwork();
+        net.addAll(airports, routes);
+        return net;
+    }
+
+    // A weekly timetable over every route of net: perDay flights a day spread through waking hours, each
+    // skipping one day of the week at random, in the air for the route's flight time plus taxiing
+    public static Timetable timetable(FlightNetwork net, int perDay, long seed) {
+        Random rnd = new Random(seed);
+        List<Timetable.Flight> flights = new ArrayList<>();
+        RouteGraph g = net.graph();
+        int number = 0;
+        for (int u = 0; u < g.airportCount; u++)
+            for (int e = g.begin(u); e < g.end(u); e++, number++) {
+                FlightNetwork.Route r = g.route(e);
+                int duration = (int) Math.round(r.flightTime * 60) + 20;
+                for (int k = 0; k < perDay; k++) {
+                    int departure = (6 * 60 + k * 16 * 60 / perDay + rnd.nextInt(60)) % Timetable.DAY;
+                    int days = 0x7F & ~(1 << rnd.nextInt(7));
+                    flights.add(new Timetable.Flight(g.code(u) + number + "-" + k, r, departure, duration, days));
+                }
+            }
+        Map<String, Integer> minConnect = new HashMap<>();
+        for (int i = 0; i < g.airportCount; i++)
+            if (g.end(i) - g.begin(i) > 20) minConnect.put(g.code(i), 90); // Hubs take longer to change at
+        return new Timetable(flights, minConnect, Timetable.DEFAULT_MIN_CONNECT);
+    }
+
+    // n random airport pairs of net as {from codes, to codes}; the same seed gives the same pairs
+    public static String[][] randomPairs(FlightNetwork net, int n, long seed) {
+        List<FlightNetwork.Airport> all = net.getAirports();
+        Random rnd = new Random(seed);
+        String[][] pairs = new String[2][n];
+        for (int i = 0; i < n; i++) {
+            pairs[0][i] = all.get(rnd.nextInt(all.size())).code;
+            pairs[1][i] = all.get(rnd.nextInt(all.size())).code;
+        }
+        return pairs;
+    }
+
+    private static int pick(Random rnd, double totalWeight) {
+        double x = rnd.nextDouble() * totalWeight;
+        for (int r = 0; r < REGIONS.length; r++)
+            if ((x -= REGIONS[r][2]) < 0) return r;
+        return REGIONS.length - 1;
+    }
+
+    private static void both(List<FlightNetwork.Route> routes, List<FlightNetwork.Airport> airports, int a, int b, Random rnd) {
+        FlightNetwork.Airport x = airports.get(a), y = airports.get(b);
+        double km = FlightNetwork.haversine(x.latitude, x.longitude, y.latitude, y.longitude);
+        double cost = Math.round(50 + 0.1 * km * (0.8 + 0.4 * rnd.nextDouble()));
+        routes.add(new FlightNetwork.Route(x.code, y.code, cost, km, km / FlightNetwork.CRUISE_KMH));
+        routes.add(new FlightNetwork.Route(y.code, x.code, cost, km, km / FlightNetwork.CRUISE_KMH));
+    }
+
+    // Base-26 letter code, unique per index
+    static String code(int i, int length) {
+        char[] c = new char[length];
+        for (int k = length - 1; k >= 0; k--, i /= 26) c[k] = (char) ('A' + i % 26);
+        return new String(c);
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    private static double wrap(double lon) {
+        return ((lon + 180) % 360 + 360) % 360 - 180;
+    }
+
+    // Writes a generated network for the GUI, and optionally a timetable for it:
+    // NetworkGenerator <airports> <file.frn> [seed] [timetable file]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: NetworkGenerator <airports> <output file> [seed] [timetable file]");
+            System.exit(2);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        FlightNetwork net = generate(Integer.parseInt(args[0]), seed);
+        net.saveToFile(args[1]);
+        System.out.println("Wrote " + net.graph().liveAirportCount + " airports, " + net.graph().routeCount + " routes to " + args[1]);
+        if (args.length > 3) {
+            Timetable tt = timetable(net, 3, seed);
+            tt.write(Paths.get(args[3]));
+            System.out.println("Wrote " + tt.flights.size() + " flights to " + args[3]);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Common setup of the query benchmarks: a generated network of each size and fixed random airport pairs
+// that each call takes the next of, cycling
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class PairBenchmark {
+    static final int PAIRS = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    int airports;
+
+    FlightNetwork net;
+    String[] from, to;
+    private int next;
+
+    @Setup(Level.Trial)
+    public final void setUp() {
+        net = NetworkGenerator.generate(airports, 42);
+        prepare();
+        String[][] pairs = NetworkGenerator.randomPairs(net, PAIRS, 7);
+        from = pairs[0];
+        to = pairs[1];
+    }
+
+    // Anything else a benchmark needs on the network before it is measured
+    void prepare() {
+    }
+
+    // Index of the pair for this call
+    int nextPair() {
+        return next++ & (PAIRS - 1);
+    }
+}
@@ -0,0 +1,20 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+// Pareto front queries (cost, distance, flight time, hops) per epsilon and hop limit, cycling through fixed random pairs
+public class ParetoBenchmark extends PairBenchmark {
+    @Param({"0", "0.05"})
+    double epsilon;
+
+    @Param({"4"})
+    int maxHops;
+
+    @Benchmark
+    public List<ParetoSearch.Option> findRouteOptions() {
+        int i = nextPair();
+        return net.findRouteOptions(from[i], to[i], epsilon, maxHops);
+    }
+}
@@ -0,0 +1,66 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Save and load time for the binary format and legacy Java serialization
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int airports;
+
+    FlightNetwork net;
+    Path dir, binary, legacy, scratch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        net = NetworkGenerator.generate(airports, 42);
+        dir = Files.createTempDirectory("frp-bench");
+        binary = dir.resolve("network.frn");
+        legacy = dir.resolve("network.ser");
+        scratch = dir.resolve("scratch");
+        net.saveToFile(binary.toString());
+        net.saveLegacy(legacy.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path p : new Path[]{binary, legacy, scratch}) Files.deleteIfExists(p);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void saveBinary() throws IOException {
+        net.saveToFile(scratch.toString());
+    }
+
+    @Benchmark
+    public void saveLegacy() throws IOException {
+        net.saveLegacy(scratch.toString());
+    }
+
+    @Benchmark
+    public FlightNetwork loadBinary() throws Exception {
+        return FlightNetwork.loadFromFile(binary.toString());
+    }
+
+    @Benchmark
+    public FlightNetwork loadLegacy() throws Exception {
+        return FlightNetwork.loadFromFile(legacy.toString());
+    }
+
+    // Opening only maps and validates the file
+    @Benchmark
+    public NetworkFile mapBinary() throws IOException {
+        return NetworkFile.open(binary);
+    }
+}
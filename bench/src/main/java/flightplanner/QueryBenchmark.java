@@ -0,0 +1,42 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+// Point-to-point query latency per metric and search strategy, cache off, cycling through fixed random pairs
+public class QueryBenchmark extends PairBenchmark {
+    @Param({"COST", "DISTANCE", "FLIGHT_TIME"})
+    FlightNetwork.Metric metric;
+
+    @Param({"DIJKSTRA", "AUTO", "CONTRACTION_HIERARCHY"})
+    FlightNetwork.SearchStrategy strategy;
+
+    // Off by default; -p metrics=false,true measures what SearchMetrics costs
+    @Param({"false"})
+    boolean metrics;
+
+    @Override
+    void prepare() {
+        if (strategy == FlightNetwork.SearchStrategy.CONTRACTION_HIERARCHY) net.enableHierarchies(false, metric);
+        if (metrics) net.enableMetrics();
+    }
+
+    @Benchmark
+    public List<FlightNetwork.Route> findRoute() {
+        int i = nextPair();
+        return net.findRoute(from[i], to[i], metric, strategy, false);
+    }
+
+    // Direct route lookups ignore the search strategy, so they run once per metric and build no hierarchy
+    public static class Direct extends PairBenchmark {
+        @Param({"COST", "DISTANCE", "FLIGHT_TIME"})
+        FlightNetwork.Metric metric;
+
+        @Benchmark
+        public List<FlightNetwork.Route> directOnly() {
+            int i = nextPair();
+            return net.findRoute(from[i], to[i], metric, FlightNetwork.SearchStrategy.AUTO, true);
+        }
+    }
+}
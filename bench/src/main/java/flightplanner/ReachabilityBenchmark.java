@@ -0,0 +1,23 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+// Budget-bounded one-to-all searches from fixed random airports, forward and reverse: within a cost budget,
+// or within two stops (budget does not apply to that one)
+public class ReachabilityBenchmark extends PairBenchmark {
+    @Param({"500", "2000"})
+    double budget;
+
+    @Param({"false", "true"})
+    boolean reverse;
+
+    @Benchmark
+    public Reachability withinCost() {
+        return net.reachable(from[nextPair()], FlightNetwork.Metric.COST, budget, reverse);
+    }
+
+    @Benchmark
+    public Reachability twoStops() {
+        return net.reachableWithStops(from[nextPair()], 2, reverse);
+    }
+}
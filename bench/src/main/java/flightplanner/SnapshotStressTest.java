@@ -0,0 +1,182 @@
+package flightplanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Readers search and check every snapshot they take while one writer edits at a fixed rate, first with 1
+// reader, then 2, 4, ... up to the core count. The writer toggles routes on pairs that had none: some
+// singly, some as a there-and-back pair in one batch. A reader fails the run if a snapshot is older than one it saw before,
+// shows half of a batch, or has a route count that does not match the toggled routes it contains, and
+// every so often walks a whole snapshot checking that rows, incoming lists and pair lookups agree.
+//   java -cp target/benchmarks.jar flightplanner.SnapshotStressTest [airports 10000] [seconds per step 5]
+//        [max readers = cores] [writes per second 1000]
+// Reads per second should grow with the readers while they and the writer each have a core; steps with
+// more threads than cores are run for consistency only. Exits with 1 on any violation. The same checks
+// run briefly as SnapshotConsistencyTest in the app build.
+public final class SnapshotStressTest {
+    private static final int PAIRS = 64;
+
+    private final FlightNetwork net;
+    private final String[] codes;
+    // Toggled pairs, none of which had a route either way; the first half are edited as batches
+    private final String[] from = new String[PAIRS], to = new String[PAIRS];
+    private final int baseRoutes;
+    // Which toggled pairs currently have their routes; touched only by the writer, kept across steps
+    private final boolean[] on = new boolean[PAIRS];
+    private final LongAdder reads = new LongAdder(), writes = new LongAdder();
+    private final AtomicLong violations = new AtomicLong();
+    // Writer pace, so that every step sees the same write load however many readers compete with it
+    private final long writeInterval;
+    private volatile boolean done;
+
+    SnapshotStressTest(FlightNetwork net, int writesPerSecond) {
+        this.net = net;
+        writeInterval = 1_000_000_000L / writesPerSecond;
+        List<FlightNetwork.Airport> all = net.getAirports();
+        codes = new String[all.size()];
+        for (int i = 0; i < codes.length; i++) codes[i] = all.get(i).code;
+        Random rnd = new Random(7);
+        for (int p = 0; p < PAIRS; ) {
+            String a = codes[rnd.nextInt(codes.length)], b = codes[rnd.nextInt(codes.length)];
+            if (a.equals(b) || net.hasRoute(a, b) || net.hasRoute(b, a) || used(a, b, p)) continue;
+            from[p] = a;
+            to[p++] = b;
+        }
+        baseRoutes = net.graph().routeCount;
+    }
+
+    private boolean used(String a, String b, int count) {
+        for (int p = 0; p < count; p++)
+            if (from[p].equals(a) && to[p].equals(b) || from[p].equals(b) && to[p].equals(a)) return true;
+        return false;
+    }
+
+    private void writer() {
+        Random rnd = new Random(11);
+        for (long next = System.nanoTime(); !done; next += writeInterval) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else if (wait < -writeInterval) next = System.nanoTime(); // Fell behind; do not burst to catch up
+            int p = rnd.nextInt(PAIRS);
+            String a = from[p], b = to[p];
+            if (p < PAIRS / 2) {
+                boolean add = !on[p];
+                net.batch(() -> {
+                    if (add) {
+                        net.addRoute(a, b, 100);
+                        net.addRoute(b, a, 100);
+                    } else {
+                        net.removeRoute(a, b);
+                        net.removeRoute(b, a);
+                    }
+                });
+            } else if (on[p]) net.removeRoute(a, b);
+            else net.addRoute(a, b, 100);
+            on[p] = !on[p];
+            writes.increment();
+        }
+    }
+
+    private void reader(long seed) {
+        Random rnd = new Random(seed);
+        long lastVersion = -1;
+        for (int n = 1; !done; n++) {
+            RouteGraph g = net.graph();
+            if (g.version < lastVersion) fail("snapshot version went back from " + lastVersion + " to " + g.version);
+            lastVersion = g.version;
+            int toggled = 0;
+            for (int p = 0; p < PAIRS; p++) {
+                boolean there = g.edge(g.id(from[p]), g.id(to[p])) >= 0;
+                if (there) toggled++;
+                if (p < PAIRS / 2) {
+                    boolean back = g.edge(g.id(to[p]), g.id(from[p])) >= 0;
+                    if (there != back) fail("half of a batch visible at version " + g.version);
+                    if (back) toggled++;
+                }
+            }
+            if (g.routeCount != baseRoutes + toggled)
+                fail(g.routeCount + " routes at version " + g.version + ", expected " + (baseRoutes + toggled));
+            if ((n & 1023) == 0) checkWhole(g);
+            g.shortestPath(rnd.nextInt(g.airportCount), rnd.nextInt(g.airportCount), FlightNetwork.Metric.DISTANCE,
+                    FlightNetwork.SearchStrategy.AUTO, false);
+            reads.increment();
+        }
+    }
+
+    // Rows, incoming lists and pair lookups of one snapshot describe the same edges
+    private void checkWhole(RouteGraph g) {
+        int m = 0, pairs = 0, incoming = 0;
+        for (int u = 0; u < g.airportCount; u++)
+            for (int e = g.begin(u); e < g.end(u); e++) {
+                FlightNetwork.Route r = g.route(e);
+                m++;
+                if (g.tail[e] != u || g.head[e] != g.id(r.to) || !r.from.equals(g.code(u)) || g.cost[e] != r.cost)
+                    fail("edge " + e + " inconsistent at version " + g.version);
+                int k = g.edge(u, g.head[e]);
+                if (k == e) pairs++;
+                while (k >= 0 && k != e) k = g.nextParallel(k);
+                if (k != e) fail("pair lookup misses edge " + e + " at version " + g.version);
+            }
+        for (int v = 0; v < g.airportCount; v++)
+            for (int k = g.inBegin(v); k < g.inEnd(v); k++, incoming++)
+                if (g.edge(g.inTail[k], v) < 0) fail("incoming list of " + g.code(v) + " at version " + g.version);
+        if (m != g.routeCount || incoming != pairs) fail("row bounds at version " + g.version);
+    }
+
+    private void fail(String what) {
+        if (violations.getAndIncrement() < 10) System.err.println("VIOLATION: " + what);
+    }
+
+    // One step: the writer and the given number of readers for the given time; returns reads per second
+    double run(int readers, int seconds) throws InterruptedException {
+        done = false;
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(this::writer, "writer"));
+        for (int i = 0; i < readers; i++) {
+            long seed = i;
+            threads.add(new Thread(() -> reader(seed), "reader-" + i));
+        }
+        for (Thread t : threads) t.start();
+        // Warm-up, then measure
+        Thread.sleep(1000);
+        long r0 = reads.sum(), w0 = writes.sum(), t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        long r = reads.sum() - r0, w = writes.sum() - w0;
+        done = true;
+        for (Thread t : threads) t.join();
+        double rate = r / elapsed;
+        System.out.printf("%2d readers: %,12.0f reads/s (%,10.0f per reader), %,8.0f writes/s, version %d%n", readers, rate,
+                rate / readers, w / elapsed, net.version());
+        return rate;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int airports = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxReaders = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        int writesPerSecond = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        SnapshotStressTest test = new SnapshotStressTest(NetworkGenerator.generate(airports, 42), writesPerSecond);
+        System.out.printf("%,d airports, %,d routes, %d cores, %,d writes/s%n", airports, test.baseRoutes, cores, writesPerSecond);
+        if (cores < 2) System.out.println("WARNING: one core; reader scaling cannot be measured, only consistency");
+        List<Integer> steps = new ArrayList<>();
+        for (int readers = 1; readers < maxReaders; readers *= 2) steps.add(readers);
+        steps.add(maxReaders);
+        double single = 0;
+        for (int readers : steps) {
+            double rate = test.run(readers, seconds);
+            // With the writer, each reader needs a core of its own for the rates to be comparable
+            if (readers + 1 > cores) System.out.printf("            no scaling figure: %d readers and the writer share %d cores%n", readers, cores);
+            else if (readers == 1) single = rate;
+            else System.out.printf("            %.2fx the single reader%n", rate / single);
+        }
+        long v = test.violations.get();
+        System.out.println(v == 0 ? "No consistency violations" : v + " consistency violations");
+        System.exit(v == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,40 @@
+package flightplanner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+
+// Connection scan queries on a generated timetable (3 flights a day per route, two weeks unrolled)
+public class TimetableBenchmark extends PairBenchmark {
+    // Departure time per pair, minute of the week
+    int[] when;
+
+    @Override
+    void prepare() {
+        net.setTimetable(NetworkGenerator.timetable(net, 3, 42));
+        net.connections();
+        Random rnd = new Random(7);
+        when = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) when[i] = rnd.nextInt(Timetable.WEEK);
+    }
+
+    @Benchmark
+    public ConnectionScan.Journey earliestArrival() {
+        int i = nextPair();
+        return net.earliestArrival(from[i], to[i], when[i]);
+    }
+
+    // Best departures over six hours from a random start
+    @Benchmark
+    public List<ConnectionScan.Journey> profile() {
+        int i = nextPair();
+        return net.departureProfile(from[i], to[i], when[i], when[i] + 6 * 60);
+    }
+
+    // Compiling the connection arrays, paid once per timetable and network edit
+    @Benchmark
+    public ConnectionScan compile() {
+        return new ConnectionScan(net.graph(), net.timetable());
+    }
+}